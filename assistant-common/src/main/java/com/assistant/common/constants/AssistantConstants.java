@@ -21,6 +21,7 @@ public class AssistantConstants {
     // AI模型配置
     public static final String MODEL_PATH = System.getProperty("user.home") + "/.file-assistant/models/";
     public static final String EMBEDDING_MODEL_NAME = "all-MiniLM-L6-v2.onnx";
+    public static final String EMBEDDING_VOCAB_NAME = "all-MiniLM-L6-v2-vocab.txt";
     public static final int EMBEDDING_DIMENSION = 384;
     
     // 搜索配置
@@ -0,0 +1,71 @@
+package com.assistant.common.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * AI总结分析的生成状态和结果
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class AnalysisSummary {
+    
+    public static final String STATUS_PENDING = "pending";
+    public static final String STATUS_DONE = "done";
+    public static final String STATUS_FAILED = "failed";
+    
+    private String ticketId;
+    
+    /**
+     * pending（生成中）、done（已完成）或 failed（失败）
+     */
+    private String status;
+    
+    /**
+     * Markdown格式的总结分析，仅在完成时返回
+     */
+    private String summary;
+    
+    /**
+     * 失败原因
+     */
+    private String message;
+    
+    public AnalysisSummary() {}
+    
+    public AnalysisSummary(String ticketId, String status) {
+        this.ticketId = ticketId;
+        this.status = status;
+    }
+    
+    // Getters and Setters
+    public String getTicketId() {
+        return ticketId;
+    }
+    
+    public void setTicketId(String ticketId) {
+        this.ticketId = ticketId;
+    }
+    
+    public String getStatus() {
+        return status;
+    }
+    
+    public void setStatus(String status) {
+        this.status = status;
+    }
+    
+    public String getSummary() {
+        return summary;
+    }
+    
+    public void setSummary(String summary) {
+        this.summary = summary;
+    }
+    
+    public String getMessage() {
+        return message;
+    }
+    
+    public void setMessage(String message) {
+        this.message = message;
+    }
+}
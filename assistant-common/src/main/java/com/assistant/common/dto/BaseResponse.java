@@ -13,6 +13,11 @@ public class BaseResponse<T> {
     private T data;
     private Integer code;
     
+    /**
+     * 附加信息（如检索耗时统计）
+     */
+    private Object meta;
+    
     public BaseResponse() {}
     
     public BaseResponse(boolean success, String message) {
@@ -80,4 +85,12 @@ public class BaseResponse<T> {
     public void setCode(Integer code) {
         this.code = code;
     }
+    
+    public Object getMeta() {
+        return meta;
+    }
+    
+    public void setMeta(Object meta) {
+        this.meta = meta;
+    }
 }
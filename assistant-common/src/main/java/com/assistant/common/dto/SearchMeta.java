@@ -0,0 +1,124 @@
+package com.assistant.common.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 搜索耗时统计，随搜索响应返回
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SearchMeta {
+    
+    /**
+     * 实际使用的检索方式：lexical、vector 或 hybrid
+     */
+    private String searchMode;
+    
+    /**
+     * 关键词检索耗时（毫秒），未执行时为空
+     */
+    private Long lexicalTimeMs;
+    
+    /**
+     * 向量检索耗时（毫秒，含查询向量生成），未执行时为空
+     */
+    private Long vectorTimeMs;
+    
+    /**
+     * 排名融合耗时（毫秒），仅hybrid方式
+     */
+    private Long fusionTimeMs;
+    
+    /**
+     * 整个搜索请求的耗时（毫秒）
+     */
+    private Long totalTimeMs;
+    
+    /**
+     * 超出时间预算或因检索线程池已满而被放弃的检索路
+     */
+    private List<String> timedOutLegs;
+    
+    private Boolean cached;
+    
+    /**
+     * AI总结分析的票据，通过 /search/summary/{ticketId} 获取，没有结果时为空
+     */
+    private String summaryTicket;
+    
+    public SearchMeta() {}
+    
+    public void addTimedOutLeg(String leg) {
+        if (timedOutLegs == null) {
+            timedOutLegs = new ArrayList<>();
+        }
+        timedOutLegs.add(leg);
+    }
+    
+    // Getters and Setters
+    public String getSearchMode() {
+        return searchMode;
+    }
+    
+    public void setSearchMode(String searchMode) {
+        this.searchMode = searchMode;
+    }
+    
+    public Long getLexicalTimeMs() {
+        return lexicalTimeMs;
+    }
+    
+    public void setLexicalTimeMs(Long lexicalTimeMs) {
+        this.lexicalTimeMs = lexicalTimeMs;
+    }
+    
+    public Long getVectorTimeMs() {
+        return vectorTimeMs;
+    }
+    
+    public void setVectorTimeMs(Long vectorTimeMs) {
+        this.vectorTimeMs = vectorTimeMs;
+    }
+    
+    public Long getFusionTimeMs() {
+        return fusionTimeMs;
+    }
+    
+    public void setFusionTimeMs(Long fusionTimeMs) {
+        this.fusionTimeMs = fusionTimeMs;
+    }
+    
+    public Long getTotalTimeMs() {
+        return totalTimeMs;
+    }
+    
+    public void setTotalTimeMs(Long totalTimeMs) {
+        this.totalTimeMs = totalTimeMs;
+    }
+    
+    public List<String> getTimedOutLegs() {
+        return timedOutLegs;
+    }
+    
+    public void setTimedOutLegs(List<String> timedOutLegs) {
+        this.timedOutLegs = timedOutLegs;
+    }
+    
+    public Boolean getCached() {
+        return cached;
+    }
+    
+    public void setCached(Boolean cached) {
+        this.cached = cached;
+    }
+    
+    public String getSummaryTicket() {
+        return summaryTicket;
+    }
+    
+    public void setSummaryTicket(String summaryTicket) {
+        this.summaryTicket = summaryTicket;
+    }
+}
@@ -17,6 +17,17 @@ public class SearchRequest {
     private Integer pageNum = 1;
     private Boolean useSemanticSearch = true;
     
+    /**
+     * 检索方式：lexical（关键词）、vector（语义向量）、hybrid（两路并行后融合）；
+     * 未指定时由 useSemanticSearch 决定，false 为 lexical，否则为 hybrid
+     */
+    private String searchMode;
+    
+    /**
+     * 是否模糊匹配：关键词检索时英文词同时匹配拼写相近（编辑距离不超过2）的词，默认不开启
+     */
+    private Boolean fuzzy;
+    
     public SearchRequest() {}
     
     public SearchRequest(String query) {
@@ -71,4 +82,20 @@ public class SearchRequest {
     public void setUseSemanticSearch(Boolean useSemanticSearch) {
         this.useSemanticSearch = useSemanticSearch;
     }
+    
+    public String getSearchMode() {
+        return searchMode;
+    }
+    
+    public void setSearchMode(String searchMode) {
+        this.searchMode = searchMode;
+    }
+    
+    public Boolean getFuzzy() {
+        return fuzzy;
+    }
+    
+    public void setFuzzy(Boolean fuzzy) {
+        this.fuzzy = fuzzy;
+    }
 }
@@ -1,9 +1,11 @@
 package com.assistant.common.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 
 /**
- * 搜索结果DTO
+ * 搜索结果DTO（为空的字段不序列化）
  */
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class SearchResult {
     
     private Long fileId;
@@ -16,6 +18,12 @@ public class SearchResult {
     private String summary;
     private Double score;
     private String highlight;
+    /**
+     * 与查询最相似的段落在正文UTF-8编码中的字节偏移和长度（语义检索时提供），
+     * 可直接作为 /files/{id}/content 的 offset/length 参数
+     */
+    private Long passageOffset;
+    private Long passageLength;
     private String analysisSummary;
     
     public SearchResult() {}
@@ -113,6 +121,22 @@ public class SearchResult {
         this.highlight = highlight;
     }
     
+    public Long getPassageOffset() {
+        return passageOffset;
+    }
+    
+    public void setPassageOffset(Long passageOffset) {
+        this.passageOffset = passageOffset;
+    }
+    
+    public Long getPassageLength() {
+        return passageLength;
+    }
+    
+    public void setPassageLength(Long passageLength) {
+        this.passageLength = passageLength;
+    }
+    
     public String getAnalysisSummary() {
         return analysisSummary;
     }
@@ -0,0 +1,111 @@
+package com.assistant.core.cache;
+
+/**
+ * 文本内容的128位哈希（MurmurHash3 x64_128，按UTF-16字符计算），用作缓存键
+ * 只保存两个long，不持有原文；128位下不同文本发生碰撞的概率可以忽略。
+ */
+public final class ContentHash {
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5114581ef7f7fL;
+
+    private final long high;
+    private final long low;
+
+    private ContentHash(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    /**
+     * 计算 [from, to) 区间字符的哈希
+     */
+    public static ContentHash of(CharSequence text, int from, int to) {
+        long h1 = 0;
+        long h2 = 0;
+        int i = from;
+        for (; i + 8 <= to; i += 8) {
+            long k1 = chars(text, i, 4);
+            long k2 = chars(text, i + 4, 4);
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27) + h2;
+            h1 = h1 * 5 + 0x52dce729;
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31) + h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+        int remaining = to - i;
+        if (remaining > 4) {
+            h2 ^= mixK2(chars(text, i + 4, remaining - 4));
+        }
+        if (remaining > 0) {
+            h1 ^= mixK1(chars(text, i, Math.min(4, remaining)));
+        }
+
+        long length = 2L * (to - from);
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+        h1 += h2;
+        h2 += h1;
+        return new ContentHash(h1, h2);
+    }
+
+    public static ContentHash of(CharSequence text) {
+        return of(text, 0, text.length());
+    }
+
+    private static long chars(CharSequence text, int from, int count) {
+        long k = 0;
+        for (int j = 0; j < count; j++) {
+            k |= (long) text.charAt(from + j) << (16 * j);
+        }
+        return k;
+    }
+
+    private static long mixK1(long k1) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        return k1 * C2;
+    }
+
+    private static long mixK2(long k2) {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        return k2 * C1;
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ContentHash)) {
+            return false;
+        }
+        ContentHash other = (ContentHash) o;
+        return high == other.high && low == other.low;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) low;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%016x%016x", high, low);
+    }
+}
@@ -0,0 +1,116 @@
+package com.assistant.core.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 按条目数和权重双重限制的LRU缓存
+ * 基于访问顺序的LinkedHashMap，超出任一上限时从最久未访问的条目开始淘汰；
+ * 单个条目权重超过总上限时不缓存。所有操作串行化，并统计命中、未命中和淘汰次数。
+ */
+public class WeightedLruCache<K, V> {
+
+    /**
+     * 条目权重计算（如估算的字节数）
+     */
+    public interface Weigher<K, V> {
+        long weigh(K key, V value);
+    }
+
+    private final int maxEntries;
+    private final long maxWeight;
+    private final Weigher<K, V> weigher;
+    private final LinkedHashMap<K, WeightedValue<V>> map = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long weight;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public WeightedLruCache(int maxEntries, long maxWeight, Weigher<K, V> weigher) {
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+    }
+
+    public synchronized V get(K key) {
+        WeightedValue<V> entry = map.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value;
+    }
+
+    public synchronized void put(K key, V value) {
+        long entryWeight = weigher.weigh(key, value);
+        WeightedValue<V> previous = map.remove(key);
+        if (previous != null) {
+            weight -= previous.weight;
+        }
+        if (entryWeight > maxWeight || maxEntries <= 0) {
+            return;
+        }
+        map.put(key, new WeightedValue<>(value, entryWeight));
+        weight += entryWeight;
+
+        Iterator<Map.Entry<K, WeightedValue<V>>> iterator = map.entrySet().iterator();
+        while ((map.size() > maxEntries || weight > maxWeight) && iterator.hasNext()) {
+            weight -= iterator.next().getValue().weight;
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    public synchronized void remove(K key) {
+        WeightedValue<V> previous = map.remove(key);
+        if (previous != null) {
+            weight -= previous.weight;
+        }
+    }
+
+    public synchronized void clear() {
+        map.clear();
+        weight = 0;
+    }
+
+    public synchronized int size() {
+        return map.size();
+    }
+
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    /**
+     * 命中率，尚无请求时为0
+     */
+    public synchronized double getHitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0.0 : (double) hits / requests;
+    }
+
+    private static final class WeightedValue<V> {
+        private final V value;
+        private final long weight;
+
+        private WeightedValue(V value, long weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+}
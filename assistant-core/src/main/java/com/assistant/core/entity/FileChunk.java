@@ -0,0 +1,85 @@
+package com.assistant.core.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+
+/**
+ * 文件段落实体，ID同时是段落向量在向量存储中的位置
+ */
+@TableName("file_chunk")
+public class FileChunk {
+    
+    @TableId(type = IdType.INPUT)
+    private Long id;
+    
+    @TableField("file_id")
+    private Long fileId;
+    
+    /**
+     * 段落在文件中的序号
+     */
+    @TableField("chunk_index")
+    private Integer chunkIndex;
+    
+    /**
+     * 段落在正文中的起始字符偏移
+     */
+    @TableField("start_offset")
+    private Integer startOffset;
+    
+    /**
+     * 段落在正文中的结束字符偏移（不含）
+     */
+    @TableField("end_offset")
+    private Integer endOffset;
+    
+    public FileChunk() {}
+    
+    public FileChunk(Long id, Long fileId, Integer chunkIndex, Integer startOffset, Integer endOffset) {
+        this.id = id;
+        this.fileId = fileId;
+        this.chunkIndex = chunkIndex;
+        this.startOffset = startOffset;
+        this.endOffset = endOffset;
+    }
+    
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public Long getFileId() {
+        return fileId;
+    }
+    
+    public void setFileId(Long fileId) {
+        this.fileId = fileId;
+    }
+    
+    public Integer getChunkIndex() {
+        return chunkIndex;
+    }
+    
+    public void setChunkIndex(Integer chunkIndex) {
+        this.chunkIndex = chunkIndex;
+    }
+    
+    public Integer getStartOffset() {
+        return startOffset;
+    }
+    
+    public void setStartOffset(Integer startOffset) {
+        this.startOffset = startOffset;
+    }
+    
+    public Integer getEndOffset() {
+        return endOffset;
+    }
+    
+    public void setEndOffset(Integer endOffset) {
+        this.endOffset = endOffset;
+    }
+}
@@ -0,0 +1,33 @@
+package com.assistant.core.entity;
+
+/**
+ * 全文检索命中结果（仅包含文件ID和排名分数）
+ */
+public class FullTextHit {
+    
+    private Long id;
+    
+    /**
+     * FTS5 bm25() 排名值，越小越相关
+     */
+    private Double rank;
+    
+    public FullTextHit() {}
+    
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public Double getRank() {
+        return rank;
+    }
+    
+    public void setRank(Double rank) {
+        this.rank = rank;
+    }
+}
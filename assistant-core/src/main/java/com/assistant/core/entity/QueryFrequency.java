@@ -0,0 +1,30 @@
+package com.assistant.core.entity;
+
+/**
+ * 搜索历史中查询文本的出现次数
+ */
+public class QueryFrequency {
+    
+    private String queryText;
+    
+    private Integer frequency;
+    
+    public QueryFrequency() {}
+    
+    // Getters and Setters
+    public String getQueryText() {
+        return queryText;
+    }
+    
+    public void setQueryText(String queryText) {
+        this.queryText = queryText;
+    }
+    
+    public Integer getFrequency() {
+        return frequency;
+    }
+    
+    public void setFrequency(Integer frequency) {
+        this.frequency = frequency;
+    }
+}
@@ -0,0 +1,52 @@
+package com.assistant.core.entity;
+
+/**
+ * 持久化的文本向量（按模型标识和输入文本的SHA-256摘要存储）
+ */
+public class StoredEmbedding {
+    
+    private String modelId;
+    
+    /**
+     * 规范化输入文本（去除首尾空白）UTF-8编码的SHA-256摘要
+     */
+    private byte[] digest;
+    
+    /**
+     * 向量，float32小端字节序
+     */
+    private byte[] vector;
+    
+    public StoredEmbedding() {}
+    
+    public StoredEmbedding(String modelId, byte[] digest, byte[] vector) {
+        this.modelId = modelId;
+        this.digest = digest;
+        this.vector = vector;
+    }
+    
+    // Getters and Setters
+    public String getModelId() {
+        return modelId;
+    }
+    
+    public void setModelId(String modelId) {
+        this.modelId = modelId;
+    }
+    
+    public byte[] getDigest() {
+        return digest;
+    }
+    
+    public void setDigest(byte[] digest) {
+        this.digest = digest;
+    }
+    
+    public byte[] getVector() {
+        return vector;
+    }
+    
+    public void setVector(byte[] vector) {
+        this.vector = vector;
+    }
+}
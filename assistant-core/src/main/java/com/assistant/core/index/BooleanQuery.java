@@ -0,0 +1,505 @@
+package com.assistant.core.index;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 布尔查询语法树
+ * 支持 AND、OR、NOT（大写）、括号、双引号短语、NEAR/k 和字段条件：
+ * {@code type:pdf}、{@code folder:/docs}、{@code name:报告}、{@code size>10MB}、{@code modified>=2024-01-01}。
+ * 优先级为 NOT &gt; AND &gt; OR；没有运算符相连的子句中，字段条件必须满足，文本子句至少满足一个，
+ * 与AND相连的子句都必须满足。例如 {@code type:pdf (营业收入 OR 利润) NOT 草稿}。
+ */
+public class BooleanQuery {
+
+    public static final String FIELD_TYPE = "type";
+    public static final String FIELD_FOLDER = "folder";
+    public static final String FIELD_NAME = "name";
+    public static final String FIELD_SIZE = "size";
+    public static final String FIELD_MODIFIED = "modified";
+
+    private static final Pattern FIELD = Pattern.compile(
+        "(?i)(type|folder|name|size|modified)(:(?:>=|<=|>|<|=)?|>=|<=|>|<|=)(.+)");
+    private static final Pattern SIZE = Pattern.compile("(?i)(\\d+(?:\\.\\d+)?)\\s*(b|k|kb|m|mb|g|gb)?");
+    private static final Pattern NEAR = Pattern.compile("NEAR/\\d+");
+
+    /**
+     * 语法树节点
+     */
+    public abstract static class Node {
+    }
+
+    /**
+     * 文本子句：一个词、一个短语或一组 NEAR/k 邻近条件，按 {@link TextQuery} 的语法解析
+     */
+    public static final class Text extends Node {
+        private final String text;
+
+        Text(String text) {
+            this.text = text;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+
+    /**
+     * 字段条件：type、folder、name 的取值为文本；size、modified 解析为闭区间 [min, max]
+     * （大小为字节数，修改时间为毫秒时间戳）
+     */
+    public static final class Field extends Node {
+        private final String name;
+        private final String value;
+        private final long min;
+        private final long max;
+
+        Field(String name, String value, long min, long max) {
+            this.name = name;
+            this.value = value;
+            this.min = min;
+            this.max = max;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public long getMin() {
+            return min;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Field)) {
+                return false;
+            }
+            Field other = (Field) o;
+            return name.equals(other.name) && value.equals(other.value) && min == other.min && max == other.max;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(name, value, min, max);
+        }
+
+        @Override
+        public String toString() {
+            return FIELD_SIZE.equals(name) || FIELD_MODIFIED.equals(name)
+                ? name + "[" + min + "," + max + "]" : name + ":" + value;
+        }
+    }
+
+    /**
+     * 组合子句：匹配全部required、不匹配任何excluded，optional非空时至少匹配其中一个
+     */
+    public static final class Group extends Node {
+        private final List<Node> required;
+        private final List<Node> optional;
+        private final List<Node> excluded;
+
+        Group(List<Node> required, List<Node> optional, List<Node> excluded) {
+            this.required = required;
+            this.optional = optional;
+            this.excluded = excluded;
+        }
+
+        public List<Node> getRequired() {
+            return required;
+        }
+
+        public List<Node> getOptional() {
+            return optional;
+        }
+
+        public List<Node> getExcluded() {
+            return excluded;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder out = new StringBuilder("(");
+            for (Node node : required) {
+                out.append(out.length() > 1 ? " " : "").append('+').append(node);
+            }
+            for (Node node : optional) {
+                out.append(out.length() > 1 ? " " : "").append(node);
+            }
+            for (Node node : excluded) {
+                out.append(out.length() > 1 ? " " : "").append('-').append(node);
+            }
+            return out.append(')').toString();
+        }
+    }
+
+    /**
+     * 由字段条件构造文档迭代器（每次调用返回新的迭代器），条件无法满足时返回 {@link DocIterator#empty()}；
+     * 迭代器只会被问到 [docFrom, docTo) 内的文档（分片检索时为分片范围）
+     */
+    public interface FieldResolver {
+        DocIterator resolve(Field field, int docFrom, int docTo);
+    }
+
+    private final Group root;
+
+    private BooleanQuery(Group root) {
+        this.root = root;
+    }
+
+    public Group getRoot() {
+        return root;
+    }
+
+    /**
+     * 是否需要按布尔语义执行：含有 AND、OR、NOT 或只有字段条件时为true；
+     * 只有文本子句和字段条件并列时为false，此时字段条件相当于过滤条件，文本按普通查询处理
+     */
+    public boolean isStructured() {
+        if (!root.getExcluded().isEmpty() || (root.getOptional().isEmpty() && !root.getRequired().isEmpty())) {
+            return true;
+        }
+        for (Node node : root.getRequired()) {
+            if (!(node instanceof Field)) {
+                return true;
+            }
+        }
+        for (Node node : root.getOptional()) {
+            if (!(node instanceof Text)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 顶层必须满足的字段条件
+     */
+    public List<Field> getFilters() {
+        List<Field> filters = new ArrayList<>();
+        for (Node node : root.getRequired()) {
+            if (node instanceof Field) {
+                filters.add((Field) node);
+            }
+        }
+        return filters;
+    }
+
+    /**
+     * 所有不在NOT下的文本子句（以空格连接），用于打分、高亮和语义检索
+     */
+    public String getText() {
+        StringBuilder text = new StringBuilder();
+        appendText(root, text);
+        return text.toString();
+    }
+
+    private static void appendText(Node node, StringBuilder text) {
+        if (node instanceof Text) {
+            text.append(text.length() > 0 ? " " : "").append(((Text) node).getText());
+        } else if (node instanceof Group) {
+            for (Node child : ((Group) node).getRequired()) {
+                appendText(child, text);
+            }
+            for (Node child : ((Group) node).getOptional()) {
+                appendText(child, text);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return root.toString();
+    }
+
+    /**
+     * 解析查询串；语法不完整（如缺少右括号、运算符后没有子句）时尽量保留可解析的部分
+     */
+    public static BooleanQuery parse(String query) {
+        Parser parser = new Parser(tokenize(query != null ? query : ""));
+        Node node = parser.parseOr();
+        // 多余的右括号之后的内容继续按并列子句解析
+        while (parser.position < parser.tokens.size()) {
+            parser.position++;
+            Node rest = parser.parseOr();
+            node = new Group(new ArrayList<>(), new ArrayList<>(list(node, rest)), new ArrayList<>());
+        }
+        return new BooleanQuery(node instanceof Group ? (Group) node
+            : node instanceof Field
+                ? new Group(list(node), new ArrayList<>(), new ArrayList<>())
+                : new Group(new ArrayList<>(), list(node), new ArrayList<>()));
+    }
+
+    private static List<Node> list(Node... nodes) {
+        List<Node> list = new ArrayList<>();
+        for (Node node : nodes) {
+            if (node != null) {
+                list.add(node);
+            }
+        }
+        return list;
+    }
+
+    private static final class Token {
+        final String text;
+        final boolean quoted;
+
+        Token(String text, boolean quoted) {
+            this.text = text;
+            this.quoted = quoted;
+        }
+
+        boolean is(String keyword) {
+            return !quoted && keyword.equals(text);
+        }
+    }
+
+    private static final class Parser {
+        final List<Token> tokens;
+        int position;
+
+        Parser(List<Token> tokens) {
+            this.tokens = tokens;
+        }
+
+        Token peek() {
+            return position < tokens.size() ? tokens.get(position) : null;
+        }
+
+        Node parseOr() {
+            List<Node> alternatives = new ArrayList<>();
+            Node first = parseAnd();
+            if (first != null) {
+                alternatives.add(first);
+            }
+            while (peek() != null && peek().is("OR")) {
+                position++;
+                Node next = parseAnd();
+                if (next != null) {
+                    alternatives.add(next);
+                }
+            }
+            if (alternatives.size() <= 1) {
+                return alternatives.isEmpty() ? null : alternatives.get(0);
+            }
+            return new Group(new ArrayList<>(), alternatives, new ArrayList<>());
+        }
+
+        /**
+         * 并列和AND相连的子句：字段条件和AND两侧的子句为required，NOT子句为excluded，其余为optional
+         */
+        Node parseAnd() {
+            List<Node> required = new ArrayList<>();
+            List<Node> optional = new ArrayList<>();
+            List<Node> excluded = new ArrayList<>();
+            boolean and = false;
+            Node previous = null;
+            boolean previousNegated = false;
+            while (peek() != null && !peek().is("OR") && !peek().is(")")) {
+                if (peek().is("AND")) {
+                    position++;
+                    and = previous != null;
+                    continue;
+                }
+                boolean negated = false;
+                while (peek() != null && peek().is("NOT")) {
+                    position++;
+                    negated = !negated;
+                }
+                Node node = parsePrimary();
+                if (node == null) {
+                    continue;
+                }
+                if (and && !previousNegated && optional.remove(previous)) {
+                    required.add(previous);
+                }
+                if (negated) {
+                    excluded.add(node);
+                } else if (and || node instanceof Field) {
+                    required.add(node);
+                } else {
+                    optional.add(node);
+                }
+                previous = node;
+                previousNegated = negated;
+                and = false;
+            }
+            int total = required.size() + optional.size() + excluded.size();
+            if (total == 0) {
+                return null;
+            }
+            if (total == 1 && optional.size() == 1) {
+                return optional.get(0);
+            }
+            return new Group(required, optional, excluded);
+        }
+
+        Node parsePrimary() {
+            Token token = peek();
+            if (token == null) {
+                return null;
+            }
+            position++;
+            if (token.is("(")) {
+                Node inner = parseOr();
+                if (peek() != null && peek().is(")")) {
+                    position++;
+                }
+                return inner;
+            }
+            if (!token.quoted) {
+                Field field = parseField(token.text);
+                if (field != null) {
+                    return field;
+                }
+            }
+            // 连续的 NEAR/k 组合成一个文本子句
+            StringBuilder text = new StringBuilder(token.quoted ? '"' + token.text + '"' : token.text);
+            while (position + 1 < tokens.size() && !tokens.get(position).quoted
+                && NEAR.matcher(tokens.get(position).text).matches() && isOperand(tokens.get(position + 1))) {
+                Token operand = tokens.get(position + 1);
+                text.append(' ').append(tokens.get(position).text).append(' ')
+                    .append(operand.quoted ? '"' + operand.text + '"' : operand.text);
+                position += 2;
+            }
+            return new Text(text.toString());
+        }
+
+        static boolean isOperand(Token token) {
+            return token.quoted || !(token.is("(") || token.is(")") || token.is("AND") || token.is("OR") || token.is("NOT"));
+        }
+    }
+
+    /**
+     * 解析字段条件，字段名不认识或取值无法解析时返回null（按普通文本处理）
+     */
+    static Field parseField(String text) {
+        Matcher matcher = FIELD.matcher(text);
+        if (!matcher.matches()) {
+            return null;
+        }
+        String name = matcher.group(1).toLowerCase(Locale.ROOT);
+        String op = matcher.group(2).startsWith(":") ? matcher.group(2).substring(1) : matcher.group(2);
+        String value = matcher.group(3).trim();
+        if (value.isEmpty()) {
+            return null;
+        }
+        if (FIELD_SIZE.equals(name)) {
+            Matcher size = SIZE.matcher(value);
+            if (!size.matches()) {
+                return null;
+            }
+            long bytes = (long) (Double.parseDouble(size.group(1)) * unit(size.group(2)));
+            return range(name, value, op, bytes, bytes + 1);
+        }
+        if (FIELD_MODIFIED.equals(name)) {
+            try {
+                LocalDate date = LocalDate.parse(value);
+                ZoneId zone = ZoneId.systemDefault();
+                return range(name, value, op, date.atStartOfDay(zone).toInstant().toEpochMilli(),
+                    date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli());
+            } catch (DateTimeParseException e) {
+                return null;
+            }
+        }
+        if (!op.isEmpty()) {
+            return null;
+        }
+        return new Field(name, value, 0, 0);
+    }
+
+    /**
+     * 由取值对应的区间 [from, to) 和比较运算得到闭区间条件
+     */
+    private static Field range(String name, String value, String op, long from, long to) {
+        switch (op) {
+            case ">":
+                return new Field(name, value, to, Long.MAX_VALUE);
+            case ">=":
+                return new Field(name, value, from, Long.MAX_VALUE);
+            case "<":
+                return new Field(name, value, Long.MIN_VALUE + 1, from - 1);
+            case "<=":
+                return new Field(name, value, Long.MIN_VALUE + 1, to - 1);
+            default:
+                return new Field(name, value, from, to - 1);
+        }
+    }
+
+    private static long unit(String unit) {
+        if (unit == null) {
+            return 1L;
+        }
+        switch (unit.toLowerCase(Locale.ROOT)) {
+            case "k":
+            case "kb":
+                return 1L << 10;
+            case "m":
+            case "mb":
+                return 1L << 20;
+            case "g":
+            case "gb":
+                return 1L << 30;
+            default:
+                return 1L;
+        }
+    }
+
+    /**
+     * 切分为词、双引号短语和括号；字段条件取值中的双引号只用于包含空白，不作为短语
+     */
+    private static List<Token> tokenize(String query) {
+        List<Token> tokens = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        int i = 0;
+        while (i < query.length()) {
+            char c = query.charAt(i);
+            if (c == '"') {
+                int end = query.indexOf('"', i + 1);
+                String quoted = end >= 0 ? query.substring(i + 1, end) : query.substring(i + 1);
+                i = end >= 0 ? end + 1 : query.length();
+                if (current.length() > 0) {
+                    current.append(quoted);
+                } else if (!quoted.trim().isEmpty()) {
+                    tokens.add(new Token(quoted, true));
+                }
+            } else if (Character.isWhitespace(c) || c == '(' || c == ')') {
+                if (current.length() > 0) {
+                    tokens.add(new Token(current.toString(), false));
+                    current.setLength(0);
+                }
+                if (c == '(' || c == ')') {
+                    tokens.add(new Token(String.valueOf(c), false));
+                }
+                i++;
+            } else {
+                current.append(c);
+                i++;
+            }
+        }
+        if (current.length() > 0) {
+            tokens.add(new Token(current.toString(), false));
+        }
+        return tokens.isEmpty() ? Collections.<Token>emptyList() : tokens;
+    }
+}
@@ -0,0 +1,347 @@
+package com.assistant.core.index;
+
+import java.util.Arrays;
+
+/**
+ * 压缩的文档ID集合（简化的Roaring Bitmap）
+ * 按ID的高16位分块，每块在元素不超过4096个时以有序char数组保存，超过时改为65536位的位图，
+ * 稀疏集合和稠密集合的内存占用都与元素数量成比例。求交集按块进行，只处理两个集合共有的块。
+ * 非线程安全，由持有者负责同步。
+ */
+public class DocIdSet {
+
+    /**
+     * nextDoc没有更多文档时的返回值
+     */
+    public static final int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+    private static final int ARRAY_MAX = 4096;
+    private static final int BITMAP_WORDS = 1 << 10;
+
+    private char[] keys = new char[4];
+    private Object[] containers = new Object[4];
+    private int[] cardinalities = new int[4];
+    private int size;
+
+    public void add(int doc) {
+        int index = containerIndex(doc >>> 16);
+        if (index < 0) {
+            index = -index - 1;
+            insertContainer(index, (char) (doc >>> 16), new char[4]);
+        }
+        char low = (char) doc;
+        Object container = containers[index];
+        if (container instanceof long[]) {
+            long[] bitmap = (long[]) container;
+            long mask = 1L << low;
+            if ((bitmap[low >>> 6] & mask) == 0) {
+                bitmap[low >>> 6] |= mask;
+                cardinalities[index]++;
+            }
+            return;
+        }
+
+        char[] array = (char[]) container;
+        int cardinality = cardinalities[index];
+        int position = Arrays.binarySearch(array, 0, cardinality, low);
+        if (position >= 0) {
+            return;
+        }
+        position = -position - 1;
+        if (cardinality == ARRAY_MAX) {
+            long[] bitmap = toBitmap(array, cardinality);
+            bitmap[low >>> 6] |= 1L << low;
+            containers[index] = bitmap;
+        } else {
+            if (cardinality == array.length) {
+                array = Arrays.copyOf(array, Math.min(ARRAY_MAX, cardinality * 2));
+                containers[index] = array;
+            }
+            System.arraycopy(array, position, array, position + 1, cardinality - position);
+            array[position] = low;
+        }
+        cardinalities[index] = cardinality + 1;
+    }
+
+    public void remove(int doc) {
+        int index = containerIndex(doc >>> 16);
+        if (index < 0) {
+            return;
+        }
+        char low = (char) doc;
+        Object container = containers[index];
+        int cardinality = cardinalities[index];
+        if (container instanceof long[]) {
+            long[] bitmap = (long[]) container;
+            long mask = 1L << low;
+            if ((bitmap[low >>> 6] & mask) == 0) {
+                return;
+            }
+            bitmap[low >>> 6] &= ~mask;
+            cardinality--;
+            if (cardinality <= ARRAY_MAX) {
+                containers[index] = toArray(bitmap, cardinality);
+            }
+        } else {
+            char[] array = (char[]) container;
+            int position = Arrays.binarySearch(array, 0, cardinality, low);
+            if (position < 0) {
+                return;
+            }
+            System.arraycopy(array, position + 1, array, position, cardinality - position - 1);
+            cardinality--;
+        }
+        if (cardinality == 0) {
+            removeContainer(index);
+        } else {
+            cardinalities[index] = cardinality;
+        }
+    }
+
+    public boolean contains(int doc) {
+        int index = containerIndex(doc >>> 16);
+        if (index < 0) {
+            return false;
+        }
+        char low = (char) doc;
+        Object container = containers[index];
+        if (container instanceof long[]) {
+            return (((long[]) container)[low >>> 6] & (1L << low)) != 0;
+        }
+        return Arrays.binarySearch((char[]) container, 0, cardinalities[index], low) >= 0;
+    }
+
+    /**
+     * 返回集合中第一个不小于from的文档ID，没有时返回 {@link #NO_MORE_DOCS}
+     */
+    public int nextDoc(int from) {
+        if (from < 0) {
+            from = 0;
+        }
+        int index = containerIndex(from >>> 16);
+        int low;
+        if (index >= 0) {
+            low = from & 0xFFFF;
+        } else {
+            index = -index - 1;
+            low = 0;
+        }
+        for (; index < size; index++, low = 0) {
+            int found = nextInContainer(index, low);
+            if (found >= 0) {
+                return (keys[index] << 16) | found;
+            }
+        }
+        return NO_MORE_DOCS;
+    }
+
+    private int nextInContainer(int index, int low) {
+        Object container = containers[index];
+        if (container instanceof long[]) {
+            long[] bitmap = (long[]) container;
+            int word = low >>> 6;
+            long bits = bitmap[word] & (-1L << low);
+            while (true) {
+                if (bits != 0) {
+                    return (word << 6) + Long.numberOfTrailingZeros(bits);
+                }
+                if (++word == BITMAP_WORDS) {
+                    return -1;
+                }
+                bits = bitmap[word];
+            }
+        }
+        char[] array = (char[]) container;
+        int position = Arrays.binarySearch(array, 0, cardinalities[index], (char) low);
+        if (position < 0) {
+            position = -position - 1;
+        }
+        return position < cardinalities[index] ? array[position] : -1;
+    }
+
+    /**
+     * 元素数量
+     */
+    public int cardinality() {
+        int total = 0;
+        for (int i = 0; i < size; i++) {
+            total += cardinalities[i];
+        }
+        return total;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 深拷贝（用于在锁外使用的快照）
+     */
+    public DocIdSet copy() {
+        DocIdSet copy = new DocIdSet();
+        copy.keys = Arrays.copyOf(keys, Math.max(4, size));
+        copy.containers = new Object[copy.keys.length];
+        copy.cardinalities = Arrays.copyOf(cardinalities, copy.keys.length);
+        for (int i = 0; i < size; i++) {
+            Object container = containers[i];
+            copy.containers[i] = container instanceof long[]
+                ? ((long[]) container).clone() : Arrays.copyOf((char[]) container, cardinalities[i]);
+        }
+        copy.size = size;
+        return copy;
+    }
+
+    /**
+     * 交集，返回新集合
+     */
+    public static DocIdSet and(DocIdSet a, DocIdSet b) {
+        DocIdSet result = new DocIdSet();
+        int i = 0;
+        int j = 0;
+        while (i < a.size && j < b.size) {
+            if (a.keys[i] < b.keys[j]) {
+                i++;
+            } else if (a.keys[i] > b.keys[j]) {
+                j++;
+            } else {
+                andContainers(result, a.keys[i], a.containers[i], a.cardinalities[i], b.containers[j], b.cardinalities[j]);
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    private static void andContainers(DocIdSet result, char key, Object a, int cardinalityA, Object b, int cardinalityB) {
+        if (a instanceof long[] && b instanceof long[]) {
+            long[] x = (long[]) a;
+            long[] y = (long[]) b;
+            long[] bitmap = new long[BITMAP_WORDS];
+            int cardinality = 0;
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                bitmap[w] = x[w] & y[w];
+                cardinality += Long.bitCount(bitmap[w]);
+            }
+            if (cardinality > ARRAY_MAX) {
+                result.appendContainer(key, bitmap, cardinality);
+            } else if (cardinality > 0) {
+                result.appendContainer(key, toArray(bitmap, cardinality), cardinality);
+            }
+            return;
+        }
+
+        if (a instanceof long[] || b instanceof long[]) {
+            // 数组与位图：逐个检查数组元素
+            char[] array = (char[]) (a instanceof long[] ? b : a);
+            int arrayCardinality = a instanceof long[] ? cardinalityB : cardinalityA;
+            long[] bitmap = (long[]) (a instanceof long[] ? a : b);
+            char[] out = new char[arrayCardinality];
+            int cardinality = 0;
+            for (int k = 0; k < arrayCardinality; k++) {
+                char low = array[k];
+                if ((bitmap[low >>> 6] & (1L << low)) != 0) {
+                    out[cardinality++] = low;
+                }
+            }
+            if (cardinality > 0) {
+                result.appendContainer(key, out, cardinality);
+            }
+            return;
+        }
+
+        // 两个有序数组归并
+        char[] x = (char[]) a;
+        char[] y = (char[]) b;
+        char[] out = new char[Math.min(cardinalityA, cardinalityB)];
+        int cardinality = 0;
+        int p = 0;
+        int q = 0;
+        while (p < cardinalityA && q < cardinalityB) {
+            if (x[p] < y[q]) {
+                p++;
+            } else if (x[p] > y[q]) {
+                q++;
+            } else {
+                out[cardinality++] = x[p];
+                p++;
+                q++;
+            }
+        }
+        if (cardinality > 0) {
+            result.appendContainer(key, out, cardinality);
+        }
+    }
+
+    private static long[] toBitmap(char[] array, int cardinality) {
+        long[] bitmap = new long[BITMAP_WORDS];
+        for (int i = 0; i < cardinality; i++) {
+            bitmap[array[i] >>> 6] |= 1L << array[i];
+        }
+        return bitmap;
+    }
+
+    private static char[] toArray(long[] bitmap, int cardinality) {
+        char[] array = new char[Math.max(4, cardinality)];
+        int position = 0;
+        for (int w = 0; w < BITMAP_WORDS; w++) {
+            long bits = bitmap[w];
+            while (bits != 0) {
+                array[position++] = (char) ((w << 6) + Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+            }
+        }
+        return array;
+    }
+
+    private int containerIndex(int key) {
+        int lo = 0;
+        int hi = size - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid] < key) {
+                lo = mid + 1;
+            } else if (keys[mid] > key) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(lo + 1);
+    }
+
+    private void insertContainer(int index, char key, Object container) {
+        ensureCapacity();
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        System.arraycopy(cardinalities, index, cardinalities, index + 1, size - index);
+        keys[index] = key;
+        containers[index] = container;
+        cardinalities[index] = 0;
+        size++;
+    }
+
+    private void appendContainer(char key, Object container, int cardinality) {
+        ensureCapacity();
+        keys[size] = key;
+        containers[size] = container;
+        cardinalities[size] = cardinality;
+        size++;
+    }
+
+    private void removeContainer(int index) {
+        System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+        System.arraycopy(containers, index + 1, containers, index, size - index - 1);
+        System.arraycopy(cardinalities, index + 1, cardinalities, index, size - index - 1);
+        size--;
+        containers[size] = null;
+    }
+
+    private void ensureCapacity() {
+        if (size == keys.length) {
+            int capacity = size * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            containers = Arrays.copyOf(containers, capacity);
+            cardinalities = Arrays.copyOf(cardinalities, capacity);
+        }
+    }
+}
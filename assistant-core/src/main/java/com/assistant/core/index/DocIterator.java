@@ -0,0 +1,260 @@
+package com.assistant.core.index;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * 按文档ID递增遍历匹配文档的迭代器，布尔查询的执行计划由它组合而成
+ * 每个迭代器给出匹配文档数的估计（cost），交集按估计值从小到大排列：最稀有的子句驱动遍历，
+ * 其余子句只需跳到驱动子句的当前文档（倒排表倍增跳跃，位图直接判断），
+ * 整个交集的代价与最稀有子句的大小成比例，而不是与索引大小成比例。
+ * 非线程安全，每次检索（每个分片）使用各自的迭代器。
+ */
+public abstract class DocIterator {
+
+    public static final int NO_MORE_DOCS = DocIdSet.NO_MORE_DOCS;
+
+    protected int doc = -1;
+
+    /**
+     * 当前文档，尚未开始时为-1
+     */
+    public final int docID() {
+        return doc;
+    }
+
+    /**
+     * 前进到第一个不小于target的匹配文档并返回，没有时返回 {@link #NO_MORE_DOCS}；
+     * target不大于当前文档时不前进
+     */
+    public abstract int advance(int target);
+
+    /**
+     * 匹配文档数的估计
+     */
+    public abstract long cost();
+
+    /**
+     * 文档是否匹配，连续调用时target须递增
+     */
+    public boolean matches(int target) {
+        return (doc >= target ? doc : advance(target)) == target;
+    }
+
+    /**
+     * 是否可以不遍历直接判断文档是否匹配（如位图），在交集中不驱动遍历时用 {@link #matches} 代替跳跃
+     */
+    public boolean randomAccess() {
+        return false;
+    }
+
+    /**
+     * 不匹配任何文档
+     */
+    public static DocIterator empty() {
+        return new DocIterator() {
+            @Override
+            public int advance(int target) {
+                return doc = NO_MORE_DOCS;
+            }
+
+            @Override
+            public long cost() {
+                return 0;
+            }
+        };
+    }
+
+    /**
+     * 文档集合中的文档
+     */
+    public static DocIterator of(DocIdSet docs) {
+        long cardinality = docs.cardinality();
+        return new DocIterator() {
+            @Override
+            public int advance(int target) {
+                return doc = target <= doc ? doc : docs.nextDoc(target);
+            }
+
+            @Override
+            public long cost() {
+                return cardinality;
+            }
+
+            @Override
+            public boolean matches(int target) {
+                return docs.contains(target);
+            }
+
+            @Override
+            public boolean randomAccess() {
+                return true;
+            }
+        };
+    }
+
+    /**
+     * 位集合中的文档（调用方负责在遍历期间不修改位集合）
+     */
+    public static DocIterator of(BitSet bits, long cardinality) {
+        return new DocIterator() {
+            @Override
+            public int advance(int target) {
+                if (target <= doc) {
+                    return doc;
+                }
+                int next = bits.nextSetBit(target);
+                return doc = next >= 0 ? next : NO_MORE_DOCS;
+            }
+
+            @Override
+            public long cost() {
+                return cardinality;
+            }
+
+            @Override
+            public boolean matches(int target) {
+                return bits.get(target);
+            }
+
+            @Override
+            public boolean randomAccess() {
+                return true;
+            }
+        };
+    }
+
+    /**
+     * 在近似迭代器的文档上再做一次验证（如短语的位置检查），估计值沿用近似迭代器
+     */
+    public static DocIterator filter(DocIterator approximation, IntPredicate check) {
+        return new DocIterator() {
+            @Override
+            public int advance(int target) {
+                if (target <= doc) {
+                    return doc;
+                }
+                int candidate = approximation.advance(target);
+                while (candidate != NO_MORE_DOCS && !check.test(candidate)) {
+                    candidate = approximation.advance(candidate + 1);
+                }
+                return doc = candidate;
+            }
+
+            @Override
+            public long cost() {
+                return approximation.cost();
+            }
+        };
+    }
+
+    /**
+     * 交集：匹配所有required且不匹配任何excluded的文档；required为空时不匹配任何文档
+     */
+    public static DocIterator and(List<DocIterator> required, List<DocIterator> excluded) {
+        if (required.isEmpty()) {
+            return empty();
+        }
+        if (required.size() == 1 && excluded.isEmpty()) {
+            return required.get(0);
+        }
+        return new Conjunction(required, excluded);
+    }
+
+    /**
+     * 并集：匹配任一子迭代器的文档
+     */
+    public static DocIterator or(List<DocIterator> children) {
+        if (children.isEmpty()) {
+            return empty();
+        }
+        return children.size() == 1 ? children.get(0) : new Disjunction(children);
+    }
+
+    private static final class Conjunction extends DocIterator {
+        private final DocIterator lead;
+        private final DocIterator[] others;
+        private final DocIterator[] excluded;
+
+        private Conjunction(List<DocIterator> required, List<DocIterator> excluded) {
+            List<DocIterator> sorted = new ArrayList<>(required);
+            sorted.sort((a, b) -> Long.compare(a.cost(), b.cost()));
+            this.lead = sorted.get(0);
+            this.others = sorted.subList(1, sorted.size()).toArray(new DocIterator[0]);
+            this.excluded = excluded.toArray(new DocIterator[0]);
+        }
+
+        @Override
+        public int advance(int target) {
+            if (target <= doc) {
+                return doc;
+            }
+            int candidate = lead.advance(target);
+            candidates:
+            while (candidate != NO_MORE_DOCS) {
+                for (DocIterator other : others) {
+                    if (other.randomAccess()) {
+                        if (!other.matches(candidate)) {
+                            candidate = lead.advance(candidate + 1);
+                            continue candidates;
+                        }
+                        continue;
+                    }
+                    int next = other.docID() >= candidate ? other.docID() : other.advance(candidate);
+                    if (next != candidate) {
+                        // 其他子句跳过的文档驱动子句也不必再看
+                        candidate = next == NO_MORE_DOCS ? NO_MORE_DOCS : lead.advance(next);
+                        continue candidates;
+                    }
+                }
+                for (DocIterator exclusion : excluded) {
+                    if (exclusion.matches(candidate)) {
+                        candidate = lead.advance(candidate + 1);
+                        continue candidates;
+                    }
+                }
+                break;
+            }
+            return doc = candidate;
+        }
+
+        @Override
+        public long cost() {
+            return lead.cost();
+        }
+    }
+
+    private static final class Disjunction extends DocIterator {
+        private final DocIterator[] children;
+        private final long cost;
+
+        private Disjunction(List<DocIterator> children) {
+            this.children = children.toArray(new DocIterator[0]);
+            long total = 0;
+            for (DocIterator child : this.children) {
+                total += child.cost();
+            }
+            this.cost = total;
+        }
+
+        @Override
+        public int advance(int target) {
+            if (target <= doc) {
+                return doc;
+            }
+            int min = NO_MORE_DOCS;
+            for (DocIterator child : children) {
+                int next = child.docID() >= target ? child.docID() : child.advance(target);
+                min = Math.min(min, next);
+            }
+            return doc = min;
+        }
+
+        @Override
+        public long cost() {
+            return cost;
+        }
+    }
+}
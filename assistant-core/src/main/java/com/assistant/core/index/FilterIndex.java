@@ -0,0 +1,474 @@
+package com.assistant.core.index;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 检索过滤条件的预计算文档集合
+ * 每种文件类型一个文档集合；每个目录一个文档集合，包含该目录下（含子目录）的所有文件，
+ * 文件加入时登记到其所有上级目录。过滤时只需按条件取出集合并求交集，不再逐个检查文件。
+ * 文件大小和修改时间另按取值排序：已合并部分为不可变的排序数组，新的写入先记在未合并部分，
+ * 超过阈值后由写入线程在锁外归并成新的排序数组再替换，检索和写入都不等待重建。
+ * 范围条件的命中数为两次二分查找再按未合并的写入修正；作为交集中最稀有的子句时才取出当前分片内命中的文档，
+ * 否则按文档直接查取值判断。
+ */
+public class FilterIndex {
+
+    private final Map<String, DocIdSet> byType = new HashMap<>();
+    private final Map<String, DocIdSet> byFolder = new HashMap<>();
+    private final Map<Integer, String[]> docKeys = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * 大小和修改时间的已合并部分，只整体替换，不修改
+     */
+    private volatile ValueBase base = ValueBase.EMPTY;
+
+    /**
+     * 尚未合并进base的写入：文档ID到 {大小, 修改时间}，删除的文档两者都为Long.MIN_VALUE；受lock保护
+     */
+    private final Map<Integer, long[]> pending = new HashMap<>();
+
+    /**
+     * 同一时间只有一个写入线程在锁外合并
+     */
+    private final AtomicBoolean merging = new AtomicBoolean();
+
+    /**
+     * 按取值排序的 (取值, 文档ID) 和按文档ID直接查取值的数组，构造后不再修改
+     */
+    private static final class ValueBase {
+        static final ValueBase EMPTY = new ValueBase(new long[2][0], new int[2][0], new long[2][0]);
+
+        final long[][] sortedValues;
+        final int[][] sortedDocs;
+        final long[][] valueByDoc;
+
+        ValueBase(long[][] sortedValues, int[][] sortedDocs, long[][] valueByDoc) {
+            this.sortedValues = sortedValues;
+            this.sortedDocs = sortedDocs;
+            this.valueByDoc = valueByDoc;
+        }
+
+        long value(int field, int docId) {
+            long[] byDoc = valueByDoc[field];
+            return docId < byDoc.length ? byDoc[docId] : Long.MIN_VALUE;
+        }
+    }
+
+    /**
+     * 未合并写入的快照，按文档ID排序
+     */
+    private static final class PendingValues {
+        final int[] docs;
+        final long[][] values;
+
+        PendingValues(int[] docs, long[][] values) {
+            this.docs = docs;
+            this.values = values;
+        }
+    }
+
+    /**
+     * 范围条件的字段：文件大小（字节）
+     */
+    public static final int VALUE_SIZE = 0;
+
+    /**
+     * 范围条件的字段：修改时间（毫秒时间戳）
+     */
+    public static final int VALUE_MODIFIED = 1;
+
+    /**
+     * 未合并写入数的下限，低于它不触发合并
+     */
+    private static final int MIN_MERGE_THRESHOLD = 1024;
+
+    /**
+     * 添加或更新文档的类型、路径、大小和修改时间
+     *
+     * @param folders 文件所在目录及其所有上级目录（已规范化）
+     */
+    public void add(int docId, String fileType, String[] folders, long fileSize, long lastModified) {
+        add(docId, fileType, folders, fileSize, lastModified, true);
+    }
+
+    /**
+     * 仅当文档不存在时添加（用于启动时的批量构建，避免覆盖构建期间写入的新内容）
+     */
+    public void addIfAbsent(int docId, String fileType, String[] folders, long fileSize, long lastModified) {
+        add(docId, fileType, folders, fileSize, lastModified, false);
+    }
+
+    private void add(int docId, String fileType, String[] folders, long fileSize, long lastModified, boolean replace) {
+        boolean merge;
+        lock.writeLock().lock();
+        try {
+            if (docKeys.containsKey(docId)) {
+                if (!replace) {
+                    return;
+                }
+                removeLocked(docId);
+            }
+            String[] keys = new String[folders.length + 1];
+            keys[0] = fileType != null ? fileType : "";
+            get(byType, keys[0]).add(docId);
+            for (int i = 0; i < folders.length; i++) {
+                keys[i + 1] = folders[i];
+                get(byFolder, folders[i]).add(docId);
+            }
+            docKeys.put(docId, keys);
+            pending.put(docId, new long[]{fileSize, lastModified});
+            merge = pending.size() > mergeThreshold();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (merge) {
+            mergePending();
+        }
+    }
+
+    public void remove(int docId) {
+        boolean merge;
+        lock.writeLock().lock();
+        try {
+            removeLocked(docId);
+            merge = pending.size() > mergeThreshold();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (merge) {
+            mergePending();
+        }
+    }
+
+    private void removeLocked(int docId) {
+        String[] keys = docKeys.remove(docId);
+        if (keys == null) {
+            return;
+        }
+        release(byType, keys[0], docId);
+        for (int i = 1; i < keys.length; i++) {
+            release(byFolder, keys[i], docId);
+        }
+        pending.put(docId, new long[]{Long.MIN_VALUE, Long.MIN_VALUE});
+    }
+
+    /**
+     * 满足所有给定条件的文档集合快照；条件为null表示不限制，两个条件都为null时返回null
+     */
+    public DocIdSet filter(String fileType, String folder) {
+        if (fileType == null && folder == null) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            DocIdSet typeDocs = fileType != null ? byType.get(fileType) : null;
+            DocIdSet folderDocs = folder != null ? byFolder.get(folder) : null;
+            if ((fileType != null && typeDocs == null) || (folder != null && folderDocs == null)) {
+                return new DocIdSet();
+            }
+            if (typeDocs != null && folderDocs != null) {
+                return DocIdSet.and(typeDocs, folderDocs);
+            }
+            return (typeDocs != null ? typeDocs : folderDocs).copy();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 取值在 [min, max] 内的文档迭代器，field为 {@link #VALUE_SIZE} 或 {@link #VALUE_MODIFIED}。
+     * 命中数由排序数组二分得到再按未合并的写入修正；驱动遍历时只取出 [docFrom, docTo) 内命中的文档，
+     * 命中区间比分片还大时直接按文档逐个判断，不取出
+     */
+    public DocIterator range(int field, long min, long max, int docFrom, int docTo) {
+        ValueBase values;
+        PendingValues changes;
+        lock.readLock().lock();
+        try {
+            values = base;
+            changes = pendingValues(field);
+        } finally {
+            lock.readLock().unlock();
+        }
+        long[] sorted = values.sortedValues[field];
+        int from = lowerBound(sorted, min);
+        int to = max == Long.MAX_VALUE ? sorted.length : lowerBound(sorted, max + 1);
+        long count = Math.max(0, to - from);
+        int maxDoc = values.valueByDoc[field].length;
+        for (int i = 0; i < changes.docs.length; i++) {
+            int docId = changes.docs[i];
+            if (inRange(values.value(field, docId), min, max)) {
+                count--;
+            }
+            if (inRange(changes.values[0][i], min, max)) {
+                count++;
+            }
+            maxDoc = Math.max(maxDoc, docId + 1);
+        }
+        if (count <= 0) {
+            return DocIterator.empty();
+        }
+        long cost = count;
+        int end = Math.min(docTo, maxDoc);
+        int[] sortedDocs = values.sortedDocs[field];
+        long[] changedValues = changes.values[0];
+        return new DocIterator() {
+            private int[] docs;
+            private int position;
+
+            @Override
+            public int advance(int target) {
+                if (target <= doc) {
+                    return doc;
+                }
+                if (docs == null && (long) (to - from) + changes.docs.length > end - (long) docFrom) {
+                    // 命中区间比分片大：按文档逐个判断比取出再排序便宜
+                    for (int candidate = Math.max(target, docFrom); candidate < end; candidate++) {
+                        if (matches(candidate)) {
+                            return doc = candidate;
+                        }
+                    }
+                    return doc = NO_MORE_DOCS;
+                }
+                if (docs == null) {
+                    docs = collect();
+                }
+                int index = Arrays.binarySearch(docs, position, docs.length, target);
+                position = index >= 0 ? index : -index - 1;
+                return doc = position < docs.length ? docs[position] : NO_MORE_DOCS;
+            }
+
+            /**
+             * 当前分片内命中的文档ID（升序）：已合并部分中取值未被改写的，加上改写后取值命中的
+             */
+            private int[] collect() {
+                int[] collected = new int[16];
+                int n = 0;
+                for (int i = from; i < to; i++) {
+                    int docId = sortedDocs[i];
+                    if (docId >= docFrom && docId < end && Arrays.binarySearch(changes.docs, docId) < 0) {
+                        if (n == collected.length) {
+                            collected = Arrays.copyOf(collected, n * 2);
+                        }
+                        collected[n++] = docId;
+                    }
+                }
+                for (int i = 0; i < changes.docs.length; i++) {
+                    int docId = changes.docs[i];
+                    if (docId >= docFrom && docId < end && inRange(changedValues[i], min, max)) {
+                        if (n == collected.length) {
+                            collected = Arrays.copyOf(collected, n * 2);
+                        }
+                        collected[n++] = docId;
+                    }
+                }
+                int[] result = Arrays.copyOf(collected, n);
+                Arrays.sort(result);
+                return result;
+            }
+
+            @Override
+            public long cost() {
+                return cost;
+            }
+
+            @Override
+            public boolean matches(int target) {
+                int index = changes.docs.length > 0 ? Arrays.binarySearch(changes.docs, target) : -1;
+                return inRange(index >= 0 ? changedValues[index] : values.value(field, target), min, max);
+            }
+
+            @Override
+            public boolean randomAccess() {
+                return true;
+            }
+        };
+    }
+
+    private static boolean inRange(long value, long min, long max) {
+        return value != Long.MIN_VALUE && value >= min && value <= max;
+    }
+
+    /**
+     * 未合并写入中一个字段的快照（field为-1时取两个字段），调用方持有锁
+     */
+    private PendingValues pendingValues(int field) {
+        int[] docs = new int[pending.size()];
+        int n = 0;
+        for (Integer docId : pending.keySet()) {
+            docs[n++] = docId;
+        }
+        Arrays.sort(docs);
+        int fields = field < 0 ? 2 : 1;
+        long[][] values = new long[fields][docs.length];
+        for (int i = 0; i < docs.length; i++) {
+            long[] docValues = pending.get(docs[i]);
+            for (int f = 0; f < fields; f++) {
+                values[f][i] = docValues[field < 0 ? f : field];
+            }
+        }
+        return new PendingValues(docs, values);
+    }
+
+    /**
+     * 触发合并的未合并写入数：合并代价与文档总数成正比，范围查询复制未合并部分的代价与阈值成正比，
+     * 取文档数平方根的量级使两者均衡
+     */
+    private int mergeThreshold() {
+        return Math.max(MIN_MERGE_THRESHOLD, (int) Math.sqrt(docKeys.size()) * 4);
+    }
+
+    /**
+     * 把未合并的写入归并进新的排序数组：在锁内取快照，锁外线性归并（已合并部分本身有序，只需对未合并部分排序），
+     * 再在锁内替换并去掉合并期间没有再变化的写入。已有线程在合并时直接返回
+     */
+    private void mergePending() {
+        if (!merging.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            ValueBase values;
+            PendingValues changes;
+            lock.readLock().lock();
+            try {
+                values = base;
+                changes = pendingValues(-1);
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            ValueBase merged = merge(values, changes);
+
+            lock.writeLock().lock();
+            try {
+                base = merged;
+                for (int i = 0; i < changes.docs.length; i++) {
+                    long[] current = pending.get(changes.docs[i]);
+                    if (current != null && current[0] == changes.values[0][i] && current[1] == changes.values[1][i]) {
+                        pending.remove(changes.docs[i]);
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            merging.set(false);
+        }
+    }
+
+    private static ValueBase merge(ValueBase values, PendingValues changes) {
+        int maxDoc = 0;
+        for (int field = 0; field < 2; field++) {
+            maxDoc = Math.max(maxDoc, values.valueByDoc[field].length);
+        }
+        if (changes.docs.length > 0) {
+            maxDoc = Math.max(maxDoc, changes.docs[changes.docs.length - 1] + 1);
+        }
+        BitSet changedDocs = new BitSet(maxDoc);
+        for (int docId : changes.docs) {
+            changedDocs.set(docId);
+        }
+        long[][] sortedValues = new long[2][];
+        int[][] sortedDocs = new int[2][];
+        long[][] valueByDoc = new long[2][];
+        for (int field = 0; field < 2; field++) {
+            long[] byDoc = Arrays.copyOf(values.valueByDoc[field], maxDoc);
+            Arrays.fill(byDoc, values.valueByDoc[field].length, maxDoc, Long.MIN_VALUE);
+            long[] changed = changes.values[field];
+            for (int i = 0; i < changes.docs.length; i++) {
+                byDoc[changes.docs[i]] = changed[i];
+            }
+
+            // 未合并部分中有取值的写入按取值排序
+            Integer[] order = new Integer[changes.docs.length];
+            int m = 0;
+            for (int i = 0; i < changes.docs.length; i++) {
+                if (changed[i] != Long.MIN_VALUE) {
+                    order[m++] = i;
+                }
+            }
+            Arrays.sort(order, 0, m, (a, b) -> Long.compare(changed[a], changed[b]));
+
+            // 与已合并部分中未被改写的条目线性归并
+            long[] oldValues = values.sortedValues[field];
+            int[] oldDocs = values.sortedDocs[field];
+            long[] sorted = new long[oldValues.length + m];
+            int[] docs = new int[sorted.length];
+            int n = 0;
+            int j = 0;
+            for (int i = 0; i < oldValues.length; i++) {
+                if (changedDocs.get(oldDocs[i])) {
+                    continue;
+                }
+                while (j < m && changed[order[j]] < oldValues[i]) {
+                    sorted[n] = changed[order[j]];
+                    docs[n++] = changes.docs[order[j++]];
+                }
+                sorted[n] = oldValues[i];
+                docs[n++] = oldDocs[i];
+            }
+            while (j < m) {
+                sorted[n] = changed[order[j]];
+                docs[n++] = changes.docs[order[j++]];
+            }
+            sortedValues[field] = Arrays.copyOf(sorted, n);
+            sortedDocs[field] = Arrays.copyOf(docs, n);
+            valueByDoc[field] = byDoc;
+        }
+        return new ValueBase(sortedValues, sortedDocs, valueByDoc);
+    }
+
+    /**
+     * 第一个不小于value的位置
+     */
+    private static int lowerBound(long[] sorted, long value) {
+        int lo = 0;
+        int hi = sorted.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sorted[mid] < value) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * 已登记的文档数量
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docKeys.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static DocIdSet get(Map<String, DocIdSet> sets, String key) {
+        DocIdSet docs = sets.get(key);
+        if (docs == null) {
+            docs = new DocIdSet();
+            sets.put(key, docs);
+        }
+        return docs;
+    }
+
+    private static void release(Map<String, DocIdSet> sets, String key, int docId) {
+        DocIdSet docs = sets.get(key);
+        if (docs != null) {
+            docs.remove(docId);
+            if (docs.isEmpty()) {
+                sets.remove(key);
+            }
+        }
+    }
+}
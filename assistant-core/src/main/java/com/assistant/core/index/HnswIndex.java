@@ -0,0 +1,492 @@
+package com.assistant.core.index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * HNSW（Hierarchical Navigable Small World）近似最近邻索引
+ * 图只保存节点与连接，向量从 {@link VectorStore} 按文档ID读取，要求已归一化，相似度为内积（即余弦相似度）。
+ * 删除采用墓碑标记：被删除的节点仍参与图遍历以保持连通性，但不会出现在结果中；
+ * 同一文档重新插入时旧节点被标记删除。
+ */
+public class HnswIndex {
+
+    private static final int MAGIC = 0x484E5357; // "HNSW"
+    private static final int VERSION = 2;
+
+    private final VectorStore store;
+    private final int dimension;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final Random random = new Random(42);
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private int nodeCount;
+    private int[] nodeDocs = new int[1024];
+    private int[] nodeLevels = new int[1024];
+    // links[node][level] = [邻居数量, 邻居1, 邻居2, ...]
+    private int[][][] links = new int[1024][][];
+    private final BitSet deleted = new BitSet();
+    private int deletedCount;
+    private int[] docToNode = newDocToNode(1024);
+
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    public HnswIndex(VectorStore store, int m, int efConstruction) {
+        this.store = store;
+        this.dimension = store.getDimension();
+        this.m = m;
+        this.maxM0 = m * 2;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1.0 / Math.log(m);
+    }
+
+    /**
+     * 插入或替换文档，向量需已写入向量存储
+     */
+    public void insert(int docId) {
+        if (!store.contains(docId)) {
+            throw new IllegalArgumentException("向量存储中不存在文档: " + docId);
+        }
+        float[] normalized = new float[dimension];
+        store.get(docId, normalized);
+
+        lock.writeLock().lock();
+        try {
+            markDeleted(docId);
+
+            int node = nodeCount++;
+            ensureNodeCapacity(nodeCount);
+            int level = randomLevel();
+            nodeDocs[node] = docId;
+            nodeLevels[node] = level;
+            links[node] = new int[level + 1][];
+            for (int l = 0; l <= level; l++) {
+                links[node][l] = new int[1 + maxConnections(l)];
+            }
+            ensureDocCapacity(docId);
+            docToNode[docId] = node;
+
+            if (entryPoint < 0) {
+                entryPoint = node;
+                maxLevel = level;
+                return;
+            }
+
+            // 从顶层贪心下降到新节点所在层
+            int current = entryPoint;
+            for (int l = maxLevel; l > level; l--) {
+                current = greedyClosest(normalized, current, l);
+            }
+
+            // 逐层搜索候选并建立双向连接
+            for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+                ScoreHeap candidates = searchLayer(normalized, current, efConstruction, l);
+                int[] neighbors = selectNeighbors(normalized, candidates, maxConnections(l));
+                int[] nodeLinks = links[node][l];
+                for (int neighbor : neighbors) {
+                    nodeLinks[++nodeLinks[0]] = neighbor;
+                    addLink(neighbor, node, l);
+                }
+                current = bestOf(candidates);
+            }
+
+            if (level > maxLevel) {
+                entryPoint = node;
+                maxLevel = level;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 删除文档向量
+     */
+    public boolean remove(int docId) {
+        lock.writeLock().lock();
+        try {
+            return markDeleted(docId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean markDeleted(int docId) {
+        if (docId >= docToNode.length || docToNode[docId] < 0) {
+            return false;
+        }
+        deleted.set(docToNode[docId]);
+        docToNode[docId] = -1;
+        deletedCount++;
+        return true;
+    }
+
+    /**
+     * 检索与查询向量最相似的k个文档，ef越大召回率越高
+     */
+    public ScoredDocs search(float[] query, int k, int ef) {
+        ScoredDocs results = new ScoredDocs(k);
+        if (query == null || query.length != dimension || k <= 0) {
+            return results;
+        }
+        float[] normalized = normalize(query);
+
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0) {
+                return results;
+            }
+            int current = entryPoint;
+            for (int l = maxLevel; l > 0; l--) {
+                current = greedyClosest(normalized, current, l);
+            }
+            // 多取一些以抵消墓碑节点
+            ScoreHeap nearest = searchLayer(normalized, current, Math.max(ef, k) + Math.min(deletedCount, k), 0);
+            ScoreHeap best = new ScoreHeap(k + 1, true);
+            for (int i = 0; i < nearest.size(); i++) {
+                int node = nearest.idAt(i);
+                if (deleted.get(node)) {
+                    continue;
+                }
+                best.push(node, nearest.scoreAt(i));
+                if (best.size() > k) {
+                    best.pop();
+                }
+            }
+            for (int i = 0; i < best.size(); i++) {
+                results.add(nodeDocs[best.idAt(i)], best.scoreAt(i));
+            }
+            results.sortByScore();
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 在指定层上做贪心搜索，返回局部最近的节点
+     */
+    private int greedyClosest(float[] query, int start, int level) {
+        int current = start;
+        float currentScore = similarity(query, current);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            int[] nodeLinks = links[current][level];
+            for (int i = 1; i <= nodeLinks[0]; i++) {
+                int neighbor = nodeLinks[i];
+                float score = similarity(query, neighbor);
+                if (score > currentScore) {
+                    current = neighbor;
+                    currentScore = score;
+                    changed = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 在指定层上做束搜索，返回最多ef个最近节点（最小堆，堆顶为其中最不相似的）
+     */
+    private ScoreHeap searchLayer(float[] query, int entry, int ef, int level) {
+        BitSet visited = new BitSet(nodeCount);
+        ScoreHeap candidates = new ScoreHeap(ef * 2, false);
+        ScoreHeap nearest = new ScoreHeap(ef + 1, true);
+
+        float entryScore = similarity(query, entry);
+        visited.set(entry);
+        candidates.push(entry, entryScore);
+        nearest.push(entry, entryScore);
+
+        while (!candidates.isEmpty()) {
+            float candidateScore = candidates.topScore();
+            if (nearest.size() >= ef && candidateScore < nearest.topScore()) {
+                break;
+            }
+            int candidate = candidates.pop();
+            int[] nodeLinks = links[candidate][level];
+            for (int i = 1; i <= nodeLinks[0]; i++) {
+                int neighbor = nodeLinks[i];
+                if (visited.get(neighbor)) {
+                    continue;
+                }
+                visited.set(neighbor);
+                float score = similarity(query, neighbor);
+                if (nearest.size() < ef || score > nearest.topScore()) {
+                    candidates.push(neighbor, score);
+                    nearest.push(neighbor, score);
+                    if (nearest.size() > ef) {
+                        nearest.pop();
+                    }
+                }
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * 启发式邻居选择：优先保留与已选邻居不相近的候选，使连接覆盖不同方向
+     */
+    private int[] selectNeighbors(float[] base, ScoreHeap candidates, int maxCount) {
+        int size = candidates.size();
+        int[] ordered = new int[size];
+        float[] orderedScores = new float[size];
+        // 最小堆依次弹出得到升序，倒序填充得到降序
+        ScoreHeap copy = new ScoreHeap(size, true);
+        for (int i = 0; i < size; i++) {
+            copy.push(candidates.idAt(i), candidates.scoreAt(i));
+        }
+        for (int i = size - 1; i >= 0; i--) {
+            orderedScores[i] = copy.topScore();
+            ordered[i] = copy.pop();
+        }
+        return selectNeighbors(ordered, orderedScores, size, maxCount);
+    }
+
+    private int[] selectNeighbors(int[] ordered, float[] orderedScores, int size, int maxCount) {
+        int[] selected = new int[Math.min(size, maxCount)];
+        int count = 0;
+        boolean[] taken = new boolean[size];
+        for (int i = 0; i < size && count < selected.length; i++) {
+            int candidate = ordered[i];
+            boolean diverse = true;
+            for (int j = 0; j < count; j++) {
+                if (similarity(candidate, selected[j]) > orderedScores[i]) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected[count++] = candidate;
+                taken[i] = true;
+            }
+        }
+        // 不足时用被剔除的最近候选补齐
+        for (int i = 0; i < size && count < selected.length; i++) {
+            if (!taken[i]) {
+                selected[count++] = ordered[i];
+            }
+        }
+        return count == selected.length ? selected : Arrays.copyOf(selected, count);
+    }
+
+    /**
+     * 为节点添加一条连接，超出上限时重新选择邻居
+     */
+    private void addLink(int node, int neighbor, int level) {
+        int[] nodeLinks = links[node][level];
+        int count = nodeLinks[0];
+        if (count < nodeLinks.length - 1) {
+            nodeLinks[++nodeLinks[0]] = neighbor;
+            return;
+        }
+
+        int size = count + 1;
+        int[] ordered = new int[size];
+        float[] orderedScores = new float[size];
+        ScoreHeap heap = new ScoreHeap(size, true);
+        for (int i = 1; i <= count; i++) {
+            heap.push(nodeLinks[i], similarity(node, nodeLinks[i]));
+        }
+        heap.push(neighbor, similarity(node, neighbor));
+        for (int i = size - 1; i >= 0; i--) {
+            orderedScores[i] = heap.topScore();
+            ordered[i] = heap.pop();
+        }
+        int[] selected = selectNeighbors(ordered, orderedScores, size, count);
+        nodeLinks[0] = selected.length;
+        System.arraycopy(selected, 0, nodeLinks, 1, selected.length);
+    }
+
+    private int bestOf(ScoreHeap heap) {
+        int best = heap.idAt(0);
+        float bestScore = heap.scoreAt(0);
+        for (int i = 1; i < heap.size(); i++) {
+            if (heap.scoreAt(i) > bestScore) {
+                best = heap.idAt(i);
+                bestScore = heap.scoreAt(i);
+            }
+        }
+        return best;
+    }
+
+    private int maxConnections(int level) {
+        return level == 0 ? maxM0 : m;
+    }
+
+    private int randomLevel() {
+        return (int) Math.floor(-Math.log(1.0 - random.nextDouble()) * levelMultiplier);
+    }
+
+    private float similarity(float[] query, int node) {
+        return store.dot(nodeDocs[node], query);
+    }
+
+    private float similarity(int node1, int node2) {
+        return store.dot(nodeDocs[node1], nodeDocs[node2]);
+    }
+
+    /**
+     * 归一化为单位向量，零向量返回全零
+     */
+    public static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        float[] normalized = new float[vector.length];
+        if (norm == 0) {
+            return normalized;
+        }
+        float scale = (float) (1.0 / Math.sqrt(norm));
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = vector[i] * scale;
+        }
+        return normalized;
+    }
+
+    private void ensureNodeCapacity(int capacity) {
+        if (capacity > nodeDocs.length) {
+            int newCapacity = Math.max(capacity, nodeDocs.length * 2);
+            nodeDocs = Arrays.copyOf(nodeDocs, newCapacity);
+            nodeLevels = Arrays.copyOf(nodeLevels, newCapacity);
+            links = Arrays.copyOf(links, newCapacity);
+        }
+    }
+
+    private void ensureDocCapacity(int docId) {
+        if (docId >= docToNode.length) {
+            int oldLength = docToNode.length;
+            docToNode = Arrays.copyOf(docToNode, Math.max(docId + 1, oldLength * 2));
+            Arrays.fill(docToNode, oldLength, docToNode.length, -1);
+        }
+    }
+
+    private static int[] newDocToNode(int capacity) {
+        int[] mapping = new int[capacity];
+        Arrays.fill(mapping, -1);
+        return mapping;
+    }
+
+    /**
+     * 持久化到文件（先写临时文件再原子替换）
+     */
+    public void save(Path file) throws IOException {
+        lock.readLock().lock();
+        try {
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(dimension);
+                out.writeInt(m);
+                out.writeInt(nodeCount);
+                out.writeInt(entryPoint);
+                out.writeInt(maxLevel);
+                for (int node = 0; node < nodeCount; node++) {
+                    out.writeInt(nodeDocs[node]);
+                    out.writeInt(nodeLevels[node]);
+                    out.writeBoolean(deleted.get(node));
+                    for (int l = 0; l <= nodeLevels[node]; l++) {
+                        int[] nodeLinks = links[node][l];
+                        out.writeInt(nodeLinks[0]);
+                        for (int i = 1; i <= nodeLinks[0]; i++) {
+                            out.writeInt(nodeLinks[i]);
+                        }
+                    }
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 从文件加载，参数不一致时抛出IOException
+     */
+    public static HnswIndex load(Path file, VectorStore store, int m, int efConstruction) throws IOException {
+        int dimension = store.getDimension();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("HNSW索引文件格式不正确: " + file);
+            }
+            if (in.readInt() != dimension || in.readInt() != m) {
+                throw new IOException("HNSW索引参数与配置不一致: " + file);
+            }
+
+            HnswIndex index = new HnswIndex(store, m, efConstruction);
+            int count = in.readInt();
+            index.ensureNodeCapacity(count);
+            index.nodeCount = count;
+            index.entryPoint = in.readInt();
+            index.maxLevel = in.readInt();
+            for (int node = 0; node < count; node++) {
+                int docId = in.readInt();
+                int level = in.readInt();
+                boolean isDeleted = in.readBoolean();
+                index.nodeDocs[node] = docId;
+                index.nodeLevels[node] = level;
+                index.links[node] = new int[level + 1][];
+                for (int l = 0; l <= level; l++) {
+                    int[] nodeLinks = new int[1 + index.maxConnections(l)];
+                    nodeLinks[0] = in.readInt();
+                    for (int i = 1; i <= nodeLinks[0]; i++) {
+                        nodeLinks[i] = in.readInt();
+                    }
+                    index.links[node][l] = nodeLinks;
+                }
+                if (isDeleted) {
+                    index.deleted.set(node);
+                    index.deletedCount++;
+                } else {
+                    if (!store.contains(docId)) {
+                        throw new IOException("HNSW索引与向量存储不一致，缺少文档: " + docId);
+                    }
+                    index.ensureDocCapacity(docId);
+                    index.docToNode[docId] = node;
+                }
+            }
+            return index;
+        }
+    }
+
+    /**
+     * 有效（未删除）的向量数量
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return nodeCount - deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 被标记删除的节点数量
+     */
+    public int getDeletedCount() {
+        lock.readLock().lock();
+        try {
+            return deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,1152 @@
+package com.assistant.core.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 常驻内存的倒排索引，使用BM25打分
+ * 每个词的倒排表以按文档ID升序排列的int数组保存（文档ID即file_index.id），
+ * 同时保存正排的词ID列表以支持增量删除和更新。
+ * 文档数较多的词另外维护一个冠军表（按词项得分保留前若干个文档），用于代价与语料规模无关的快速预览检索。
+ * 词典另外按前缀树组织，模糊检索时与编辑距离自动机同步遍历，找出拼写相近的词。
+ * 每个文档的词位置和字符偏移按词ID分段、差值变长编码后存为一个字节数组，
+ * 短语和邻近查询通过合并位置列表求值，高亮时直接取出命中的字符偏移，都不需要重新扫描正文。
+ */
+public class InvertedIndex {
+
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+
+    /**
+     * 倒排表长度达到该值的词才维护冠军表，更短的倒排表预览时直接遍历
+     */
+    private static final int CHAMPION_THRESHOLD = 256;
+    private static final int CHAMPION_SIZE = 128;
+
+    /**
+     * 模糊检索时每个查询词最多扩展的词数（编辑距离小的优先，其次文档数多的优先）
+     */
+    private static final int MAX_EXPANSIONS = 32;
+
+    /**
+     * 模糊检索的最短词长，更短的词只做精确匹配
+     */
+    private static final int FUZZY_MIN_LENGTH = 3;
+
+    private final TextAnalyzer analyzer;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // 词典
+    private final Map<String, Integer> termIds = new HashMap<>();
+    private String[] terms = new String[1024];
+    private int termCount;
+    private final TermNode termTrie = new TermNode();
+
+    // 倒排表：postingDocs[termId][0..postingSizes[termId]) 升序
+    private int[][] postingDocs = new int[1024][];
+    private int[][] postingFreqs = new int[1024][];
+    private int[] postingSizes = new int[1024];
+
+    // 冠军表：championDocs[termId] 为null表示该词没有冠军表，无序保存
+    private int[][] championDocs = new int[1024][];
+    private float[][] championImpacts = new float[1024][];
+    private int[] championSizes = new int[1024];
+
+    // 正排信息：docTermIds[docId] 按词ID升序
+    private int[] docLengths = new int[1024];
+    private int[][] docTermIds = new int[1024][];
+
+    // 位置信息：docPositions[docId] 中第i个词（docTermIds[docId][i]）的出现记录位于
+    // [docPositionStarts[docId][i], docPositionStarts[docId][i + 1])，每次出现依次为
+    // 位置差值、起始偏移差值、字符长度三个变长整数（差值相对该词的上一次出现）
+    private byte[][] docPositions = new byte[1024][];
+    private int[][] docPositionStarts = new int[1024][];
+    private final BitSet liveDocs = new BitSet();
+    private int docCount;
+    private long totalLength;
+
+    public InvertedIndex(TextAnalyzer analyzer) {
+        this.analyzer = analyzer;
+    }
+
+    /**
+     * 添加或替换文档
+     */
+    public void addDocument(int docId, String text) {
+        addDocument(docId, text, true);
+    }
+
+    /**
+     * 仅当文档不存在时添加（用于启动时的批量构建，避免覆盖构建期间写入的新内容）
+     */
+    public void addDocumentIfAbsent(int docId, String text) {
+        addDocument(docId, text, false);
+    }
+
+    private void addDocument(int docId, String text, boolean replace) {
+        // 分词在锁外完成
+        final Map<String, Occurrences> frequencies = new LinkedHashMap<>();
+        final int[] length = new int[1];
+        analyzer.analyze(text, (term, position, startOffset, endOffset) -> {
+            Occurrences occurrences = frequencies.get(term);
+            if (occurrences == null) {
+                occurrences = new Occurrences();
+                frequencies.put(term, occurrences);
+            }
+            occurrences.add(position, startOffset, endOffset - startOffset);
+            length[0]++;
+        });
+
+        lock.writeLock().lock();
+        try {
+            if (liveDocs.get(docId)) {
+                if (!replace) {
+                    return;
+                }
+                removeDocumentLocked(docId);
+            }
+
+            ensureDocCapacity(docId);
+            docLengths[docId] = length[0];
+            totalLength += length[0];
+            docCount++;
+
+            int[] tids = new int[frequencies.size()];
+            Occurrences[] byTerm = new Occurrences[tids.length];
+            int t = 0;
+            for (Map.Entry<String, Occurrences> entry : frequencies.entrySet()) {
+                int termId = getOrCreateTermId(entry.getKey());
+                int freq = entry.getValue().count;
+                insertPosting(termId, docId, freq);
+                updateChampions(termId, docId, freq);
+                tids[t] = termId;
+                byTerm[t++] = entry.getValue();
+            }
+            storePositions(docId, tids, byTerm);
+            liveDocs.set(docId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 删除文档
+     */
+    public void removeDocument(int docId) {
+        lock.writeLock().lock();
+        try {
+            if (liveDocs.get(docId)) {
+                removeDocumentLocked(docId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeDocumentLocked(int docId) {
+        for (int termId : docTermIds[docId]) {
+            int[] docs = postingDocs[termId];
+            int size = postingSizes[termId];
+            int index = Arrays.binarySearch(docs, 0, size, docId);
+            if (index >= 0) {
+                int moved = size - index - 1;
+                System.arraycopy(docs, index + 1, docs, index, moved);
+                System.arraycopy(postingFreqs[termId], index + 1, postingFreqs[termId], index, moved);
+                postingSizes[termId] = size - 1;
+            }
+            removeChampion(termId, docId);
+        }
+        totalLength -= docLengths[docId];
+        docTermIds[docId] = null;
+        docPositions[docId] = null;
+        docPositionStarts[docId] = null;
+        docLengths[docId] = 0;
+        liveDocs.clear(docId);
+        docCount--;
+    }
+
+    /**
+     * BM25检索，命中文档逐个交给收集器
+     */
+    public void search(String query, TopKCollector collector) {
+        search(query, 0, Integer.MAX_VALUE, collector);
+    }
+
+    /**
+     * 只对文档ID在 [docFrom, docTo) 范围内的文档做BM25检索（用于分片并行检索）
+     * IDF和平均文档长度仍按全量统计，各分片分数可直接合并比较。
+     */
+    public void search(String query, int docFrom, int docTo, TopKCollector collector) {
+        search(query, docFrom, docTo, null, collector);
+    }
+
+    /**
+     * 带过滤条件的分片BM25检索：只对过滤集合中的文档打分，
+     * 倒排表与过滤集合交替跳跃前进（leapfrog），不满足条件的文档不参与打分
+     *
+     * @param filter 允许的文档集合，null表示不过滤
+     */
+    public void search(String query, int docFrom, int docTo, DocIdSet filter, TopKCollector collector) {
+        search(parseQuery(query, false), docFrom, docTo, filter, collector);
+    }
+
+    /**
+     * 解析查询：词及其权重（重复出现的词累加权重）和短语、邻近位置约束，见 {@link TextQuery}。
+     * 模糊检索时不在位置约束中、长度不小于3的英文词扩展为编辑距离不超过1（词长6以上为2）的所有词，
+     * 扩展词的权重按编辑距离相对词长打折
+     */
+    public TextQuery parseQuery(String query, boolean fuzzy) {
+        TextQuery parsed = TextQuery.parse(query, analyzer);
+        if (!fuzzy) {
+            return parsed;
+        }
+
+        Set<String> exact = new HashSet<>();
+        for (TextQuery.Proximity constraint : parsed.getConstraints()) {
+            Collections.addAll(exact, constraint.left.terms);
+            if (constraint.right != null) {
+                Collections.addAll(exact, constraint.right.terms);
+            }
+        }
+        Map<String, Float> expanded = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            for (Map.Entry<String, Float> entry : parsed.getTerms().entrySet()) {
+                String term = entry.getKey();
+                if (exact.contains(term) || !isFuzzyCandidate(term)) {
+                    expanded.merge(term, entry.getValue(), Math::max);
+                    continue;
+                }
+                int maxEdits = term.length() >= 6 ? 2 : 1;
+                for (long expansion : expand(new LevenshteinAutomaton(term, maxEdits))) {
+                    int distance = (int) (expansion >>> 32);
+                    float boost = 1f - distance / (float) (term.length() + 1);
+                    expanded.merge(terms[(int) expansion], entry.getValue() * boost, Math::max);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return new TextQuery(expanded, parsed.getConstraints());
+    }
+
+    /**
+     * 按解析后的查询做带过滤条件的分片检索：没有位置约束时为普通BM25检索；
+     * 有位置约束时先按文档数从少到多对约束中所有词的倒排表求交集（跳跃前进），
+     * 再对候选文档合并位置列表验证约束，满足的文档按全部查询词的BM25打分
+     */
+    public void search(TextQuery query, int docFrom, int docTo, DocIdSet filter, TopKCollector collector) {
+        if (!query.hasConstraints()) {
+            search(query.getTerms(), docFrom, docTo, filter, collector);
+            return;
+        }
+
+        lock.readLock().lock();
+        try {
+            Set<String> required = new LinkedHashSet<>();
+            for (TextQuery.Proximity constraint : query.getConstraints()) {
+                Collections.addAll(required, constraint.left.terms);
+                if (constraint.right != null) {
+                    Collections.addAll(required, constraint.right.terms);
+                }
+            }
+            Integer[] requiredIds = new Integer[required.size()];
+            int r = 0;
+            for (String term : required) {
+                Integer termId = termIds.get(term);
+                if (termId == null || postingSizes[termId] == 0) {
+                    return;
+                }
+                requiredIds[r++] = termId;
+            }
+            Arrays.sort(requiredIds, (a, b) -> Integer.compare(postingSizes[a], postingSizes[b]));
+
+            int n = 0;
+            int[] scoreTermIds = new int[query.getTerms().size()];
+            float[] weights = new float[scoreTermIds.length];
+            for (Map.Entry<String, Float> entry : query.getTerms().entrySet()) {
+                Integer termId = termIds.get(entry.getKey());
+                if (termId != null && postingSizes[termId] > 0) {
+                    scoreTermIds[n] = termId;
+                    weights[n++] = idf(postingSizes[termId]) * entry.getValue();
+                }
+            }
+            float avgLength = docCount > 0 ? (float) totalLength / docCount : 1f;
+
+            int lead = requiredIds[0];
+            int[] positions = new int[requiredIds.length];
+            int start = Arrays.binarySearch(postingDocs[lead], 0, postingSizes[lead], docFrom);
+            candidates:
+            for (int i = start >= 0 ? start : -start - 1; i < postingSizes[lead]; i++) {
+                int doc = postingDocs[lead][i];
+                if (doc >= docTo) {
+                    break;
+                }
+                for (int k = 1; k < requiredIds.length; k++) {
+                    int termId = requiredIds[k];
+                    positions[k] = advance(postingDocs[termId], positions[k], postingSizes[termId], doc);
+                    if (positions[k] >= postingSizes[termId]) {
+                        break candidates;
+                    }
+                    if (postingDocs[termId][positions[k]] != doc) {
+                        continue candidates;
+                    }
+                }
+                if (filter != null && !filter.contains(doc)) {
+                    continue;
+                }
+                for (TextQuery.Proximity constraint : query.getConstraints()) {
+                    if (!matches(doc, constraint)) {
+                        continue candidates;
+                    }
+                }
+
+                collector.collect(doc, score(doc, scoreTermIds, weights, n, avgLength));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 布尔查询检索：由语法树构造文档迭代器作为执行计划，每个交集按子句的估计命中数从少到多排列，
+     * 最稀有的子句驱动遍历，其余子句跳跃前进或直接判断，代价与最稀有的子句成比例；
+     * 命中的文档按scoreTerms中的词做BM25打分
+     *
+     * @param scoreTerms 参与打分的词及权重，通常为 {@link #parseQuery} 解析全部正向文本子句的结果
+     * @param fuzzy      文本子句中的英文词是否匹配拼写相近的词
+     * @param resolver   字段条件的文档迭代器
+     * @param filter     允许的文档集合，null表示不过滤
+     */
+    public void search(BooleanQuery query, Map<String, Float> scoreTerms, boolean fuzzy, BooleanQuery.FieldResolver resolver,
+                       int docFrom, int docTo, DocIdSet filter, TopKCollector collector) {
+        lock.readLock().lock();
+        try {
+            DocIterator plan = plan(query.getRoot(), fuzzy, resolver, docFrom, docTo);
+            if (filter != null) {
+                plan = DocIterator.and(Arrays.asList(plan, DocIterator.of(filter)), Collections.<DocIterator>emptyList());
+            }
+
+            int n = 0;
+            int[] scoreTermIds = new int[scoreTerms.size()];
+            float[] weights = new float[scoreTermIds.length];
+            for (Map.Entry<String, Float> entry : scoreTerms.entrySet()) {
+                Integer termId = termIds.get(entry.getKey());
+                if (termId != null && postingSizes[termId] > 0) {
+                    scoreTermIds[n] = termId;
+                    weights[n++] = idf(postingSizes[termId]) * entry.getValue();
+                }
+            }
+            float avgLength = docCount > 0 ? (float) totalLength / docCount : 1f;
+
+            for (int doc = plan.advance(docFrom); doc < docTo; doc = plan.advance(doc + 1)) {
+                // 字段条件来自过滤索引，可能包含尚未进入倒排索引的文件
+                if (liveDocs.get(doc)) {
+                    collector.collect(doc, score(doc, scoreTermIds, weights, n, avgLength));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 由语法树节点构造文档迭代器，调用方持有读锁
+     */
+    private DocIterator plan(BooleanQuery.Node node, boolean fuzzy, BooleanQuery.FieldResolver resolver, int docFrom, int docTo) {
+        if (node instanceof BooleanQuery.Text) {
+            return textIterator(((BooleanQuery.Text) node).getText(), fuzzy, docTo);
+        }
+        if (node instanceof BooleanQuery.Field) {
+            DocIterator docs = resolver.resolve((BooleanQuery.Field) node, docFrom, docTo);
+            return docs != null ? docs : DocIterator.empty();
+        }
+        BooleanQuery.Group group = (BooleanQuery.Group) node;
+        List<DocIterator> required = new ArrayList<>();
+        for (BooleanQuery.Node child : group.getRequired()) {
+            required.add(plan(child, fuzzy, resolver, docFrom, docTo));
+        }
+        if (!group.getOptional().isEmpty()) {
+            List<DocIterator> optional = new ArrayList<>();
+            for (BooleanQuery.Node child : group.getOptional()) {
+                optional.add(plan(child, fuzzy, resolver, docFrom, docTo));
+            }
+            required.add(DocIterator.or(optional));
+        }
+        List<DocIterator> excluded = new ArrayList<>();
+        for (BooleanQuery.Node child : group.getExcluded()) {
+            excluded.add(plan(child, fuzzy, resolver, docFrom, docTo));
+        }
+        if (required.isEmpty() && !excluded.isEmpty()) {
+            // 只有NOT子句时从全部文档中排除
+            required.add(DocIterator.of(liveDocs, docCount));
+        }
+        return DocIterator.and(required, excluded);
+    }
+
+    /**
+     * 文本子句的文档迭代器：短语和邻近条件为各词倒排表的交集再验证位置，
+     * 普通词要求分出的所有词都出现（模糊时每个词匹配任一拼写相近的词）
+     */
+    private DocIterator textIterator(String text, boolean fuzzy, int docTo) {
+        TextQuery leaf = TextQuery.parse(text, analyzer);
+        List<DocIterator> required = new ArrayList<>();
+        if (leaf.hasConstraints()) {
+            for (String term : leaf.getTerms().keySet()) {
+                required.add(postingIterator(termIds.get(term), docTo));
+            }
+            DocIterator approximation = DocIterator.and(required, Collections.<DocIterator>emptyList());
+            return DocIterator.filter(approximation, doc -> {
+                for (TextQuery.Proximity constraint : leaf.getConstraints()) {
+                    if (!matches(doc, constraint)) {
+                        return false;
+                    }
+                }
+                return true;
+            });
+        }
+        for (String term : leaf.getTerms().keySet()) {
+            if (fuzzy && isFuzzyCandidate(term)) {
+                List<DocIterator> alternatives = new ArrayList<>();
+                for (long expansion : expand(new LevenshteinAutomaton(term, term.length() >= 6 ? 2 : 1))) {
+                    alternatives.add(postingIterator((int) expansion, docTo));
+                }
+                required.add(DocIterator.or(alternatives));
+            } else {
+                required.add(postingIterator(termIds.get(term), docTo));
+            }
+        }
+        return DocIterator.and(required, Collections.<DocIterator>emptyList());
+    }
+
+    /**
+     * 倒排表迭代器，只遍历小于docTo的文档，跳跃时倍增后二分
+     */
+    private DocIterator postingIterator(Integer termId, int docTo) {
+        if (termId == null || postingSizes[termId] == 0) {
+            return DocIterator.empty();
+        }
+        int[] docs = postingDocs[termId];
+        int size = postingSizes[termId];
+        return new DocIterator() {
+            private int position;
+
+            @Override
+            public int advance(int target) {
+                if (target <= doc) {
+                    return doc;
+                }
+                position = InvertedIndex.advance(docs, position, size, target);
+                return doc = position < size && docs[position] < docTo ? docs[position] : NO_MORE_DOCS;
+            }
+
+            @Override
+            public long cost() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * 文档对给定查询词的BM25分数，调用方持有读锁
+     */
+    private float score(int doc, int[] scoreTermIds, float[] weights, int n, float avgLength) {
+        float norm = K1 * (1 - B + B * docLengths[doc] / avgLength);
+        float score = 0f;
+        for (int k = 0; k < n; k++) {
+            int index = Arrays.binarySearch(postingDocs[scoreTermIds[k]], 0, postingSizes[scoreTermIds[k]], doc);
+            if (index >= 0) {
+                int tf = postingFreqs[scoreTermIds[k]][index];
+                score += weights[k] * tf * (K1 + 1) / (tf + norm);
+            }
+        }
+        return score;
+    }
+
+    /**
+     * 查询词在文档中的命中区间（相对建索引时的全文），每个命中依次为起始偏移、结束偏移和词序号三个值，
+     * 按起始偏移升序；词序号为 {@link TextQuery#getTerms()} 中的顺序。文档不存在时返回null
+     */
+    public int[] matchOffsets(int docId, TextQuery query) {
+        lock.readLock().lock();
+        try {
+            if (!liveDocs.get(docId)) {
+                return null;
+            }
+            List<long[]> hits = new ArrayList<>();
+            int termIndex = 0;
+            for (String term : query.getTerms().keySet()) {
+                Integer termId = termIds.get(term);
+                int[] occurrences = termId != null ? occurrences(docId, termId) : null;
+                if (occurrences != null) {
+                    for (int i = 0; i < occurrences.length; i += 3) {
+                        hits.add(new long[]{occurrences[i + 1], occurrences[i + 1] + occurrences[i + 2], termIndex});
+                    }
+                }
+                termIndex++;
+            }
+            hits.sort((a, b) -> Long.compare(a[0], b[0]));
+            int[] offsets = new int[hits.size() * 3];
+            for (int i = 0; i < hits.size(); i++) {
+                offsets[3 * i] = (int) hits.get(i)[0];
+                offsets[3 * i + 1] = (int) hits.get(i)[1];
+                offsets[3 * i + 2] = (int) hits.get(i)[2];
+            }
+            return offsets;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 按已解析的查询词及权重做带过滤条件的分片BM25检索
+     */
+    public void search(Map<String, Float> queryTerms, int docFrom, int docTo, DocIdSet filter, TopKCollector collector) {
+        lock.readLock().lock();
+        try {
+            List<int[]> cursorDocs = new ArrayList<>();
+            List<int[]> cursorFreqs = new ArrayList<>();
+            List<Integer> cursorSizes = new ArrayList<>();
+            List<Float> cursorWeights = new ArrayList<>();
+            for (Map.Entry<String, Float> entry : queryTerms.entrySet()) {
+                Integer termId = termIds.get(entry.getKey());
+                if (termId == null || postingSizes[termId] == 0) {
+                    continue;
+                }
+                cursorDocs.add(postingDocs[termId]);
+                cursorFreqs.add(postingFreqs[termId]);
+                cursorSizes.add(postingSizes[termId]);
+                cursorWeights.add(idf(postingSizes[termId]) * entry.getValue());
+            }
+
+            int n = cursorDocs.size();
+            if (n == 0) {
+                return;
+            }
+
+            int[][] docs = cursorDocs.toArray(new int[n][]);
+            int[][] freqs = cursorFreqs.toArray(new int[n][]);
+            int[] sizes = new int[n];
+            float[] weights = new float[n];
+            for (int i = 0; i < n; i++) {
+                sizes[i] = cursorSizes.get(i);
+                weights[i] = cursorWeights.get(i);
+            }
+            // 各倒排表从第一个 >= docFrom 的位置开始
+            int[] positions = new int[n];
+            for (int i = 0; i < n; i++) {
+                int index = Arrays.binarySearch(docs[i], 0, sizes[i], docFrom);
+                positions[i] = index >= 0 ? index : -index - 1;
+            }
+            float avgLength = docCount > 0 ? (float) totalLength / docCount : 1f;
+
+            // 按文档逐个合并各词的倒排表（document-at-a-time）
+            while (true) {
+                int doc = Integer.MAX_VALUE;
+                for (int i = 0; i < n; i++) {
+                    if (positions[i] < sizes[i] && docs[i][positions[i]] < doc) {
+                        doc = docs[i][positions[i]];
+                    }
+                }
+                if (doc == Integer.MAX_VALUE || doc >= docTo) {
+                    break;
+                }
+                if (filter != null) {
+                    int allowed = filter.nextDoc(doc);
+                    if (allowed != doc) {
+                        if (allowed >= docTo) {
+                            break;
+                        }
+                        for (int i = 0; i < n; i++) {
+                            positions[i] = advance(docs[i], positions[i], sizes[i], allowed);
+                        }
+                        continue;
+                    }
+                }
+
+                float norm = K1 * (1 - B + B * docLengths[doc] / avgLength);
+                float score = 0f;
+                for (int i = 0; i < n; i++) {
+                    if (positions[i] < sizes[i] && docs[i][positions[i]] == doc) {
+                        int tf = freqs[i][positions[i]];
+                        score += weights[i] * tf * (K1 + 1) / (tf + norm);
+                        positions[i]++;
+                    }
+                }
+                collector.collect(doc, score);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 预览检索：只对各查询词冠军表中的文档（短倒排表则为全部文档）做完整的BM25打分，
+     * 打分的文档数只与查询词数量有关，与语料规模无关；结果是完整检索前几名的近似
+     *
+     * @param filter 允许的文档集合，null表示不过滤
+     */
+    public void searchChampions(String query, DocIdSet filter, TopKCollector collector) {
+        Map<String, int[]> queryTerms = new LinkedHashMap<>();
+        for (String term : analyzer.terms(query)) {
+            int[] freq = queryTerms.get(term);
+            if (freq == null) {
+                queryTerms.put(term, new int[]{1});
+            } else {
+                freq[0]++;
+            }
+        }
+
+        lock.readLock().lock();
+        try {
+            int n = 0;
+            int[] queryTermIds = new int[queryTerms.size()];
+            float[] weights = new float[queryTerms.size()];
+            int candidateCount = 0;
+            for (Map.Entry<String, int[]> entry : queryTerms.entrySet()) {
+                Integer termId = termIds.get(entry.getKey());
+                if (termId == null || postingSizes[termId] == 0) {
+                    continue;
+                }
+                queryTermIds[n] = termId;
+                weights[n] = idf(postingSizes[termId]) * entry.getValue()[0];
+                candidateCount += championDocs[termId] != null ? championSizes[termId] : postingSizes[termId];
+                n++;
+            }
+            if (n == 0) {
+                return;
+            }
+
+            // 候选文档：冠军表或短倒排表的并集（排序去重）
+            int[] candidates = new int[candidateCount];
+            int c = 0;
+            for (int i = 0; i < n; i++) {
+                int termId = queryTermIds[i];
+                boolean champions = championDocs[termId] != null;
+                int[] docs = champions ? championDocs[termId] : postingDocs[termId];
+                int size = champions ? championSizes[termId] : postingSizes[termId];
+                System.arraycopy(docs, 0, candidates, c, size);
+                c += size;
+            }
+            Arrays.sort(candidates, 0, c);
+
+            float avgLength = docCount > 0 ? (float) totalLength / docCount : 1f;
+            int previous = -1;
+            for (int k = 0; k < c; k++) {
+                int doc = candidates[k];
+                if (doc == previous || (filter != null && !filter.contains(doc))) {
+                    continue;
+                }
+                previous = doc;
+                float norm = K1 * (1 - B + B * docLengths[doc] / avgLength);
+                float score = 0f;
+                for (int i = 0; i < n; i++) {
+                    int termId = queryTermIds[i];
+                    int index = Arrays.binarySearch(postingDocs[termId], 0, postingSizes[termId], doc);
+                    if (index >= 0) {
+                        int tf = postingFreqs[termId][index];
+                        score += weights[i] * tf * (K1 + 1) / (tf + norm);
+                    }
+                }
+                collector.collect(doc, score);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 词项得分（BM25中与IDF无关的部分），用于冠军表排序
+     */
+    private float impact(int docId, int tf) {
+        float avgLength = docCount > 0 ? (float) totalLength / docCount : 1f;
+        return tf / (tf + K1 * (1 - B + B * docLengths[docId] / avgLength));
+    }
+
+    private void updateChampions(int termId, int docId, int tf) {
+        if (postingSizes[termId] < CHAMPION_THRESHOLD) {
+            return;
+        }
+        if (championDocs[termId] == null) {
+            rebuildChampions(termId);
+            return;
+        }
+        offerChampion(termId, docId, impact(docId, tf));
+    }
+
+    private void offerChampion(int termId, int docId, float impact) {
+        int[] docs = championDocs[termId];
+        float[] impacts = championImpacts[termId];
+        int size = championSizes[termId];
+        if (size < CHAMPION_SIZE) {
+            docs[size] = docId;
+            impacts[size] = impact;
+            championSizes[termId] = size + 1;
+            return;
+        }
+        int min = 0;
+        for (int i = 1; i < size; i++) {
+            if (impacts[i] < impacts[min]) {
+                min = i;
+            }
+        }
+        if (impact > impacts[min]) {
+            docs[min] = docId;
+            impacts[min] = impact;
+        }
+    }
+
+    /**
+     * 从倒排表重新选出冠军表
+     */
+    private void rebuildChampions(int termId) {
+        championDocs[termId] = new int[CHAMPION_SIZE];
+        championImpacts[termId] = new float[CHAMPION_SIZE];
+        championSizes[termId] = 0;
+        ScoreHeap heap = new ScoreHeap(CHAMPION_SIZE + 1, true);
+        int[] docs = postingDocs[termId];
+        int[] freqs = postingFreqs[termId];
+        for (int i = 0; i < postingSizes[termId]; i++) {
+            float impact = impact(docs[i], freqs[i]);
+            if (heap.size() < CHAMPION_SIZE) {
+                heap.push(docs[i], impact);
+            } else if (impact > heap.topScore()) {
+                heap.replaceTop(docs[i], impact);
+            }
+        }
+        for (int i = 0; i < heap.size(); i++) {
+            offerChampion(termId, heap.idAt(i), heap.scoreAt(i));
+        }
+    }
+
+    /**
+     * 文档删除后从冠军表中移除；冠军表过小时从倒排表重新选出，倒排表变短后不再维护冠军表
+     */
+    private void removeChampion(int termId, int docId) {
+        if (championDocs[termId] == null) {
+            return;
+        }
+        if (postingSizes[termId] < CHAMPION_THRESHOLD) {
+            championDocs[termId] = null;
+            championImpacts[termId] = null;
+            championSizes[termId] = 0;
+            return;
+        }
+        int[] docs = championDocs[termId];
+        int size = championSizes[termId];
+        for (int i = 0; i < size; i++) {
+            if (docs[i] == docId) {
+                docs[i] = docs[size - 1];
+                championImpacts[termId][i] = championImpacts[termId][size - 1];
+                championSizes[termId] = size - 1;
+                if (size - 1 < CHAMPION_SIZE / 2) {
+                    rebuildChampions(termId);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * 文档是否满足位置约束
+     */
+    private boolean matches(int docId, TextQuery.Proximity constraint) {
+        int[] lefts = phraseStarts(docId, constraint.left);
+        if (lefts.length == 0) {
+            return false;
+        }
+        if (constraint.right == null) {
+            return true;
+        }
+        int[] rights = phraseStarts(docId, constraint.right);
+        // 两个短语不分先后，但两次出现不能重叠（同一个词不能同时充当两边）
+        return follows(lefts, constraint.left.span, rights, constraint.maxGap)
+            || follows(rights, constraint.right.span, lefts, constraint.maxGap);
+    }
+
+    /**
+     * seconds中是否有出现位于firsts中某次出现之后、不与其重叠且间隔不超过maxGap：
+     * 对每个second只需与结束位置不超过它的最后一个first比较（两个列表均升序，指针单调前进）
+     */
+    private static boolean follows(int[] firsts, int firstSpan, int[] seconds, int maxGap) {
+        int k = 0;
+        for (int second : seconds) {
+            while (k < firsts.length && firsts[k] + firstSpan <= second) {
+                k++;
+            }
+            if (k > 0 && second - (firsts[k - 1] + firstSpan) <= maxGap) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 短语在文档中出现的起始位置（升序）：以第一个词的每个位置为起点，其余词按相对位置逐个核对
+     */
+    private int[] phraseStarts(int docId, TextQuery.Phrase phrase) {
+        int[][] lists = new int[phrase.terms.length][];
+        for (int t = 0; t < lists.length; t++) {
+            Integer termId = termIds.get(phrase.terms[t]);
+            int[] occurrences = termId != null ? occurrences(docId, termId) : null;
+            if (occurrences == null) {
+                return new int[0];
+            }
+            int[] positions = new int[occurrences.length / 3];
+            for (int i = 0; i < positions.length; i++) {
+                positions[i] = occurrences[3 * i];
+            }
+            lists[t] = positions;
+        }
+
+        int[] starts = new int[lists[0].length];
+        int count = 0;
+        int[] cursors = new int[lists.length];
+        candidates:
+        for (int position : lists[0]) {
+            int start = position - phrase.offsets[0];
+            for (int t = 1; t < lists.length; t++) {
+                int target = start + phrase.offsets[t];
+                int[] positions = lists[t];
+                while (cursors[t] < positions.length && positions[cursors[t]] < target) {
+                    cursors[t]++;
+                }
+                if (cursors[t] >= positions.length) {
+                    break candidates;
+                }
+                if (positions[cursors[t]] != target) {
+                    continue candidates;
+                }
+            }
+            starts[count++] = start;
+        }
+        return Arrays.copyOf(starts, count);
+    }
+
+    /**
+     * 解码词在文档中的全部出现，依次为位置、起始偏移、字符长度；词不在文档中时返回null
+     */
+    private int[] occurrences(int docId, int termId) {
+        int[] tids = docTermIds[docId];
+        int index = tids != null ? Arrays.binarySearch(tids, termId) : -1;
+        if (index < 0) {
+            return null;
+        }
+        byte[] data = docPositions[docId];
+        int from = docPositionStarts[docId][index];
+        int to = docPositionStarts[docId][index + 1];
+        int[] occurrences = new int[8 * 3];
+        int count = 0;
+        int position = 0;
+        int offset = 0;
+        int[] cursor = {from};
+        while (cursor[0] < to) {
+            if (count == occurrences.length) {
+                occurrences = Arrays.copyOf(occurrences, count * 2);
+            }
+            position += readVarInt(data, cursor);
+            offset += readVarInt(data, cursor);
+            occurrences[count++] = position;
+            occurrences[count++] = offset;
+            occurrences[count++] = readVarInt(data, cursor);
+        }
+        return Arrays.copyOf(occurrences, count);
+    }
+
+    /**
+     * 按词ID升序保存文档的词列表和位置信息
+     */
+    private void storePositions(int docId, int[] tids, Occurrences[] byTerm) {
+        Integer[] order = new Integer[tids.length];
+        int total = 0;
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+            total += byTerm[i].count;
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(tids[a], tids[b]));
+
+        int[] sorted = new int[tids.length];
+        int[] starts = new int[tids.length + 1];
+        byte[] data = new byte[Math.max(16, total * 4)];
+        int length = 0;
+        for (int i = 0; i < order.length; i++) {
+            Occurrences occurrences = byTerm[order[i]];
+            sorted[i] = tids[order[i]];
+            starts[i] = length;
+            int position = 0;
+            int offset = 0;
+            for (int k = 0; k < occurrences.count; k++) {
+                if (length + 15 > data.length) {
+                    data = Arrays.copyOf(data, data.length * 2);
+                }
+                length = writeVarInt(data, length, occurrences.data[3 * k] - position);
+                length = writeVarInt(data, length, occurrences.data[3 * k + 1] - offset);
+                length = writeVarInt(data, length, occurrences.data[3 * k + 2]);
+                position = occurrences.data[3 * k];
+                offset = occurrences.data[3 * k + 1];
+            }
+        }
+        starts[order.length] = length;
+        docTermIds[docId] = sorted;
+        docPositions[docId] = Arrays.copyOf(data, length);
+        docPositionStarts[docId] = starts;
+    }
+
+    private static int writeVarInt(byte[] data, int index, int value) {
+        while ((value & ~0x7F) != 0) {
+            data[index++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data[index++] = (byte) value;
+        return index;
+    }
+
+    private static int readVarInt(byte[] data, int[] cursor) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data[cursor[0]++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    /**
+     * 词典前缀树与自动机同步遍历，返回被接受且有文档的词，
+     * 每项高32位为编辑距离、低32位为词ID，按编辑距离升序、文档数降序保留前 {@link #MAX_EXPANSIONS} 个
+     */
+    private long[] expand(LevenshteinAutomaton automaton) {
+        ScoreHeap best = new ScoreHeap(MAX_EXPANSIONS + 1, true);
+        expand(termTrie, automaton, automaton.start(), best);
+        long[] expansions = new long[best.size()];
+        for (int i = 0; i < expansions.length; i++) {
+            int termId = best.idAt(i);
+            int distance = (int) -Math.floor(best.scoreAt(i));
+            expansions[i] = ((long) distance << 32) | termId;
+        }
+        return expansions;
+    }
+
+    private void expand(TermNode node, LevenshteinAutomaton automaton, int[] state, ScoreHeap best) {
+        if (node.termId >= 0 && postingSizes[node.termId] > 0 && automaton.isAccept(state)) {
+            // 排序键：编辑距离小的优先，同距离时文档数多的优先（小数部分）
+            float key = -automaton.distance(state) + 0.5f * postingSizes[node.termId] / (postingSizes[node.termId] + 1f);
+            if (best.size() < MAX_EXPANSIONS) {
+                best.push(node.termId, key);
+            } else if (key > best.topScore()) {
+                best.replaceTop(node.termId, key);
+            }
+        }
+        for (int i = 0; i < node.childCount; i++) {
+            int[] next = automaton.step(state, node.labels[i]);
+            if (automaton.canMatch(next)) {
+                expand(node.children[i], automaton, next, best);
+            }
+        }
+    }
+
+    /**
+     * 只对不含数字、长度足够的英文词做模糊扩展（数字和中文二元组拼写相近不代表意思相近）
+     */
+    private static boolean isFuzzyCandidate(String term) {
+        if (term.length() < FUZZY_MIN_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < term.length(); i++) {
+            char c = term.charAt(i);
+            if (Character.isDigit(c) || TextAnalyzer.isCjk(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 从position开始倍增步长再二分，返回倒排表中第一个 >= target 的位置
+     */
+    private static int advance(int[] docs, int position, int size, int target) {
+        if (position >= size || docs[position] >= target) {
+            return position;
+        }
+        int step = 1;
+        int lo = position;
+        int hi = position + step;
+        while (hi < size && docs[hi] < target) {
+            lo = hi;
+            step <<= 1;
+            hi = position + step;
+        }
+        int index = Arrays.binarySearch(docs, lo + 1, Math.min(hi, size - 1) + 1, target);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    private float idf(int docFreq) {
+        return (float) Math.log(1 + (docCount - docFreq + 0.5) / (docFreq + 0.5));
+    }
+
+    private int getOrCreateTermId(String term) {
+        Integer termId = termIds.get(term);
+        if (termId != null) {
+            return termId;
+        }
+        if (termCount == terms.length) {
+            int capacity = termCount * 2;
+            terms = Arrays.copyOf(terms, capacity);
+            postingDocs = Arrays.copyOf(postingDocs, capacity);
+            postingFreqs = Arrays.copyOf(postingFreqs, capacity);
+            postingSizes = Arrays.copyOf(postingSizes, capacity);
+            championDocs = Arrays.copyOf(championDocs, capacity);
+            championImpacts = Arrays.copyOf(championImpacts, capacity);
+            championSizes = Arrays.copyOf(championSizes, capacity);
+        }
+        int id = termCount++;
+        terms[id] = term;
+        postingDocs[id] = new int[4];
+        postingFreqs[id] = new int[4];
+        termIds.put(term, id);
+        TermNode node = termTrie;
+        for (int i = 0; i < term.length(); i++) {
+            node = node.child(term.charAt(i));
+        }
+        node.termId = id;
+        return id;
+    }
+
+    private void insertPosting(int termId, int docId, int freq) {
+        int size = postingSizes[termId];
+        int[] docs = postingDocs[termId];
+        int[] freqs = postingFreqs[termId];
+        if (size == docs.length) {
+            docs = postingDocs[termId] = Arrays.copyOf(docs, size + (size >> 1) + 1);
+            freqs = postingFreqs[termId] = Arrays.copyOf(freqs, docs.length);
+        }
+
+        // 新文档ID通常最大，直接追加；否则二分查找插入位置
+        int index = size;
+        if (size > 0 && docs[size - 1] > docId) {
+            index = -Arrays.binarySearch(docs, 0, size, docId) - 1;
+            System.arraycopy(docs, index, docs, index + 1, size - index);
+            System.arraycopy(freqs, index, freqs, index + 1, size - index);
+        }
+        docs[index] = docId;
+        freqs[index] = freq;
+        postingSizes[termId] = size + 1;
+    }
+
+    private void ensureDocCapacity(int docId) {
+        if (docId >= docLengths.length) {
+            int capacity = Math.max(docId + 1, docLengths.length * 2);
+            docLengths = Arrays.copyOf(docLengths, capacity);
+            docTermIds = Arrays.copyOf(docTermIds, capacity);
+            docPositions = Arrays.copyOf(docPositions, capacity);
+            docPositionStarts = Arrays.copyOf(docPositionStarts, capacity);
+        }
+    }
+
+    /**
+     * 词的IDF权重，词不存在时返回0
+     */
+    public float idf(String term) {
+        lock.readLock().lock();
+        try {
+            Integer termId = termIds.get(term);
+            return termId == null || postingSizes[termId] == 0 ? 0f : idf(postingSizes[termId]);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 最大文档ID加一（分片时的ID上界）
+     */
+    public int getMaxDocId() {
+        lock.readLock().lock();
+        try {
+            return liveDocs.length();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 文档数量
+     */
+    public int getDocumentCount() {
+        lock.readLock().lock();
+        try {
+            return docCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 词典大小
+     */
+    public int getTermCount() {
+        lock.readLock().lock();
+        try {
+            return termCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 建索引时一个词在文档中的出现记录（位置、起始偏移、长度）
+     */
+    private static final class Occurrences {
+        int[] data = new int[6];
+        int count;
+
+        void add(int position, int offset, int length) {
+            if (3 * count + 3 > data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            data[3 * count] = position;
+            data[3 * count + 1] = offset;
+            data[3 * count + 2] = length;
+            count++;
+        }
+    }
+
+    /**
+     * 词典前缀树节点，子节点按字符升序排列
+     */
+    private static final class TermNode {
+        char[] labels = new char[0];
+        TermNode[] children = new TermNode[0];
+        int childCount;
+        int termId = -1;
+
+        TermNode child(char label) {
+            int index = Arrays.binarySearch(labels, 0, childCount, label);
+            if (index >= 0) {
+                return children[index];
+            }
+            index = -index - 1;
+            if (childCount == labels.length) {
+                labels = Arrays.copyOf(labels, Math.max(2, childCount * 2));
+                children = Arrays.copyOf(children, labels.length);
+            }
+            System.arraycopy(labels, index, labels, index + 1, childCount - index);
+            System.arraycopy(children, index, children, index + 1, childCount - index);
+            labels[index] = label;
+            children[index] = new TermNode();
+            childCount++;
+            return children[index];
+        }
+    }
+}
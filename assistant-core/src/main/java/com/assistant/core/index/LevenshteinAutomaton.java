@@ -0,0 +1,70 @@
+package com.assistant.core.index;
+
+/**
+ * 编辑距离自动机
+ * 接受与给定词的编辑距离（插入、删除、替换）不超过maxEdits的字符串。状态为编辑距离矩阵的一行，
+ * 读入字符时由上一行算出下一行（按需构造的确定自动机），超过maxEdits的值截断为maxEdits+1。
+ * 与按字典序组织的词典（前缀树）同步遍历时，一旦状态不可能再接受就剪掉整棵子树，
+ * 访问的词典节点数与可能匹配的前缀数量成比例，而不是与词典大小成比例。
+ */
+public class LevenshteinAutomaton {
+
+    private final String word;
+    private final int maxEdits;
+
+    public LevenshteinAutomaton(String word, int maxEdits) {
+        this.word = word;
+        this.maxEdits = maxEdits;
+    }
+
+    /**
+     * 初始状态（尚未读入字符）
+     */
+    public int[] start() {
+        int[] state = new int[word.length() + 1];
+        for (int i = 0; i < state.length; i++) {
+            state[i] = Math.min(i, maxEdits + 1);
+        }
+        return state;
+    }
+
+    /**
+     * 读入一个字符后的状态
+     */
+    public int[] step(int[] state, char c) {
+        int[] next = new int[state.length];
+        next[0] = Math.min(state[0] + 1, maxEdits + 1);
+        for (int i = 1; i < state.length; i++) {
+            int cost = word.charAt(i - 1) == c ? 0 : 1;
+            int value = Math.min(state[i - 1] + cost, Math.min(state[i] + 1, next[i - 1] + 1));
+            next[i] = Math.min(value, maxEdits + 1);
+        }
+        return next;
+    }
+
+    /**
+     * 已读入的字符串是否被接受
+     */
+    public boolean isAccept(int[] state) {
+        return state[state.length - 1] <= maxEdits;
+    }
+
+    /**
+     * 继续读入字符后是否还可能被接受
+     */
+    public boolean canMatch(int[] state) {
+        for (int value : state) {
+            if (value <= maxEdits) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 已读入的字符串与词的编辑距离（超过maxEdits时为maxEdits+1）
+     */
+    public int distance(int[] state) {
+        return state[state.length - 1];
+    }
+}
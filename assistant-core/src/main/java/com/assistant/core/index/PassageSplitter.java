@@ -0,0 +1,174 @@
+package com.assistant.core.index;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 把正文切分为相互重叠的段落，供逐段向量化
+ * 每段至多size个字符，优先在段尾附近的句末标点或换行处断开，其次在空白处断开；
+ * 下一段从上一段结尾前约overlap个字符处的句子（或词）开头开始，跨段的句子至少在一段中完整出现。
+ * 段数超过maxPassages时只保留前maxPassages段。
+ */
+public class PassageSplitter {
+
+    /**
+     * 段落在正文中的字符区间 [start, end)
+     */
+    public static final class Passage {
+        final int start;
+        final int end;
+
+        Passage(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        public int getStart() {
+            return start;
+        }
+
+        public int getEnd() {
+            return end;
+        }
+    }
+
+    private final int size;
+    private final int overlap;
+    private final int maxPassages;
+
+    public PassageSplitter(int size, int overlap, int maxPassages) {
+        this.size = Math.max(50, size);
+        this.overlap = Math.max(0, Math.min(overlap, this.size / 2));
+        this.maxPassages = Math.max(1, maxPassages);
+    }
+
+    /**
+     * 切分正文，只含空白的部分不成段
+     */
+    public List<Passage> split(String text) {
+        List<Passage> passages = new ArrayList<>();
+        if (text == null) {
+            return passages;
+        }
+        int length = text.length();
+        int start = skipWhitespace(text, 0);
+        while (start < length && passages.size() < maxPassages) {
+            int end = Math.min(length, start + size);
+            if (end < length) {
+                // 在段落后三分之一内找断点
+                int floor = start + size * 2 / 3;
+                int cut = lastBoundary(text, floor, end);
+                end = cut > floor ? cut : lastWhitespace(text, floor, end, end);
+                if (Character.isHighSurrogate(text.charAt(end - 1))) {
+                    end--;
+                }
+            }
+            int trimmed = end;
+            while (trimmed > start && Character.isWhitespace(text.charAt(trimmed - 1))) {
+                trimmed--;
+            }
+            passages.add(new Passage(start, trimmed));
+            if (end >= length) {
+                break;
+            }
+
+            // 下一段从重叠区内第一个句子开头开始，没有句子边界时从词开头开始
+            int from = Math.max(start + 1, end - overlap);
+            int next = firstBoundary(text, from, end);
+            if (next < 0) {
+                next = firstWhitespace(text, from, end);
+            }
+            start = skipWhitespace(text, next >= 0 ? next : from);
+        }
+        return passages;
+    }
+
+    /**
+     * 字符区间 [from, to) 的UTF-8字节数
+     */
+    public static long utf8Length(CharSequence text, int from, int to) {
+        long bytes = 0;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < to && Character.isLowSurrogate(text.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * [from, to) 内最后一个句子结束处（断点字符之后的位置），没有时返回-1
+     */
+    private static int lastBoundary(String text, int from, int to) {
+        for (int i = to - 1; i >= from; i--) {
+            if (isSentenceEnd(text, i)) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private static int firstBoundary(String text, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (isSentenceEnd(text, i)) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private static int lastWhitespace(String text, int from, int to, int fallback) {
+        for (int i = to - 1; i >= from; i--) {
+            if (Character.isWhitespace(text.charAt(i))) {
+                return i + 1;
+            }
+        }
+        return fallback;
+    }
+
+    private static int firstWhitespace(String text, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (Character.isWhitespace(text.charAt(i))) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private static int skipWhitespace(String text, int from) {
+        while (from < text.length() && Character.isWhitespace(text.charAt(from))) {
+            from++;
+        }
+        return from;
+    }
+
+    /**
+     * 换行、中文句末标点，或后接空白的英文句末标点
+     */
+    private static boolean isSentenceEnd(String text, int i) {
+        char c = text.charAt(i);
+        switch (c) {
+            case '\n':
+            case '。':
+            case '！':
+            case '？':
+            case '；':
+                return true;
+            case '.':
+            case '!':
+            case '?':
+            case ';':
+                return i + 1 >= text.length() || Character.isWhitespace(text.charAt(i + 1));
+            default:
+                return false;
+        }
+    }
+}
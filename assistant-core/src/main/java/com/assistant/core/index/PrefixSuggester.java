@@ -0,0 +1,393 @@
+package com.assistant.core.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 输入联想用的前缀树
+ * 词条来自搜索历史（权重为搜索次数）和文件名（每个文件计1），按规范化后的小写文本合并。
+ * 每个节点缓存其子树中权重最高的 {@link #TOP_K} 个词条，联想时只需沿前缀走到对应节点并返回其缓存，
+ * 耗时只与前缀长度有关。权重增加时沿路径向上提升，减少时只重算缓存中包含该词条的节点。
+ */
+public class PrefixSuggester {
+
+    /**
+     * 每个节点缓存的词条数，也是单次联想的最大返回数
+     */
+    public static final int TOP_K = 10;
+
+    /**
+     * 超过此长度的词条不参与联想
+     */
+    public static final int MAX_TERM_LENGTH = 64;
+
+    private static final char[] NO_LABELS = new char[0];
+    private static final Node[] NO_NODES = new Node[0];
+
+    private final Node root = new Node();
+    private final Map<Integer, String> fileNames = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private int termCount;
+
+    private static final class Node {
+        char[] labels = NO_LABELS;
+        Node[] children = NO_NODES;
+        int childCount;
+
+        /**
+         * 以此节点结尾的词条的展示文本（最近一次出现的原始写法）
+         */
+        String text;
+        int queryWeight;
+        int fileWeight;
+
+        /**
+         * 子树中权重最高的词条（终止节点），按权重降序
+         */
+        Node[] top = NO_NODES;
+        int topSize;
+
+        int weight() {
+            return queryWeight + fileWeight;
+        }
+
+        Node child(char label) {
+            int index = Arrays.binarySearch(labels, 0, childCount, label);
+            return index >= 0 ? children[index] : null;
+        }
+
+        Node addChild(char label) {
+            int index = Arrays.binarySearch(labels, 0, childCount, label);
+            if (index >= 0) {
+                return children[index];
+            }
+            index = -index - 1;
+            if (childCount == labels.length) {
+                int capacity = Math.max(2, childCount * 2);
+                labels = Arrays.copyOf(labels, capacity);
+                children = Arrays.copyOf(children, capacity);
+            }
+            System.arraycopy(labels, index, labels, index + 1, childCount - index);
+            System.arraycopy(children, index, children, index + 1, childCount - index);
+            Node child = new Node();
+            labels[index] = label;
+            children[index] = child;
+            childCount++;
+            return child;
+        }
+
+        void removeChild(char label) {
+            int index = Arrays.binarySearch(labels, 0, childCount, label);
+            if (index < 0) {
+                return;
+            }
+            System.arraycopy(labels, index + 1, labels, index, childCount - index - 1);
+            System.arraycopy(children, index + 1, children, index, childCount - index - 1);
+            childCount--;
+            children[childCount] = null;
+        }
+
+        int topIndexOf(Node term) {
+            for (int i = 0; i < topSize; i++) {
+                if (top[i] == term) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * 增加搜索历史中查询文本的次数
+     */
+    public void addQuery(String query, int count) {
+        String key = normalize(query, true);
+        if (key == null || count <= 0) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            update(key, query.trim(), count, 0);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 添加或更新文件名
+     */
+    public void addFile(int docId, String fileName) {
+        addFile(docId, fileName, true);
+    }
+
+    /**
+     * 仅当文件不存在时添加（用于启动时的批量构建，避免覆盖构建期间写入的新内容）
+     */
+    public void addFileIfAbsent(int docId, String fileName) {
+        addFile(docId, fileName, false);
+    }
+
+    private void addFile(int docId, String fileName, boolean replace) {
+        lock.writeLock().lock();
+        try {
+            if (fileNames.containsKey(docId)) {
+                if (!replace) {
+                    return;
+                }
+                removeFileLocked(docId);
+            }
+            String key = normalize(fileName, true);
+            if (key != null) {
+                fileNames.put(docId, key);
+                update(key, fileName.trim(), 0, 1);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeFile(int docId) {
+        lock.writeLock().lock();
+        try {
+            removeFileLocked(docId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeFileLocked(int docId) {
+        String key = fileNames.remove(docId);
+        if (key != null) {
+            update(key, null, 0, -1);
+        }
+    }
+
+    /**
+     * 清除所有搜索历史的权重，只保留文件名
+     */
+    public void clearQueries() {
+        lock.writeLock().lock();
+        try {
+            clearQueries(root);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void clearQueries(Node node) {
+        for (int i = node.childCount - 1; i >= 0; i--) {
+            Node child = node.children[i];
+            clearQueries(child);
+            if (child.childCount == 0 && child.weight() == 0) {
+                node.removeChild(node.labels[i]);
+            }
+        }
+        if (node.queryWeight > 0) {
+            node.queryWeight = 0;
+            if (node.weight() == 0) {
+                node.text = null;
+                termCount--;
+            }
+        }
+        recompute(node);
+    }
+
+    /**
+     * 以prefix开头、权重最高的至多limit个词条，按权重降序
+     */
+    public List<String> suggest(String prefix, int limit) {
+        String key = normalize(prefix, false);
+        if (key == null || limit <= 0) {
+            return new ArrayList<>();
+        }
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.child(key.charAt(i));
+            }
+            if (node == null) {
+                return new ArrayList<>();
+            }
+            int count = Math.min(limit, node.topSize);
+            List<String> suggestions = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                suggestions.add(node.top[i].text);
+            }
+            return suggestions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 词条数量
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return termCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void update(String key, String text, int queryDelta, int fileDelta) {
+        Node[] path = new Node[key.length() + 1];
+        path[0] = root;
+        for (int i = 0; i < key.length(); i++) {
+            path[i + 1] = path[i].addChild(key.charAt(i));
+        }
+        Node term = path[key.length()];
+        int before = term.weight();
+        term.queryWeight = Math.max(0, term.queryWeight + queryDelta);
+        term.fileWeight = Math.max(0, term.fileWeight + fileDelta);
+        int after = term.weight();
+        if (before == 0 && after > 0) {
+            termCount++;
+        } else if (before > 0 && after == 0) {
+            termCount--;
+        }
+        if (after > 0 && text != null) {
+            term.text = text;
+        }
+
+        if (after > before) {
+            // 不在某个节点前K名中的词条也不会进入其祖先节点的前K名
+            for (int depth = path.length - 1; depth >= 0; depth--) {
+                if (!promote(path[depth], term)) {
+                    break;
+                }
+            }
+        } else if (after < before) {
+            for (int depth = path.length - 1; depth >= 0; depth--) {
+                if (path[depth].topIndexOf(term) < 0) {
+                    break;
+                }
+                recompute(path[depth]);
+            }
+            if (after == 0) {
+                term.text = null;
+                prune(path, key);
+            }
+        }
+    }
+
+    /**
+     * 权重增加后在节点缓存中上移或加入词条，返回词条是否在缓存中
+     */
+    private static boolean promote(Node node, Node term) {
+        int index = node.topIndexOf(term);
+        if (index < 0) {
+            if (node.topSize < TOP_K) {
+                if (node.topSize == node.top.length) {
+                    node.top = Arrays.copyOf(node.top, Math.min(TOP_K, Math.max(2, node.topSize * 2)));
+                }
+                index = node.topSize++;
+            } else if (compare(term, node.top[TOP_K - 1]) < 0) {
+                index = TOP_K - 1;
+            } else {
+                return false;
+            }
+            node.top[index] = term;
+        }
+        while (index > 0 && compare(term, node.top[index - 1]) < 0) {
+            node.top[index] = node.top[index - 1];
+            node.top[--index] = term;
+        }
+        return true;
+    }
+
+    /**
+     * 由节点自身词条和各子节点的缓存重新计算节点缓存（子节点缓存须已是最新）
+     */
+    private static void recompute(Node node) {
+        Node[] top = new Node[TOP_K];
+        int size = 0;
+        if (node.weight() > 0) {
+            top[size++] = node;
+        }
+        for (int c = 0; c < node.childCount; c++) {
+            Node child = node.children[c];
+            for (int i = 0; i < child.topSize; i++) {
+                Node candidate = child.top[i];
+                if (size == TOP_K && compare(candidate, top[TOP_K - 1]) >= 0) {
+                    // 子节点缓存有序，后面的词条不会更靠前
+                    break;
+                }
+                int index = size < TOP_K ? size++ : TOP_K - 1;
+                while (index > 0 && compare(candidate, top[index - 1]) < 0) {
+                    top[index] = top[index - 1];
+                    index--;
+                }
+                top[index] = candidate;
+            }
+        }
+        node.top = size > 0 ? Arrays.copyOf(top, size) : NO_NODES;
+        node.topSize = size;
+    }
+
+    /**
+     * 删除不再包含词条的末端节点
+     */
+    private static void prune(Node[] path, String key) {
+        for (int depth = path.length - 1; depth > 0; depth--) {
+            Node node = path[depth];
+            if (node.childCount > 0 || node.weight() > 0) {
+                return;
+            }
+            path[depth - 1].removeChild(key.charAt(depth - 1));
+        }
+    }
+
+    /**
+     * 权重高者在前，权重相同时较短、字典序较小者在前
+     */
+    private static int compare(Node a, Node b) {
+        if (a.weight() != b.weight()) {
+            return a.weight() > b.weight() ? -1 : 1;
+        }
+        if (a.text.length() != b.text.length()) {
+            return a.text.length() < b.text.length() ? -1 : 1;
+        }
+        return a.text.compareTo(b.text);
+    }
+
+    /**
+     * 规范化：转小写、合并连续空白；词条去掉首尾空白，前缀保留末尾的一个空格
+     */
+    private static String normalize(String text, boolean term) {
+        if (text == null) {
+            return null;
+        }
+        StringBuilder key = new StringBuilder(Math.min(text.length(), MAX_TERM_LENGTH));
+        boolean space = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = key.length() > 0;
+                continue;
+            }
+            if (space) {
+                key.append(' ');
+                space = false;
+            }
+            key.append(c);
+            if (key.length() > MAX_TERM_LENGTH) {
+                return null;
+            }
+        }
+        if (space && !term) {
+            key.append(' ');
+        }
+        if (key.length() == 0 || key.length() > MAX_TERM_LENGTH) {
+            return null;
+        }
+        return key.toString().toLowerCase(Locale.ROOT);
+    }
+}
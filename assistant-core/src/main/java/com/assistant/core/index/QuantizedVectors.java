@@ -0,0 +1,102 @@
+package com.assistant.core.index;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * 常驻内存的int8量化向量集合
+ * 编码按ID定长连续存放在一个byte数组中（每条 维度 字节，为float32的1/4），用于整数内积顺序扫描。
+ */
+public class QuantizedVectors {
+
+    private final ScalarQuantizer quantizer;
+    private final int dimension;
+    private volatile byte[] codes;
+    private final BitSet present = new BitSet();
+    private int count;
+
+    public QuantizedVectors(ScalarQuantizer quantizer, int initialCapacity) {
+        this.quantizer = quantizer;
+        this.dimension = quantizer.getDimension();
+        this.codes = new byte[Math.max(1, initialCapacity) * dimension];
+    }
+
+    /**
+     * 从向量存储构建
+     */
+    public static QuantizedVectors build(VectorStore store, ScalarQuantizer quantizer) {
+        int[] ids = store.ids();
+        int capacity = ids.length > 0 ? ids[ids.length - 1] + 1 : 1;
+        QuantizedVectors vectors = new QuantizedVectors(quantizer, capacity);
+        float[] buffer = new float[store.getDimension()];
+        for (int id : ids) {
+            store.get(id, buffer);
+            vectors.put(id, buffer);
+        }
+        return vectors;
+    }
+
+    public synchronized void put(int id, float[] vector) {
+        int required = (id + 1) * dimension;
+        if (required > codes.length) {
+            codes = Arrays.copyOf(codes, Math.max(required, codes.length * 2));
+        }
+        quantizer.encode(vector, codes, id * dimension);
+        if (!present.get(id)) {
+            present.set(id);
+            count++;
+        }
+    }
+
+    public synchronized void remove(int id) {
+        if (present.get(id)) {
+            present.clear(id);
+            count--;
+        }
+    }
+
+    /**
+     * 顺序扫描所有编码，回调与查询的近似内积
+     */
+    public void scan(ScalarQuantizer.QuantizedQuery query, VectorStore.ScoreConsumer consumer) {
+        scan(query, 0, Integer.MAX_VALUE, consumer);
+    }
+
+    /**
+     * 顺序扫描ID在 [idFrom, idTo) 范围内的编码（用于分片并行扫描）
+     */
+    public void scan(ScalarQuantizer.QuantizedQuery query, int idFrom, int idTo, VectorStore.ScoreConsumer consumer) {
+        BitSet snapshot;
+        byte[] data;
+        synchronized (this) {
+            snapshot = present.get(idFrom, Math.max(idFrom, Math.min(idTo, present.length())));
+            data = codes;
+        }
+        for (int i = snapshot.nextSetBit(0); i >= 0; i = snapshot.nextSetBit(i + 1)) {
+            int id = idFrom + i;
+            consumer.accept(id, quantizer.dot(query, data, id * dimension));
+        }
+    }
+
+    /**
+     * 最大ID加一（分片时的ID上界）
+     */
+    public synchronized int maxId() {
+        return present.length();
+    }
+
+    public ScalarQuantizer getQuantizer() {
+        return quantizer;
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * 编码占用的字节数
+     */
+    public long getMemoryBytes() {
+        return codes.length;
+    }
+}
@@ -0,0 +1,58 @@
+package com.assistant.core.index;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 倒数排名融合（Reciprocal Rank Fusion）
+ * 文档的融合分数为其在各路排名列表中 1/(k + rank) 之和（rank从1开始），
+ * 只依赖名次而不依赖各路分数的量纲，BM25分数与余弦相似度可以直接合并。
+ */
+public final class RankFusion {
+
+    /**
+     * 常用的平滑常数，削弱头部名次之间的分差
+     */
+    public static final int DEFAULT_K = 60;
+
+    private RankFusion() {
+    }
+
+    /**
+     * 融合多路按分数降序排列的结果，返回按融合分数降序排列的全部文档
+     */
+    public static ScoredDocs fuse(int k, ScoredDocs... rankings) {
+        int total = 0;
+        for (ScoredDocs ranking : rankings) {
+            total += ranking != null ? ranking.size() : 0;
+        }
+        Map<Integer, float[]> fused = new HashMap<>(Math.max(16, total * 2));
+        for (ScoredDocs ranking : rankings) {
+            if (ranking == null) {
+                continue;
+            }
+            for (int i = 0; i < ranking.size(); i++) {
+                float[] score = fused.get(ranking.doc(i));
+                if (score == null) {
+                    score = new float[1];
+                    fused.put(ranking.doc(i), score);
+                }
+                score[0] += 1f / (k + i + 1);
+            }
+        }
+
+        ScoredDocs results = new ScoredDocs(fused.size());
+        for (Map.Entry<Integer, float[]> entry : fused.entrySet()) {
+            results.add(entry.getKey(), entry.getValue()[0]);
+        }
+        results.sortByScore();
+        return results;
+    }
+
+    /**
+     * 在所有路中都排第一时可达到的最高融合分数，用于换算为0~1的匹配度
+     */
+    public static float maxScore(int k, int legs) {
+        return legs / (float) (k + 1);
+    }
+}
@@ -0,0 +1,124 @@
+package com.assistant.core.index;
+
+import java.util.Arrays;
+
+/**
+ * 按维度校准的int8标量量化器
+ * 每个维度根据校准数据的最小值/最大值线性映射到 [-128, 127]：x ≈ min + scale × (code + 128)。
+ * 查询向量乘以各维度的scale后再对称量化为int8，内积即可用整数累加近似：
+ * q·x ≈ Σ q·min + (Σ qCode × code + 128 × Σ qCode) / queryFactor
+ */
+public class ScalarQuantizer {
+
+    private final float[] min;
+    private final float[] scale;
+
+    public ScalarQuantizer(float[] min, float[] max) {
+        this.min = min.clone();
+        this.scale = new float[min.length];
+        for (int i = 0; i < min.length; i++) {
+            float range = max[i] - min[i];
+            scale[i] = range > 0 ? range / 255f : 0f;
+        }
+    }
+
+    /**
+     * 从向量存储中全部向量的各维度最小值/最大值校准
+     */
+    public static ScalarQuantizer calibrate(VectorStore store) {
+        int dimension = store.getDimension();
+        float[] min = new float[dimension];
+        float[] max = new float[dimension];
+        float[] buffer = new float[dimension];
+        Arrays.fill(min, Float.POSITIVE_INFINITY);
+        Arrays.fill(max, Float.NEGATIVE_INFINITY);
+        int[] ids = store.ids();
+        for (int id : ids) {
+            store.get(id, buffer);
+            for (int i = 0; i < dimension; i++) {
+                if (buffer[i] < min[i]) {
+                    min[i] = buffer[i];
+                }
+                if (buffer[i] > max[i]) {
+                    max[i] = buffer[i];
+                }
+            }
+        }
+        if (ids.length == 0) {
+            // 没有数据时按单位向量的取值范围校准
+            Arrays.fill(min, -1f);
+            Arrays.fill(max, 1f);
+        }
+        return new ScalarQuantizer(min, max);
+    }
+
+    /**
+     * 编码向量，超出校准范围的值截断
+     */
+    public void encode(float[] vector, byte[] dest, int offset) {
+        for (int i = 0; i < min.length; i++) {
+            int code = scale[i] > 0 ? Math.round((vector[i] - min[i]) / scale[i]) : 0;
+            if (code < 0) {
+                code = 0;
+            } else if (code > 255) {
+                code = 255;
+            }
+            dest[offset + i] = (byte) (code - 128);
+        }
+    }
+
+    /**
+     * 准备查询：预先计算偏置项并将查询量化为int8
+     */
+    public QuantizedQuery prepareQuery(float[] query) {
+        float bias = 0f;
+        float maxAbs = 0f;
+        float[] scaled = new float[min.length];
+        for (int i = 0; i < min.length; i++) {
+            bias += query[i] * min[i];
+            scaled[i] = query[i] * scale[i];
+            maxAbs = Math.max(maxAbs, Math.abs(scaled[i]));
+        }
+        float factor = maxAbs > 0 ? 127f / maxAbs : 1f;
+        byte[] codes = new byte[min.length];
+        int codeSum = 0;
+        for (int i = 0; i < min.length; i++) {
+            codes[i] = (byte) Math.round(scaled[i] * factor);
+            codeSum += codes[i];
+        }
+        return new QuantizedQuery(codes, bias, 128 * codeSum, 1f / factor);
+    }
+
+    /**
+     * 查询与编码向量的近似内积（整数累加）
+     */
+    public float dot(QuantizedQuery query, byte[] codes, int offset) {
+        byte[] queryCodes = query.codes;
+        int sum = 0;
+        for (int i = 0; i < queryCodes.length; i++) {
+            sum += queryCodes[i] * codes[offset + i];
+        }
+        return query.bias + (sum + query.codeOffset) * query.inverseFactor;
+    }
+
+    public int getDimension() {
+        return min.length;
+    }
+
+    /**
+     * 量化后的查询
+     */
+    public static final class QuantizedQuery {
+        private final byte[] codes;
+        private final float bias;
+        private final int codeOffset;
+        private final float inverseFactor;
+
+        private QuantizedQuery(byte[] codes, float bias, int codeOffset, float inverseFactor) {
+            this.codes = codes;
+            this.bias = bias;
+            this.codeOffset = codeOffset;
+            this.inverseFactor = inverseFactor;
+        }
+    }
+}
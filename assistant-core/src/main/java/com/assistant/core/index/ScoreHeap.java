@@ -0,0 +1,117 @@
+package com.assistant.core.index;
+
+import java.util.Arrays;
+
+/**
+ * 基于原始类型数组的二叉堆，元素为 (id, score) 对
+ * minHeap=true 时堆顶为最低分，否则堆顶为最高分。
+ */
+public class ScoreHeap {
+
+    private final boolean minHeap;
+    private int[] ids;
+    private float[] scores;
+    private int size;
+
+    public ScoreHeap(int initialCapacity, boolean minHeap) {
+        this.minHeap = minHeap;
+        this.ids = new int[Math.max(1, initialCapacity)];
+        this.scores = new float[ids.length];
+    }
+
+    public void push(int id, float score) {
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+            scores = Arrays.copyOf(scores, size * 2);
+        }
+        int index = size++;
+        // 上浮
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!higherPriority(score, id, scores[parent], ids[parent])) {
+                break;
+            }
+            ids[index] = ids[parent];
+            scores[index] = scores[parent];
+            index = parent;
+        }
+        ids[index] = id;
+        scores[index] = score;
+    }
+
+    /**
+     * 弹出堆顶元素，返回其ID
+     */
+    public int pop() {
+        int top = ids[0];
+        size--;
+        if (size > 0) {
+            siftDown(ids[size], scores[size]);
+        }
+        return top;
+    }
+
+    /**
+     * 用新元素替换堆顶（比先pop再push少一次调整）
+     */
+    public void replaceTop(int id, float score) {
+        siftDown(id, score);
+    }
+
+    private void siftDown(int id, float score) {
+        int index = 0;
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            int right = child + 1;
+            if (right < size && higherPriority(scores[right], ids[right], scores[child], ids[child])) {
+                child = right;
+            }
+            if (!higherPriority(scores[child], ids[child], score, id)) {
+                break;
+            }
+            ids[index] = ids[child];
+            scores[index] = scores[child];
+            index = child;
+        }
+        ids[index] = id;
+        scores[index] = score;
+    }
+
+    /**
+     * a 是否应位于 b 之上；分数相同时ID大的更靠近最小堆顶，使最终结果中ID小的优先保留
+     */
+    private boolean higherPriority(float scoreA, int idA, float scoreB, int idB) {
+        if (minHeap) {
+            return scoreA < scoreB || (scoreA == scoreB && idA > idB);
+        }
+        return scoreA > scoreB || (scoreA == scoreB && idA < idB);
+    }
+
+    public int topId() {
+        return ids[0];
+    }
+
+    public float topScore() {
+        return scores[0];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 按数组顺序访问（非排序顺序）
+     */
+    public int idAt(int index) {
+        return ids[index];
+    }
+
+    public float scoreAt(int index) {
+        return scores[index];
+    }
+}
@@ -0,0 +1,99 @@
+package com.assistant.core.index;
+
+import java.util.Arrays;
+
+/**
+ * 打分结果集合，以并行的原始类型数组保存文档ID和分数
+ */
+public class ScoredDocs {
+
+    private int[] docs;
+    private float[] scores;
+    private int size;
+
+    public ScoredDocs() {
+        this(16);
+    }
+
+    public ScoredDocs(int initialCapacity) {
+        docs = new int[Math.max(1, initialCapacity)];
+        scores = new float[docs.length];
+    }
+
+    public void add(int doc, float score) {
+        if (size == docs.length) {
+            docs = Arrays.copyOf(docs, size * 2);
+            scores = Arrays.copyOf(scores, size * 2);
+        }
+        docs[size] = doc;
+        scores[size] = score;
+        size++;
+    }
+
+    /**
+     * 按分数降序排序（分数相同时文档ID小的在前）
+     */
+    public void sortByScore() {
+        quickSort(0, size - 1);
+    }
+
+    private void quickSort(int lo, int hi) {
+        while (lo < hi) {
+            int i = lo;
+            int j = hi;
+            int mid = (lo + hi) >>> 1;
+            float pivotScore = scores[mid];
+            int pivotDoc = docs[mid];
+            while (i <= j) {
+                while (before(i, pivotScore, pivotDoc)) {
+                    i++;
+                }
+                while (after(j, pivotScore, pivotDoc)) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(i, j);
+                    i++;
+                    j--;
+                }
+            }
+            // 先递归较小的一半，避免最坏情况下栈过深
+            if (j - lo < hi - i) {
+                quickSort(lo, j);
+                lo = i;
+            } else {
+                quickSort(i, hi);
+                hi = j;
+            }
+        }
+    }
+
+    private boolean before(int index, float score, int doc) {
+        return scores[index] > score || (scores[index] == score && docs[index] < doc);
+    }
+
+    private boolean after(int index, float score, int doc) {
+        return scores[index] < score || (scores[index] == score && docs[index] > doc);
+    }
+
+    private void swap(int i, int j) {
+        int doc = docs[i];
+        docs[i] = docs[j];
+        docs[j] = doc;
+        float score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int doc(int index) {
+        return docs[index];
+    }
+
+    public float score(int index) {
+        return scores[index];
+    }
+}
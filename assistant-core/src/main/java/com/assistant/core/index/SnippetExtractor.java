@@ -0,0 +1,323 @@
+package com.assistant.core.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基于词元偏移的摘要片段提取
+ * 用与索引相同的分析器定位查询词在正文中的字符偏移（只比较字符区间，不生成词元字符串），
+ * 以固定长度窗口滑过所有命中，按窗口内不同查询词的权重之和选出得分最高且互不重叠的若干窗口，
+ * 只对这些窗口做HTML转义并用 &lt;mark&gt; 标记命中。
+ */
+public class SnippetExtractor {
+
+    private static final String ELLIPSIS = "...";
+
+    /**
+     * 查询词权重（如IDF）
+     */
+    public interface TermWeigher {
+        float weight(String term);
+    }
+
+    private final TextAnalyzer analyzer;
+    private final int fragmentCount;
+    private final int fragmentLength;
+
+    public SnippetExtractor(TextAnalyzer analyzer, int fragmentCount, int fragmentLength) {
+        this.analyzer = analyzer;
+        this.fragmentCount = Math.max(1, fragmentCount);
+        this.fragmentLength = Math.max(20, fragmentLength);
+    }
+
+    /**
+     * 提取摘要片段；没有命中时返回正文开头的一段
+     */
+    public String extract(String content, String query, TermWeigher weigher) {
+        if (content == null || content.isEmpty()) {
+            return content;
+        }
+
+        // 查询词去重，权重为0（索引中不存在）的词仍以最小权重参与，保证能被高亮
+        Map<String, Integer> termIndexes = new LinkedHashMap<>();
+        for (String term : analyzer.terms(query)) {
+            if (!termIndexes.containsKey(term)) {
+                termIndexes.put(term, termIndexes.size());
+            }
+        }
+        if (termIndexes.isEmpty()) {
+            return leadingFragment(content);
+        }
+        String[] terms = termIndexes.keySet().toArray(new String[0]);
+        float[] weights = new float[terms.length];
+        for (int t = 0; t < terms.length; t++) {
+            weights[t] = Math.max(0.1f, weigher != null ? weigher.weight(terms[t]) : 1f);
+        }
+
+        return render(content, findMatches(content, terms), weights);
+    }
+
+    /**
+     * 按索引中记录的命中偏移提取摘要片段，不再扫描正文
+     *
+     * @param offsets 命中区间，每个命中依次为起始偏移、结束偏移和词序号，按起始偏移升序，见 {@link InvertedIndex#matchOffsets}
+     * @param base    正文在建索引文本中的起始偏移
+     * @param terms   词序号对应的查询词
+     * @param weights 词序号对应的权重
+     * @return 摘要片段；偏移与正文对不上（正文在建索引后已变化）时返回null
+     */
+    public String extract(String content, int[] offsets, int base, String[] terms, float[] weights) {
+        if (content == null || content.isEmpty()) {
+            return content;
+        }
+        Matches matches = new Matches();
+        for (int i = 0; i + 2 < offsets.length; i += 3) {
+            int start = offsets[i] - base;
+            int end = offsets[i + 1] - base;
+            if (start < 0) {
+                // 文件名中的命中
+                continue;
+            }
+            String term = terms[offsets[i + 2]];
+            if (end > content.length() || end - start != term.length()
+                || !content.regionMatches(true, start, term, 0, term.length())) {
+                return null;
+            }
+            matches.add(start, end, offsets[i + 2]);
+        }
+        float[] floors = new float[weights.length];
+        for (int t = 0; t < weights.length; t++) {
+            floors[t] = Math.max(0.1f, weights[t]);
+        }
+        return render(content, matches, floors);
+    }
+
+    /**
+     * 正文中一个区间开头的片段（如语义检索命中的段落），不标记命中
+     */
+    public String fragment(String content, int start, int end) {
+        if (content == null || start < 0 || start >= end || end > content.length()) {
+            return null;
+        }
+        int cut = Math.min(end, start + fragmentLength);
+        StringBuilder out = new StringBuilder(cut - start + 8);
+        if (start > 0) {
+            out.append(ELLIPSIS);
+        }
+        appendEscaped(out, content, start, cut);
+        if (cut < content.length()) {
+            out.append(ELLIPSIS);
+        }
+        return out.toString();
+    }
+
+    private String render(String content, Matches matches, float[] weights) {
+        if (matches.size == 0) {
+            return leadingFragment(content);
+        }
+
+        int[] windowStarts = selectWindows(content.length(), matches, weights);
+        StringBuilder snippet = new StringBuilder(fragmentCount * (fragmentLength + 32));
+        for (int i = 0; i < windowStarts.length; i++) {
+            int start = windowStarts[i];
+            int end = Math.min(content.length(), start + fragmentLength);
+            if (start > 0 || i > 0) {
+                snippet.append(ELLIPSIS);
+            }
+            appendFragment(snippet, content, start, end, matches);
+            if (i == windowStarts.length - 1 && end < content.length()) {
+                snippet.append(ELLIPSIS);
+            }
+        }
+        return snippet.toString();
+    }
+
+    /**
+     * 定位所有查询词命中的字符区间（按起始偏移升序）
+     */
+    private Matches findMatches(String content, String[] terms) {
+        Matches matches = new Matches();
+        analyzer.analyzeOffsets(content, (position, startOffset, endOffset) -> {
+            int length = endOffset - startOffset;
+            for (int t = 0; t < terms.length; t++) {
+                String term = terms[t];
+                if (term.length() == length && content.regionMatches(true, startOffset, term, 0, length)) {
+                    matches.add(startOffset, endOffset, t);
+                    break;
+                }
+            }
+        });
+        return matches;
+    }
+
+    /**
+     * 以每个命中为窗口起点计算得分，按得分贪心选出互不重叠的窗口，返回按位置排序的窗口起点
+     */
+    private int[] selectWindows(int contentLength, Matches matches, float[] weights) {
+        int n = matches.size;
+        float[] scores = new float[n];
+        int[] ends = new int[n];
+        int[] termCounts = new int[weights.length];
+        float distinctWeight = 0f;
+        int duplicates = 0;
+        int j = 0;
+        // 双指针：窗口 [starts[i], starts[i] + fragmentLength) 内包含命中 i..j-1（命中 i 本身总是包含在内）
+        for (int i = 0; i < n; i++) {
+            int limit = matches.starts[i] + fragmentLength;
+            while (j < n && (j <= i || matches.ends[j] <= limit)) {
+                int term = matches.terms[j];
+                if (termCounts[term]++ == 0) {
+                    distinctWeight += weights[term];
+                } else {
+                    duplicates++;
+                }
+                j++;
+            }
+            scores[i] = distinctWeight + 0.1f * duplicates;
+            ends[i] = j;
+            int term = matches.terms[i];
+            if (--termCounts[term] == 0) {
+                distinctWeight -= weights[term];
+            } else {
+                duplicates--;
+            }
+        }
+
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> scores[a] != scores[b] ? Float.compare(scores[b], scores[a]) : Integer.compare(a, b));
+
+        List<int[]> chosen = new ArrayList<>();
+        for (int candidate : order) {
+            if (chosen.size() >= fragmentCount) {
+                break;
+            }
+            int[] window = centerWindow(contentLength, matches.starts[candidate], matches.ends[ends[candidate] - 1]);
+            boolean overlaps = false;
+            for (int[] other : chosen) {
+                if (window[0] < other[1] && other[0] < window[1]) {
+                    overlaps = true;
+                    break;
+                }
+            }
+            if (!overlaps) {
+                chosen.add(window);
+            }
+        }
+
+        int[] starts = new int[chosen.size()];
+        for (int i = 0; i < starts.length; i++) {
+            starts[i] = chosen.get(i)[0];
+        }
+        Arrays.sort(starts);
+        return starts;
+    }
+
+    /**
+     * 将命中区间 [matchStart, matchEnd) 置于窗口中部，返回 [窗口起点, 窗口终点)
+     */
+    private int[] centerWindow(int contentLength, int matchStart, int matchEnd) {
+        int slack = Math.max(0, fragmentLength - (matchEnd - matchStart));
+        int start = Math.max(0, matchStart - slack / 2);
+        int end = Math.min(contentLength, start + fragmentLength);
+        start = Math.max(0, end - fragmentLength);
+        return new int[]{start, end};
+    }
+
+    /**
+     * 输出 [start, end) 范围内的正文，转义HTML并标记命中（重叠的命中合并为一个标记）
+     */
+    private void appendFragment(StringBuilder out, String content, int start, int end, Matches matches) {
+        int index = Arrays.binarySearch(matches.starts, 0, matches.size, start);
+        int m = index >= 0 ? index : -index - 1;
+        // 起点可能落在前一个命中中间
+        while (m > 0 && matches.ends[m - 1] > start) {
+            m--;
+        }
+
+        int cursor = start;
+        while (m < matches.size && matches.starts[m] < end) {
+            int markStart = Math.max(matches.starts[m], cursor);
+            int markEnd = Math.min(matches.ends[m], end);
+            m++;
+            while (m < matches.size && matches.starts[m] <= markEnd && matches.starts[m] < end) {
+                markEnd = Math.max(markEnd, Math.min(matches.ends[m], end));
+                m++;
+            }
+            if (markEnd <= markStart) {
+                continue;
+            }
+            appendEscaped(out, content, cursor, markStart);
+            out.append("<mark>");
+            appendEscaped(out, content, markStart, markEnd);
+            out.append("</mark>");
+            cursor = markEnd;
+        }
+        appendEscaped(out, content, cursor, end);
+    }
+
+    private String leadingFragment(String content) {
+        int end = Math.min(content.length(), fragmentLength);
+        StringBuilder out = new StringBuilder(end + 8);
+        appendEscaped(out, content, 0, end);
+        if (end < content.length()) {
+            out.append(ELLIPSIS);
+        }
+        return out.toString();
+    }
+
+    /**
+     * HTML转义
+     */
+    static void appendEscaped(StringBuilder out, String text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<':
+                    out.append("&lt;");
+                    break;
+                case '>':
+                    out.append("&gt;");
+                    break;
+                case '&':
+                    out.append("&amp;");
+                    break;
+                case '"':
+                    out.append("&quot;");
+                    break;
+                case '\'':
+                    out.append("&#39;");
+                    break;
+                default:
+                    out.append(c);
+            }
+        }
+    }
+
+    /**
+     * 命中区间列表（并行的原始类型数组，按起始偏移升序追加）
+     */
+    private static final class Matches {
+        private int[] starts = new int[16];
+        private int[] ends = new int[16];
+        private int[] terms = new int[16];
+        private int size;
+
+        private void add(int start, int end, int term) {
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+                terms = Arrays.copyOf(terms, size * 2);
+            }
+            starts[size] = start;
+            ends[size] = end;
+            terms[size] = term;
+            size++;
+        }
+    }
+}
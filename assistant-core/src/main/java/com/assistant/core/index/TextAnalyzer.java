@@ -0,0 +1,109 @@
+package com.assistant.core.index;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 文本分析器
+ * 英文/数字按单词切分并转小写，中日韩文字按相邻二元组（bigram）切分，单个汉字输出单字词。
+ * 位置按字符推进：单词占一个位置，连续n个汉字占n个位置，因此查询中以空格分隔的中文片段
+ * 与文档中连写的同一片段位置一致。
+ */
+public class TextAnalyzer {
+
+    private static final int MAX_WORD_LENGTH = 64;
+
+    /**
+     * 词元回调
+     */
+    public interface TokenHandler {
+        void onToken(String term, int position, int startOffset, int endOffset);
+    }
+
+    /**
+     * 词元位置回调（不生成词元字符串）
+     */
+    public interface OffsetHandler {
+        void onToken(int position, int startOffset, int endOffset);
+    }
+
+    /**
+     * 分析文本，依次回调每个词元
+     */
+    public void analyze(String text, TokenHandler handler) {
+        analyzeOffsets(text, (position, startOffset, endOffset) -> {
+            String term = text.substring(startOffset, endOffset);
+            if (!isCjk(text.charAt(startOffset))) {
+                term = term.toLowerCase(Locale.ROOT);
+            }
+            handler.onToken(term, position, startOffset, endOffset);
+        });
+    }
+
+    /**
+     * 分析文本，只回调每个词元的位置和字符偏移，切分规则与 {@link #analyze} 相同
+     */
+    public void analyzeOffsets(String text, OffsetHandler handler) {
+        if (text == null) {
+            return;
+        }
+
+        int length = text.length();
+        int position = 0;
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+            if (isCjk(c)) {
+                int start = i;
+                while (i < length && isCjk(text.charAt(i))) {
+                    i++;
+                }
+                int runLength = i - start;
+                if (runLength == 1) {
+                    handler.onToken(position, start, i);
+                } else {
+                    for (int k = start; k < i - 1; k++) {
+                        handler.onToken(position + (k - start), k, k + 2);
+                    }
+                }
+                position += runLength;
+            } else if (Character.isLetterOrDigit(c)) {
+                int start = i;
+                while (i < length && isWordChar(text.charAt(i))) {
+                    i++;
+                }
+                if (i - start <= MAX_WORD_LENGTH) {
+                    handler.onToken(position, start, i);
+                }
+                position++;
+            } else {
+                i++;
+            }
+        }
+    }
+
+    /**
+     * 获取文本的全部词元（按出现顺序，可能重复）
+     */
+    public List<String> terms(String text) {
+        final List<String> terms = new ArrayList<>();
+        analyze(text, (term, position, startOffset, endOffset) -> terms.add(term));
+        return terms;
+    }
+
+    /**
+     * 是否为中日韩文字
+     */
+    public static boolean isCjk(char c) {
+        return (c >= 0x4E00 && c <= 0x9FFF)   // CJK统一汉字
+            || (c >= 0x3400 && c <= 0x4DBF)   // CJK扩展A
+            || (c >= 0xF900 && c <= 0xFAFF)   // CJK兼容汉字
+            || (c >= 0x3040 && c <= 0x30FF)   // 平假名、片假名
+            || (c >= 0xAC00 && c <= 0xD7AF);  // 韩文音节
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) && !isCjk(c);
+    }
+}
@@ -0,0 +1,173 @@
+package com.assistant.core.index;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 解析后的文本查询
+ * 所有查询词（含短语中的词）参与BM25打分；双引号括起的短语和 NEAR/k 连接的两个操作数是位置约束，
+ * 文档必须满足全部位置约束才算命中。例如 {@code "营业收入 同比增长" 利润 NEAR/5 成本}。
+ */
+public class TextQuery {
+
+    private static final Pattern NEAR = Pattern.compile("NEAR/(\\d+)");
+
+    /**
+     * 短语：各词相对短语起点的位置，与文档中的位置差一致才算匹配
+     */
+    public static final class Phrase {
+        final String[] terms;
+        final int[] offsets;
+        /**
+         * 短语覆盖的位置数（最后一个词的相对位置加一）
+         */
+        final int span;
+
+        Phrase(String[] terms, int[] offsets) {
+            this.terms = terms;
+            this.offsets = offsets;
+            this.span = offsets[offsets.length - 1] + 1;
+        }
+
+        public String[] getTerms() {
+            return terms;
+        }
+    }
+
+    /**
+     * 位置约束：right为null时只要求left作为短语出现，否则要求两者的某次出现间隔不超过maxGap个位置（不分先后）
+     */
+    public static final class Proximity {
+        final Phrase left;
+        final Phrase right;
+        final int maxGap;
+
+        Proximity(Phrase left, Phrase right, int maxGap) {
+            this.left = left;
+            this.right = right;
+            this.maxGap = maxGap;
+        }
+    }
+
+    private final Map<String, Float> terms;
+    private final List<Proximity> constraints;
+
+    TextQuery(Map<String, Float> terms, List<Proximity> constraints) {
+        this.terms = terms;
+        this.constraints = constraints;
+    }
+
+    /**
+     * 参与打分的词及其查询权重
+     */
+    public Map<String, Float> getTerms() {
+        return terms;
+    }
+
+    public List<Proximity> getConstraints() {
+        return constraints;
+    }
+
+    public boolean hasConstraints() {
+        return !constraints.isEmpty();
+    }
+
+    /**
+     * 解析查询串：按空白切分（引号内的空白除外），双引号内为短语，
+     * 形如 NEAR/k 的单独一项连接其前后两个操作数（单词或短语），其余为普通词
+     */
+    public static TextQuery parse(String query, TextAnalyzer analyzer) {
+        List<String> items = new ArrayList<>();
+        List<Boolean> quoted = new ArrayList<>();
+        split(query != null ? query : "", items, quoted);
+
+        Map<String, Float> terms = new LinkedHashMap<>();
+        List<Proximity> constraints = new ArrayList<>();
+        Phrase previous = null;
+        boolean previousQuoted = false;
+        boolean previousUsed = false;
+        int pendingGap = -1;
+        for (int i = 0; i < items.size(); i++) {
+            String item = items.get(i);
+            Matcher near = quoted.get(i) ? null : NEAR.matcher(item);
+            if (near != null && near.matches()) {
+                pendingGap = previous != null ? Integer.parseInt(near.group(1)) : -1;
+                continue;
+            }
+
+            Phrase phrase = analyze(item, analyzer, terms);
+            if (phrase == null) {
+                pendingGap = -1;
+                continue;
+            }
+            if (pendingGap >= 0) {
+                constraints.add(new Proximity(previous, phrase, pendingGap));
+                previousUsed = true;
+                pendingGap = -1;
+            } else {
+                if (previous != null && previousQuoted && !previousUsed) {
+                    constraints.add(new Proximity(previous, null, 0));
+                }
+                previousUsed = false;
+            }
+            previous = phrase;
+            previousQuoted = quoted.get(i);
+        }
+        if (previous != null && previousQuoted && !previousUsed) {
+            constraints.add(new Proximity(previous, null, 0));
+        }
+        return new TextQuery(terms, constraints.isEmpty() ? Collections.<Proximity>emptyList() : constraints);
+    }
+
+    /**
+     * 分析一项文本，词计入打分词表，返回其短语形式；没有词时返回null
+     */
+    private static Phrase analyze(String text, TextAnalyzer analyzer, Map<String, Float> terms) {
+        List<String> phraseTerms = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        analyzer.analyze(text, (term, position, startOffset, endOffset) -> {
+            phraseTerms.add(term);
+            positions.add(position);
+        });
+        if (phraseTerms.isEmpty()) {
+            return null;
+        }
+        int[] offsets = new int[positions.size()];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = positions.get(i) - positions.get(0);
+            terms.merge(phraseTerms.get(i), 1f, Float::sum);
+        }
+        return new Phrase(phraseTerms.toArray(new String[0]), offsets);
+    }
+
+    private static void split(String query, List<String> items, List<Boolean> quoted) {
+        StringBuilder current = new StringBuilder();
+        boolean inQuote = false;
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            if (c == '"') {
+                flush(current, inQuote, items, quoted);
+                inQuote = !inQuote;
+            } else if (!inQuote && Character.isWhitespace(c)) {
+                flush(current, false, items, quoted);
+            } else {
+                current.append(c);
+            }
+        }
+        // 未闭合的引号按短语处理
+        flush(current, inQuote, items, quoted);
+    }
+
+    private static void flush(StringBuilder current, boolean inQuote, List<String> items, List<Boolean> quoted) {
+        if (current.toString().trim().length() > 0) {
+            items.add(current.toString());
+            quoted.add(inQuote);
+        }
+        current.setLength(0);
+    }
+}
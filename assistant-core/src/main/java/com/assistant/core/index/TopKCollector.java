@@ -0,0 +1,57 @@
+package com.assistant.core.index;
+
+/**
+ * 有界Top-K收集器
+ * 用容量为k的最小堆保存当前最好的k个 (文档ID, 分数)，堆顶为其中最低分，
+ * 新文档分数不高于堆顶时直接丢弃，整个收集过程不为单个文档分配对象。
+ */
+public class TopKCollector {
+
+    private final int k;
+    private final ScoreHeap heap;
+
+    public TopKCollector(int k) {
+        this.k = Math.max(0, k);
+        this.heap = new ScoreHeap(this.k + 1, true);
+    }
+
+    public void collect(int doc, float score) {
+        if (k == 0) {
+            return;
+        }
+        if (heap.size() < k) {
+            heap.push(doc, score);
+        } else if (score > heap.topScore() || (score == heap.topScore() && doc < heap.topId())) {
+            heap.replaceTop(doc, score);
+        }
+    }
+
+    /**
+     * 合并另一个收集器（如分片的局部结果）的前k名
+     */
+    public void merge(TopKCollector other) {
+        for (int i = 0; i < other.heap.size(); i++) {
+            collect(other.heap.idAt(i), other.heap.scoreAt(i));
+        }
+    }
+
+    /**
+     * 按分数降序返回跳过前offset个之后的结果（分页）；调用后收集器被清空
+     */
+    public ScoredDocs topDocs(int offset) {
+        int size = heap.size();
+        int[] docs = new int[size];
+        float[] scores = new float[size];
+        // 最小堆依次弹出为升序，倒序填充得到降序
+        for (int i = size - 1; i >= 0; i--) {
+            scores[i] = heap.topScore();
+            docs[i] = heap.pop();
+        }
+        int start = Math.max(0, offset);
+        ScoredDocs results = new ScoredDocs(Math.max(1, size - start));
+        for (int i = start; i < size; i++) {
+            results.add(docs[i], scores[i]);
+        }
+        return results;
+    }
+}
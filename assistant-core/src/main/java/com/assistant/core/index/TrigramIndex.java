@@ -0,0 +1,289 @@
+package com.assistant.core.index;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntConsumer;
+
+/**
+ * 文件名和路径的N-gram索引，用于按部分文件名查找文件
+ * 完整路径（小写）的每个连续三字符登记一条倒排，文件名另外登记二字符倒排，以支持两个字的中文文件名查询。
+ * 查询时对查询串的各个N-gram倒排求交集得到候选，再逐个核对子串确认命中。
+ * 倒排表为有序int数组，文档ID按写入顺序基本递增，追加写入为主。
+ */
+public class TrigramIndex {
+
+    /**
+     * 查询串的最短长度，更短的查询不使用索引
+     */
+    public static final int MIN_QUERY_LENGTH = 2;
+
+    private final Map<Long, Postings> trigrams = new HashMap<>();
+    private final Map<Long, Postings> nameBigrams = new HashMap<>();
+    private final Map<Integer, String> paths = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * 有序的文档ID数组
+     */
+    private static final class Postings {
+        int[] docs = new int[2];
+        int size;
+
+        void add(int doc) {
+            if (size == 0 || docs[size - 1] < doc) {
+                if (size == docs.length) {
+                    docs = Arrays.copyOf(docs, size * 2);
+                }
+                docs[size++] = doc;
+                return;
+            }
+            int index = Arrays.binarySearch(docs, 0, size, doc);
+            if (index >= 0) {
+                return;
+            }
+            index = -index - 1;
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+            }
+            System.arraycopy(docs, index, docs, index + 1, size - index);
+            docs[index] = doc;
+            size++;
+        }
+
+        void remove(int doc) {
+            int index = Arrays.binarySearch(docs, 0, size, doc);
+            if (index >= 0) {
+                System.arraycopy(docs, index + 1, docs, index, size - index - 1);
+                size--;
+            }
+        }
+
+        /**
+         * 从from位置起第一个不小于target的位置（倍增后二分）
+         */
+        int advance(int from, int target) {
+            int bound = 1;
+            while (from + bound < size && docs[from + bound] < target) {
+                bound <<= 1;
+            }
+            int index = Arrays.binarySearch(docs, from + (bound >> 1), Math.min(size, from + bound + 1), target);
+            return index >= 0 ? index : -index - 1;
+        }
+    }
+
+    /**
+     * 添加或更新文件路径
+     */
+    public void add(int docId, String filePath) {
+        add(docId, filePath, true);
+    }
+
+    /**
+     * 仅当文件不存在时添加（用于启动时的批量构建，避免覆盖构建期间写入的新内容）
+     */
+    public void addIfAbsent(int docId, String filePath) {
+        add(docId, filePath, false);
+    }
+
+    private void add(int docId, String filePath, boolean replace) {
+        if (filePath == null) {
+            return;
+        }
+        String path = filePath.toLowerCase(Locale.ROOT);
+        lock.writeLock().lock();
+        try {
+            if (paths.containsKey(docId)) {
+                if (!replace) {
+                    return;
+                }
+                removeLocked(docId);
+            }
+            paths.put(docId, path);
+            for (int i = 0; i + 3 <= path.length(); i++) {
+                posting(trigrams, trigram(path, i)).add(docId);
+            }
+            for (int i = nameStart(path); i + 2 <= path.length(); i++) {
+                posting(nameBigrams, bigram(path, i)).add(docId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int docId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(docId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeLocked(int docId) {
+        String path = paths.remove(docId);
+        if (path == null) {
+            return;
+        }
+        for (int i = 0; i + 3 <= path.length(); i++) {
+            release(trigrams, trigram(path, i), docId);
+        }
+        for (int i = nameStart(path); i + 2 <= path.length(); i++) {
+            release(nameBigrams, bigram(path, i), docId);
+        }
+    }
+
+    /**
+     * 文件名或路径中包含query（不区分大小写）的文件，文件名命中排在路径命中之前，
+     * 分数为查询串占命中字段长度的比例，文件名命中另加1
+     */
+    public ScoredDocs search(String query, int limit) {
+        TopKCollector collector = new TopKCollector(Math.max(1, limit));
+        if (query == null || query.length() < MIN_QUERY_LENGTH || limit <= 0) {
+            return collector.topDocs(0);
+        }
+        String needle = query.toLowerCase(Locale.ROOT);
+        lock.readLock().lock();
+        try {
+            forEachCandidate(needle, doc -> {
+                String path = paths.get(doc);
+                int nameStart = nameStart(path);
+                if (path.indexOf(needle, nameStart) >= 0) {
+                    collector.collect(doc, 1f + needle.length() / (float) (path.length() - nameStart));
+                } else if (needle.length() >= 3 && path.contains(needle)) {
+                    collector.collect(doc, needle.length() / (float) path.length());
+                }
+            });
+            return collector.topDocs(0);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 文件名中包含query（不区分大小写）的所有文件，用于布尔查询的 name: 条件；
+     * 查询串短于 {@link #MIN_QUERY_LENGTH} 时逐个检查文件名
+     */
+    public DocIdSet nameMatches(String query) {
+        DocIdSet docs = new DocIdSet();
+        if (query == null || query.isEmpty()) {
+            return docs;
+        }
+        String needle = query.toLowerCase(Locale.ROOT);
+        lock.readLock().lock();
+        try {
+            if (needle.length() < MIN_QUERY_LENGTH) {
+                for (Map.Entry<Integer, String> entry : paths.entrySet()) {
+                    if (entry.getValue().indexOf(needle, nameStart(entry.getValue())) >= 0) {
+                        docs.add(entry.getKey());
+                    }
+                }
+                return docs;
+            }
+            forEachCandidate(needle, doc -> {
+                String path = paths.get(doc);
+                if (path.indexOf(needle, nameStart(path)) >= 0) {
+                    docs.add(doc);
+                }
+            });
+            return docs;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 对查询串各N-gram的倒排表求交集（最短的倒排表驱动，其余倍增跳跃），按文档ID升序给出候选，
+     * 候选还需核对子串；调用方持有读锁
+     */
+    private void forEachCandidate(String needle, IntConsumer consumer) {
+        Postings[] lists = needle.length() >= 3 ? lookup(trigrams, needle, 3) : lookup(nameBigrams, needle, 2);
+        if (lists == null) {
+            return;
+        }
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+        int[] positions = new int[lists.length];
+        Postings lead = lists[0];
+        candidates:
+        for (int i = 0; i < lead.size; i++) {
+            int doc = lead.docs[i];
+            for (int l = 1; l < lists.length; l++) {
+                positions[l] = lists[l].advance(positions[l], doc);
+                if (positions[l] >= lists[l].size) {
+                    break candidates;
+                }
+                if (lists[l].docs[positions[l]] != doc) {
+                    continue candidates;
+                }
+            }
+            consumer.accept(doc);
+        }
+    }
+
+    /**
+     * 已登记的文件数量
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return paths.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 查询串各N-gram的倒排表（已去重），任一N-gram没有倒排时返回null
+     */
+    private static Postings[] lookup(Map<Long, Postings> grams, String needle, int n) {
+        Postings[] lists = new Postings[needle.length() - n + 1];
+        int count = 0;
+        for (int i = 0; i + n <= needle.length(); i++) {
+            Postings postings = grams.get(n == 3 ? trigram(needle, i) : bigram(needle, i));
+            if (postings == null) {
+                return null;
+            }
+            boolean seen = false;
+            for (int j = 0; j < count && !seen; j++) {
+                seen = lists[j] == postings;
+            }
+            if (!seen) {
+                lists[count++] = postings;
+            }
+        }
+        return Arrays.copyOf(lists, count);
+    }
+
+    private static long trigram(String text, int i) {
+        return ((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2);
+    }
+
+    private static long bigram(String text, int i) {
+        return ((long) text.charAt(i) << 16) | text.charAt(i + 1);
+    }
+
+    private static int nameStart(String path) {
+        return Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\')) + 1;
+    }
+
+    private static Postings posting(Map<Long, Postings> grams, long key) {
+        Postings postings = grams.get(key);
+        if (postings == null) {
+            postings = new Postings();
+            grams.put(key, postings);
+        }
+        return postings;
+    }
+
+    private static void release(Map<Long, Postings> grams, long key, int docId) {
+        Postings postings = grams.get(key);
+        if (postings != null) {
+            postings.remove(docId);
+            if (postings.size == 0) {
+                grams.remove(key);
+            }
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package com.assistant.core.index;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * 内存映射的定长向量文件
+ * 文件由64字节文件头和定长记录组成，记录位置直接由ID（段落ID，即 file_chunk.id）决定：
+ * 每条记录为 [int 标记][float × 维度]，全部小端序，标记为 ID+1 表示存在、0 表示空位。
+ * 记录按固定数量分段映射（FileChannel.map），以FloatBuffer视图读取，扫描时无需逐行分配内存。
+ */
+public class VectorStore implements Closeable {
+
+    private static final int MAGIC = 0x56454346; // "VECF"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int RECORDS_PER_SEGMENT = 1 << 14;
+
+    /**
+     * 扫描回调
+     */
+    public interface ScoreConsumer {
+        void accept(int id, float score);
+    }
+
+    private final FileChannel channel;
+    private final int dimension;
+    private final int strideFloats;
+    private final long segmentBytes;
+
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+    private volatile FloatBuffer[] floatViews = new FloatBuffer[0];
+    private volatile IntBuffer[] intViews = new IntBuffer[0];
+    private final BitSet present = new BitSet();
+    private int count;
+
+    private VectorStore(FileChannel channel, int dimension) {
+        this.channel = channel;
+        this.dimension = dimension;
+        this.strideFloats = 1 + dimension;
+        this.segmentBytes = (long) RECORDS_PER_SEGMENT * strideFloats * 4;
+    }
+
+    /**
+     * 打开或创建向量文件，维度与文件头不一致时抛出IOException
+     */
+    public static VectorStore open(Path file, int dimension) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            if (channel.size() == 0) {
+                header.putInt(MAGIC).putInt(VERSION).putInt(dimension);
+                header.rewind();
+                channel.write(header, 0);
+            } else {
+                channel.read(header, 0);
+                header.flip();
+                if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                    throw new IOException("向量文件格式不正确: " + file);
+                }
+                if (header.getInt() != dimension) {
+                    throw new IOException("向量文件维度与配置不一致: " + file);
+                }
+            }
+
+            VectorStore store = new VectorStore(channel, dimension);
+            store.loadPresence();
+            return store;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 扫描已有文件中的标记，重建存在位图
+     */
+    private void loadPresence() throws IOException {
+        long recordBytes = (long) strideFloats * 4;
+        long records = Math.max(0, (channel.size() - HEADER_BYTES) / recordBytes);
+        if (records == 0) {
+            return;
+        }
+        ensureSegments((int) ((records - 1) / RECORDS_PER_SEGMENT) + 1);
+        for (int id = 0; id < records; id++) {
+            if (tag(id) == id + 1) {
+                present.set(id);
+                count++;
+            }
+        }
+    }
+
+    /**
+     * 写入向量
+     */
+    public synchronized void put(int id, float[] vector) throws IOException {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("向量维度不匹配: " + vector.length);
+        }
+        int segment = id / RECORDS_PER_SEGMENT;
+        ensureSegments(segment + 1);
+        FloatBuffer floats = floatViews[segment];
+        int base = (id % RECORDS_PER_SEGMENT) * strideFloats;
+        for (int i = 0; i < dimension; i++) {
+            floats.put(base + 1 + i, vector[i]);
+        }
+        // 最后写标记，保证读到标记时向量已完整
+        intViews[segment].put(base, id + 1);
+        if (!present.get(id)) {
+            present.set(id);
+            count++;
+        }
+    }
+
+    /**
+     * 删除向量（只清除标记）
+     */
+    public synchronized void remove(int id) {
+        if (!present.get(id)) {
+            return;
+        }
+        intViews[id / RECORDS_PER_SEGMENT].put((id % RECORDS_PER_SEGMENT) * strideFloats, 0);
+        present.clear(id);
+        count--;
+    }
+
+    public synchronized boolean contains(int id) {
+        return present.get(id);
+    }
+
+    /**
+     * 计算已存向量与查询向量的内积
+     */
+    public float dot(int id, float[] query) {
+        FloatBuffer floats = floatViews[id / RECORDS_PER_SEGMENT];
+        int base = (id % RECORDS_PER_SEGMENT) * strideFloats + 1;
+        float sum = 0f;
+        for (int i = 0; i < dimension; i++) {
+            sum += query[i] * floats.get(base + i);
+        }
+        return sum;
+    }
+
+    /**
+     * 计算两个已存向量的内积
+     */
+    public float dot(int id1, int id2) {
+        FloatBuffer floats1 = floatViews[id1 / RECORDS_PER_SEGMENT];
+        FloatBuffer floats2 = floatViews[id2 / RECORDS_PER_SEGMENT];
+        int base1 = (id1 % RECORDS_PER_SEGMENT) * strideFloats + 1;
+        int base2 = (id2 % RECORDS_PER_SEGMENT) * strideFloats + 1;
+        float sum = 0f;
+        for (int i = 0; i < dimension; i++) {
+            sum += floats1.get(base1 + i) * floats2.get(base2 + i);
+        }
+        return sum;
+    }
+
+    /**
+     * 读取向量到调用方提供的数组
+     */
+    public void get(int id, float[] dest) {
+        FloatBuffer floats = floatViews[id / RECORDS_PER_SEGMENT];
+        int base = (id % RECORDS_PER_SEGMENT) * strideFloats + 1;
+        for (int i = 0; i < dimension; i++) {
+            dest[i] = floats.get(base + i);
+        }
+    }
+
+    /**
+     * 顺序扫描所有向量，逐个回调与查询向量的内积
+     */
+    public void scan(float[] query, ScoreConsumer consumer) {
+        scan(query, 0, Integer.MAX_VALUE, consumer);
+    }
+
+    /**
+     * 顺序扫描ID在 [idFrom, idTo) 范围内的向量（用于分片并行扫描）
+     */
+    public void scan(float[] query, int idFrom, int idTo, ScoreConsumer consumer) {
+        BitSet snapshot;
+        synchronized (this) {
+            snapshot = present.get(idFrom, Math.max(idFrom, Math.min(idTo, present.length())));
+        }
+        for (int i = snapshot.nextSetBit(0); i >= 0; i = snapshot.nextSetBit(i + 1)) {
+            int id = idFrom + i;
+            consumer.accept(id, dot(id, query));
+        }
+    }
+
+    /**
+     * 最大向量ID加一（分片时的ID上界）
+     */
+    public synchronized int maxId() {
+        return present.length();
+    }
+
+    /**
+     * 按ID升序返回所有已存向量的ID
+     */
+    public synchronized int[] ids() {
+        int[] ids = new int[count];
+        int i = 0;
+        for (int id = present.nextSetBit(0); id >= 0; id = present.nextSetBit(id + 1)) {
+            ids[i++] = id;
+        }
+        return ids;
+    }
+
+    private int tag(int id) {
+        return intViews[id / RECORDS_PER_SEGMENT].get((id % RECORDS_PER_SEGMENT) * strideFloats);
+    }
+
+    /**
+     * 映射足够的分段（映射超出文件长度时文件自动扩展，未写入部分为稀疏空洞）
+     */
+    private synchronized void ensureSegments(int required) throws IOException {
+        if (segments.length >= required) {
+            return;
+        }
+        MappedByteBuffer[] newSegments = Arrays.copyOf(segments, required);
+        FloatBuffer[] newFloatViews = Arrays.copyOf(floatViews, required);
+        IntBuffer[] newIntViews = Arrays.copyOf(intViews, required);
+        for (int s = segments.length; s < required; s++) {
+            MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE,
+                HEADER_BYTES + s * segmentBytes, segmentBytes);
+            segment.order(ByteOrder.LITTLE_ENDIAN);
+            newSegments[s] = segment;
+            newFloatViews[s] = segment.asFloatBuffer();
+            newIntViews[s] = segment.asIntBuffer();
+        }
+        // 先发布视图再发布分段，读线程按分段下标访问视图
+        floatViews = newFloatViews;
+        intViews = newIntViews;
+        segments = newSegments;
+    }
+
+    /**
+     * 截掉maxId之后的整段记录（这些记录须已删除），缩短文件以免启动时扫描空记录；
+     * 平台不允许截断仍被映射的文件时保持原长度，返回是否已截断
+     */
+    public synchronized boolean truncate(int maxId) {
+        if (present.length() > maxId) {
+            throw new IllegalStateException("截断位置之后仍有向量: " + present.length());
+        }
+        int keep = (maxId + RECORDS_PER_SEGMENT - 1) / RECORDS_PER_SEGMENT;
+        if (keep >= segments.length) {
+            return false;
+        }
+        force();
+        // 被截掉的分段中没有向量，读线程不会访问
+        segments = Arrays.copyOf(segments, keep);
+        floatViews = Arrays.copyOf(floatViews, keep);
+        intViews = Arrays.copyOf(intViews, keep);
+        try {
+            channel.truncate(HEADER_BYTES + keep * segmentBytes);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 将修改刷入磁盘
+     */
+    public void force() {
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+}
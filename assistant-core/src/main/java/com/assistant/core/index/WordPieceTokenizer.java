@@ -0,0 +1,409 @@
+package com.assistant.core.index;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * BERT WordPiece分词器（不区分大小写的词表，如all-MiniLM-L6-v2）
+ * 先做BERT基本分词：去掉控制字符、每个中日韩汉字单独成词、转小写并去掉重音符号、按标点切分；
+ * 再对每个词按词表做贪心最长匹配，词中非开头的片段带 ## 前缀，无法切分的词记为 [UNK]。
+ * 词表存为字符前缀树，边保存在以（父节点，字符）为键的开放寻址哈希表里（基本类型数组）；
+ * 最长匹配沿前缀树逐字符前进，## 片段从"##"对应的节点开始匹配。
+ * 分词时词写入线程内复用的字符缓冲区，词ID直接写入调用方提供的数组，不为每个词或片段创建字符串。
+ * 线程安全：构造后只读。
+ */
+public class WordPieceTokenizer {
+
+    public static final String CLS = "[CLS]";
+    public static final String SEP = "[SEP]";
+    public static final String UNK = "[UNK]";
+    public static final String PAD = "[PAD]";
+
+    /**
+     * 超过此长度的词直接记为 [UNK]
+     */
+    private static final int MAX_WORD_CHARS = 100;
+
+    private static final long EMPTY = -1L;
+
+    /**
+     * 基本多文种平面字符的分类，分词时每个字符只查一次表
+     */
+    private static final byte KIND_SKIP = 0;
+    private static final byte KIND_SPACE = 1;
+    private static final byte KIND_CJK = 2;
+    private static final byte KIND_PUNCTUATION = 3;
+    private static final byte KIND_CHAR = 4;
+    private static final byte KIND_FOLD = 5;
+    private static final byte KIND_SURROGATE = 6;
+    private static final byte[] KINDS = new byte[Character.MAX_VALUE + 1];
+
+    /**
+     * KIND_FOLD字符转小写并去掉重音符号后的结果：FOLD_START[c]到FOLD_START[c+1]是FOLD_CHARS中的区间
+     */
+    private static final int[] FOLD_START = new int[Character.MAX_VALUE + 2];
+    private static final char[] FOLD_CHARS;
+
+    static {
+        StringBuilder folded = new StringBuilder();
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            FOLD_START[c] = folded.length();
+            if (c == 0 || c == 0xFFFD || isControl(c)) {
+                KINDS[c] = KIND_SKIP;
+            } else if (Character.isWhitespace(c) || Character.isSpaceChar(c)) {
+                KINDS[c] = KIND_SPACE;
+            } else if (isCjk(c)) {
+                KINDS[c] = KIND_CJK;
+            } else if (Character.isSurrogate((char) c)) {
+                KINDS[c] = KIND_SURROGATE;
+            } else if (fold(c, folded)) {
+                KINDS[c] = KIND_FOLD;
+            } else {
+                KINDS[c] = isPunctuation(c) ? KIND_PUNCTUATION : KIND_CHAR;
+            }
+        }
+        FOLD_START[Character.MAX_VALUE + 1] = folded.length();
+        FOLD_CHARS = folded.toString().toCharArray();
+    }
+
+    /**
+     * 字符转小写、去掉重音符号后追加到folded，结果就是字符本身时不追加并返回false
+     */
+    private static boolean fold(int c, StringBuilder folded) {
+        if (c < 0x80) {
+            if (c >= 'A' && c <= 'Z') {
+                folded.append((char) (c + ('a' - 'A')));
+                return true;
+            }
+            return false;
+        }
+        String lower = String.valueOf((char) c).toLowerCase(Locale.ROOT);
+        String decomposed = Normalizer.normalize(lower, Normalizer.Form.NFD);
+        int mark = folded.length();
+        for (int i = 0; i < decomposed.length(); i++) {
+            char d = decomposed.charAt(i);
+            if (Character.getType(d) != Character.NON_SPACING_MARK) {
+                folded.append(d);
+            }
+        }
+        if (folded.length() - mark == 1 && folded.charAt(mark) == c) {
+            folded.setLength(mark);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 每个线程复用的词缓冲区
+     */
+    private static final ThreadLocal<char[]> WORD_BUFFER = ThreadLocal.withInitial(() -> new char[MAX_WORD_CHARS + 1]);
+
+    /**
+     * 前缀树的边：键为 (父节点 << 16) | 字符，值为子节点
+     */
+    private final long[] edgeKeys;
+    private final int[] edgeTargets;
+    private final int edgeMask;
+    /**
+     * 节点对应的词ID，不是完整词的节点为-1
+     */
+    private final int[] nodeIds;
+    private int nodeCount;
+
+    private final int size;
+    private final int continuationRoot;
+    private final int clsId;
+    private final int sepId;
+    private final int unkId;
+    private final int padId;
+
+    /**
+     * @param vocab 词表，下标为词ID（重复的词保留第一个ID）
+     */
+    public WordPieceTokenizer(List<String> vocab) {
+        int chars = 0;
+        for (String token : vocab) {
+            chars += token.length();
+        }
+        // 边数不超过总字符数加上"##"的两条，装载因子不超过1/2
+        int capacity = Integer.highestOneBit(Math.max(16, chars * 2 + 4)) << 1;
+        edgeKeys = new long[capacity];
+        Arrays.fill(edgeKeys, EMPTY);
+        edgeTargets = new int[capacity];
+        edgeMask = capacity - 1;
+        nodeIds = new int[chars + 3];
+        Arrays.fill(nodeIds, -1);
+        nodeCount = 1;
+
+        for (int id = 0; id < vocab.size(); id++) {
+            int node = insert(vocab.get(id));
+            if (nodeIds[node] < 0) {
+                nodeIds[node] = id;
+            }
+        }
+        this.size = vocab.size();
+        this.continuationRoot = insert("##");
+        this.clsId = require(CLS);
+        this.sepId = require(SEP);
+        this.unkId = require(UNK);
+        this.padId = require(PAD);
+    }
+
+    /**
+     * 从vocab.txt加载词表（每行一个词，行号为词ID）
+     */
+    public static WordPieceTokenizer load(Path vocabFile) throws IOException {
+        List<String> vocab = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(vocabFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                vocab.add(line.trim());
+            }
+        }
+        return new WordPieceTokenizer(vocab);
+    }
+
+    /**
+     * 编码为词ID：[CLS] 词片段... [SEP]，写入ids的前若干位并返回个数；
+     * 总长度不超过maxLength和ids的长度，超出的词片段被截断（达到上限后不再扫描剩余文本）
+     */
+    public int encode(CharSequence text, int[] ids, int maxLength) {
+        int limit = Math.min(Math.max(2, maxLength), ids.length) - 1;
+        ids[0] = clsId;
+        int count = 1;
+        if (text != null) {
+            count = tokenize(text, ids, count, limit);
+        }
+        ids[count] = sepId;
+        return count + 1;
+    }
+
+    public int getPadId() {
+        return padId;
+    }
+
+    /**
+     * 词表大小
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * BERT基本分词，每得到一个词立即做WordPiece切分
+     */
+    private int tokenize(CharSequence text, int[] ids, int count, int limit) {
+        char[] word = WORD_BUFFER.get();
+        int length = 0;
+        for (int i = 0; i < text.length() && count < limit; i++) {
+            char c = text.charAt(i);
+            switch (KINDS[c]) {
+                case KIND_CHAR:
+                    length = append(word, length, c);
+                    break;
+                case KIND_SPACE:
+                    count = wordPiece(word, length, ids, count, limit);
+                    length = 0;
+                    break;
+                case KIND_CJK:
+                case KIND_PUNCTUATION:
+                    count = wordPiece(word, length, ids, count, limit);
+                    word[0] = c;
+                    count = wordPiece(word, 1, ids, count, limit);
+                    length = 0;
+                    break;
+                case KIND_FOLD:
+                    // 转小写、去掉重音符号后的字符再按标点切分
+                    for (int f = FOLD_START[c]; f < FOLD_START[c + 1]; f++) {
+                        char folded = FOLD_CHARS[f];
+                        if (isPunctuation(folded)) {
+                            count = wordPiece(word, length, ids, count, limit);
+                            word[0] = folded;
+                            count = wordPiece(word, 1, ids, count, limit);
+                            length = 0;
+                        } else {
+                            length = append(word, length, folded);
+                        }
+                    }
+                    break;
+                case KIND_SURROGATE: {
+                    int cp = Character.codePointAt(text, i);
+                    i += Character.charCount(cp) - 1;
+                    if (isControl(cp)) {
+                        break;
+                    }
+                    if (cp <= Character.MAX_VALUE) {
+                        // 不成对的代理字符按普通字符处理（切分时记为[UNK]）
+                        length = append(word, length, c);
+                    } else if (isCjk(cp) || isPunctuation(cp)) {
+                        count = wordPiece(word, length, ids, count, limit);
+                        count = wordPiece(word, appendCodePoint(word, 0, cp), ids, count, limit);
+                        length = 0;
+                    } else {
+                        length = appendCodePoint(word, length, Character.toLowerCase(cp));
+                    }
+                    break;
+                }
+                default:
+                    break;
+            }
+        }
+        return wordPiece(word, length, ids, count, limit);
+    }
+
+    /**
+     * 贪心最长匹配切分一个词，词ID写入ids[count]起的位置（不超过limit），返回新的个数；
+     * 长度超过缓冲区的词记为 [UNK]
+     */
+    private int wordPiece(char[] word, int length, int[] ids, int count, int limit) {
+        if (length == 0 || count >= limit) {
+            return count;
+        }
+        if (length > MAX_WORD_CHARS) {
+            ids[count] = unkId;
+            return count + 1;
+        }
+        int mark = count;
+        int start = 0;
+        while (start < length) {
+            int node = start > 0 ? continuationRoot : 0;
+            int matchId = -1;
+            int matchEnd = start;
+            for (int i = start; i < length; i++) {
+                node = child(node, word[i]);
+                if (node < 0) {
+                    break;
+                }
+                if (nodeIds[node] >= 0) {
+                    matchId = nodeIds[node];
+                    matchEnd = i + 1;
+                }
+            }
+            if (matchId < 0) {
+                ids[mark] = unkId;
+                return mark + 1;
+            }
+            if (count < limit) {
+                ids[count] = matchId;
+            }
+            count++;
+            start = matchEnd;
+        }
+        return Math.min(count, limit);
+    }
+
+    private static int append(char[] word, int length, char c) {
+        if (length < word.length) {
+            word[length] = c;
+        }
+        return length + 1;
+    }
+
+    private static int appendCodePoint(char[] word, int length, int cp) {
+        if (Character.isBmpCodePoint(cp)) {
+            return append(word, length, (char) cp);
+        }
+        length = append(word, length, Character.highSurrogate(cp));
+        return append(word, length, Character.lowSurrogate(cp));
+    }
+
+    private int insert(String token) {
+        int node = 0;
+        for (int i = 0; i < token.length(); i++) {
+            int next = child(node, token.charAt(i));
+            if (next < 0) {
+                next = nodeCount++;
+                putChild(node, token.charAt(i), next);
+            }
+            node = next;
+        }
+        return node;
+    }
+
+    private int child(int node, char c) {
+        long key = ((long) node << 16) | c;
+        for (int slot = slot(key); ; slot = (slot + 1) & edgeMask) {
+            long existing = edgeKeys[slot];
+            if (existing == key) {
+                return edgeTargets[slot];
+            }
+            if (existing == EMPTY) {
+                return -1;
+            }
+        }
+    }
+
+    private void putChild(int node, char c, int target) {
+        long key = ((long) node << 16) | c;
+        int slot = slot(key);
+        while (edgeKeys[slot] != EMPTY) {
+            slot = (slot + 1) & edgeMask;
+        }
+        edgeKeys[slot] = key;
+        edgeTargets[slot] = target;
+    }
+
+    private int slot(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & edgeMask;
+    }
+
+    private int require(String token) {
+        int node = 0;
+        for (int i = 0; i < token.length() && node >= 0; i++) {
+            node = child(node, token.charAt(i));
+        }
+        if (node < 0 || nodeIds[node] < 0) {
+            throw new IllegalArgumentException("词表中缺少 " + token);
+        }
+        return nodeIds[node];
+    }
+
+    private static boolean isControl(int cp) {
+        if (cp == '\t' || cp == '\n' || cp == '\r') {
+            return false;
+        }
+        int type = Character.getType(cp);
+        return type == Character.CONTROL || type == Character.FORMAT;
+    }
+
+    /**
+     * BERT的标点：ASCII中所有非字母数字的可见符号，以及Unicode标点类别
+     */
+    static boolean isPunctuation(int cp) {
+        if ((cp >= 33 && cp <= 47) || (cp >= 58 && cp <= 64) || (cp >= 91 && cp <= 96) || (cp >= 123 && cp <= 126)) {
+            return true;
+        }
+        if (cp < 0x80) {
+            return false;
+        }
+        switch (Character.getType(cp)) {
+            case Character.CONNECTOR_PUNCTUATION:
+            case Character.DASH_PUNCTUATION:
+            case Character.START_PUNCTUATION:
+            case Character.END_PUNCTUATION:
+            case Character.INITIAL_QUOTE_PUNCTUATION:
+            case Character.FINAL_QUOTE_PUNCTUATION:
+            case Character.OTHER_PUNCTUATION:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * BERT的中日韩汉字区段（不含假名和谚文）
+     */
+    static boolean isCjk(int cp) {
+        return (cp >= 0x4E00 && cp <= 0x9FFF) || (cp >= 0x3400 && cp <= 0x4DBF) || (cp >= 0x20000 && cp <= 0x2A6DF)
+            || (cp >= 0x2A700 && cp <= 0x2B73F) || (cp >= 0x2B740 && cp <= 0x2B81F) || (cp >= 0x2B820 && cp <= 0x2CEAF)
+            || (cp >= 0xF900 && cp <= 0xFAFF) || (cp >= 0x2F800 && cp <= 0x2FA1F);
+    }
+}
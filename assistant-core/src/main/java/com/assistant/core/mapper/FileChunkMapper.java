@@ -0,0 +1,75 @@
+package com.assistant.core.mapper;
+
+import com.assistant.core.entity.FileChunk;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.ResultType;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+import org.apache.ibatis.mapping.ResultSetType;
+import org.apache.ibatis.session.ResultHandler;
+
+import java.util.List;
+
+/**
+ * 文件段落Mapper
+ */
+@Mapper
+public interface FileChunkMapper extends BaseMapper<FileChunk> {
+    
+    /**
+     * 批量写入（ID由调用方分配）
+     */
+    @Insert("<script>" +
+            "INSERT INTO file_chunk (id, file_id, chunk_index, start_offset, end_offset) VALUES " +
+            "<foreach collection='items' item='item' separator=','>" +
+            "(#{item.id}, #{item.fileId}, #{item.chunkIndex}, #{item.startOffset}, #{item.endOffset})" +
+            "</foreach>" +
+            "</script>")
+    int insertBatch(@Param("items") List<FileChunk> items);
+    
+    /**
+     * 删除文件的全部段落
+     */
+    @Delete("DELETE FROM file_chunk WHERE file_id = #{fileId}")
+    int deleteByFileId(@Param("fileId") Long fileId);
+    
+    /**
+     * 删除全部段落（向量存储不可用时，文件在下次索引时重新向量化）
+     */
+    @Delete("DELETE FROM file_chunk")
+    int deleteAll();
+    
+    /**
+     * 压缩第一步：按原ID升序把段落重新编号为 0, 1, 2, ...，暂存为负数 -1-新ID（避免与尚未改写的ID冲突）。
+     * 同一文件的段落ID原本连续，重新编号后仍然连续
+     */
+    @Update("UPDATE file_chunk SET id = -1 - ranked.new_id " +
+            "FROM (SELECT id AS old_id, ROW_NUMBER() OVER (ORDER BY id) - 1 AS new_id FROM file_chunk) AS ranked " +
+            "WHERE file_chunk.id = ranked.old_id")
+    int renumberToNegative();
+    
+    /**
+     * 压缩第二步：把暂存的负数ID还原为新ID
+     */
+    @Update("UPDATE file_chunk SET id = -1 - id WHERE id < 0")
+    int restoreRenumbered();
+    
+    /**
+     * 当前最大的段落ID，没有段落时为null
+     */
+    @Select("SELECT MAX(id) FROM file_chunk")
+    Long selectMaxId();
+    
+    /**
+     * 流式遍历段落ID、文件ID和字符区间（按段落ID升序），用于构建内存映射
+     */
+    @Select("SELECT id, file_id, start_offset, end_offset FROM file_chunk ORDER BY id")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = 1000)
+    @ResultType(FileChunk.class)
+    void scanPassages(ResultHandler<FileChunk> handler);
+}
@@ -1,12 +1,18 @@
 package com.assistant.core.mapper;
 
 import com.assistant.core.entity.FileIndex;
+import com.assistant.core.entity.FullTextHit;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.ResultType;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+import org.apache.ibatis.mapping.ResultSetType;
+import org.apache.ibatis.session.ResultHandler;
 
 import java.util.List;
 
@@ -45,4 +51,107 @@ public interface FileIndexMapper extends BaseMapper<FileIndex> {
      */
     @Select("SELECT id, file_path, file_name, file_size, file_type, last_modified, indexed_time, folder_id, content, summary FROM file_index")
     List<FileIndex> selectAllWithoutVectorData();
+    
+    /**
+     * 流式遍历所有文件（不包含vector_data字段），逐行回调，用于构建内存索引
+     */
+    @Select("SELECT id, file_path, file_name, file_size, file_type, last_modified, indexed_time, folder_id, content, summary FROM file_index")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = 200)
+    @ResultType(FileIndex.class)
+    void scanAllWithoutVectorData(ResultHandler<FileIndex> handler);
+    
+    /**
+     * FTS5全文检索，只返回按bm25排序的文件ID（文件名权重高于摘要和正文）
+     * fileType和folderPrefix为可选的过滤条件（过滤索引尚未构建完成时使用）
+     */
+    @Select("<script>" +
+            "SELECT rowid AS id, bm25(file_index_fts, 5.0, 1.0, 2.0) AS rank " +
+            "FROM file_index_fts WHERE file_index_fts MATCH #{match} " +
+            "<if test='fileType != null or folderPrefix != null'>" +
+            "AND rowid IN (SELECT id FROM file_index WHERE 1 = 1" +
+            "<if test='fileType != null'> AND file_type = #{fileType}</if>" +
+            "<if test='folderPrefix != null'> AND substr(file_path, 1, length(#{folderPrefix})) = #{folderPrefix}</if>" +
+            ") </if>" +
+            "ORDER BY rank LIMIT #{limit} OFFSET #{offset}" +
+            "</script>")
+    List<FullTextHit> searchFullText(@Param("match") String match, @Param("fileType") String fileType,
+                                     @Param("folderPrefix") String folderPrefix,
+                                     @Param("offset") int offset, @Param("limit") int limit);
+    
+    /**
+     * 关键词子串匹配，只返回文件ID（用于少于3个字符、无法走trigram索引的查询），过滤条件同上
+     */
+    @Select("<script>" +
+            "SELECT id FROM file_index WHERE (file_name LIKE '%' || #{query} || '%' OR content LIKE '%' || #{query} || '%')" +
+            "<if test='fileType != null'> AND file_type = #{fileType}</if>" +
+            "<if test='folderPrefix != null'> AND substr(file_path, 1, length(#{folderPrefix})) = #{folderPrefix}</if>" +
+            " ORDER BY id LIMIT #{limit} OFFSET #{offset}" +
+            "</script>")
+    List<Long> searchIdsByKeyword(@Param("query") String query, @Param("fileType") String fileType,
+                                  @Param("folderPrefix") String folderPrefix,
+                                  @Param("offset") int offset, @Param("limit") int limit);
+    
+    /**
+     * 按路径（含文件名）子串查找文件，文件名索引构建完成前使用
+     */
+    @Select("SELECT id, file_path, file_name, file_size, file_type FROM file_index " +
+            "WHERE file_path LIKE '%' || #{name} || '%' LIMIT #{limit}")
+    List<FileIndex> searchByPathLike(@Param("name") String name, @Param("limit") int limit);
+    
+    /**
+     * 流式遍历所有文件的ID、路径、文件名、类型、大小和修改时间，用于构建过滤索引、文件名索引和输入联想
+     */
+    @Select("SELECT id, file_path, file_name, file_size, file_type, last_modified FROM file_index")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = 1000)
+    @ResultType(FileIndex.class)
+    void scanFilterFields(ResultHandler<FileIndex> handler);
+    
+    /**
+     * 根据ID批量查询文件（不包含vector_data字段）
+     */
+    @Select("<script>" +
+            "SELECT id, file_path, file_name, file_size, file_type, last_modified, indexed_time, folder_id, content, summary FROM file_index WHERE id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    List<FileIndex> selectByIdsWithoutVectorData(@Param("ids") List<Long> ids);
+    
+    /**
+     * 根据ID批量查询文件的基本信息（不包含正文、摘要和vector_data字段）
+     */
+    @Select("<script>" +
+            "SELECT id, file_path, file_name, file_size, file_type FROM file_index WHERE id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    List<FileIndex> selectBriefByIds(@Param("ids") List<Long> ids);
+    
+    /**
+     * 统计包含向量数据的文件数量
+     */
+    @Select("SELECT COUNT(*) FROM file_index WHERE vector_data IS NOT NULL")
+    int countVectors();
+    
+    /**
+     * 只更新文件修改时间
+     */
+    @Update("UPDATE file_index SET last_modified = #{lastModified} WHERE id = #{id}")
+    int updateLastModified(@Param("id") Long id, @Param("lastModified") String lastModified);
+    
+    /**
+     * 清空旧版本遗留的向量数据列
+     */
+    @Update("UPDATE file_index SET vector_data = NULL WHERE vector_data IS NOT NULL")
+    int clearVectorData();
+    
+    /**
+     * 正文按UTF-8编码的字节数（正文为空时为0）；文件不存在时返回null
+     */
+    @Select("SELECT COALESCE(length(CAST(content AS BLOB)), 0) FROM file_index WHERE id = #{id}")
+    Long selectContentLength(@Param("id") Long id);
+    
+    /**
+     * 读取正文UTF-8编码中从offset开始的至多length个字节（在SQLite中按字节截取，只传输所需部分）
+     * 以十六进制文本返回：sqlite-jdbc不支持getBlob，单列byte[]结果无法指定类型处理器
+     */
+    @Select("SELECT hex(substr(CAST(content AS BLOB), #{offset} + 1, #{length})) FROM file_index WHERE id = #{id}")
+    String selectContentRangeHex(@Param("id") Long id, @Param("offset") long offset, @Param("length") int length);
 }
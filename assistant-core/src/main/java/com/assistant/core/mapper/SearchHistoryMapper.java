@@ -1,12 +1,48 @@
 package com.assistant.core.mapper;
 
+import com.assistant.core.entity.QueryFrequency;
 import com.assistant.core.entity.SearchHistory;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.ResultType;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.mapping.ResultSetType;
+import org.apache.ibatis.session.ResultHandler;
+
+import java.util.List;
 
 /**
  * 搜索历史Mapper
  */
 @Mapper
 public interface SearchHistoryMapper extends BaseMapper<SearchHistory> {
+    
+    /**
+     * 批量写入（单条多行INSERT语句，整批在一个事务中完成）
+     */
+    @Insert("<script>" +
+            "INSERT INTO search_history (query_text, result_count, search_time, search_type) VALUES " +
+            "<foreach collection='items' item='item' separator=','>" +
+            "(#{item.queryText}, #{item.resultCount}, #{item.searchTime}, #{item.searchType})" +
+            "</foreach>" +
+            "</script>")
+    int insertBatch(@Param("items") List<SearchHistory> items);
+    
+    /**
+     * 最近的搜索历史（按search_time索引倒序读取前limit条）
+     */
+    @Select("SELECT id, query_text, result_count, search_time, search_type FROM search_history " +
+            "ORDER BY search_time DESC LIMIT #{limit}")
+    List<SearchHistory> selectRecent(@Param("limit") int limit);
+    
+    /**
+     * 流式遍历每个查询文本及其搜索次数，用于构建输入联想
+     */
+    @Select("SELECT query_text, COUNT(*) AS frequency FROM search_history GROUP BY query_text")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = 1000)
+    @ResultType(QueryFrequency.class)
+    void scanQueryFrequencies(ResultHandler<QueryFrequency> handler);
 }
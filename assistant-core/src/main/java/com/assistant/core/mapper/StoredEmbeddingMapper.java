@@ -0,0 +1,72 @@
+package com.assistant.core.mapper;
+
+import com.assistant.core.entity.StoredEmbedding;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Result;
+import org.apache.ibatis.annotations.Results;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+import org.apache.ibatis.type.ByteArrayTypeHandler;
+
+import java.util.List;
+
+/**
+ * 持久化向量缓存Mapper
+ */
+@Mapper
+public interface StoredEmbeddingMapper {
+    
+    /**
+     * 按摘要批量查询当前模型的向量（摘要数量须在SQLite参数个数限制内）
+     */
+    @Select("<script>" +
+            "SELECT digest, vector FROM embedding_cache WHERE model_id = #{modelId} AND digest IN " +
+            "<foreach collection='digests' item='digest' open='(' separator=',' close=')'>#{digest}</foreach>" +
+            "</script>")
+    @Results({
+        @Result(column = "digest", property = "digest", typeHandler = ByteArrayTypeHandler.class),
+        @Result(column = "vector", property = "vector", typeHandler = ByteArrayTypeHandler.class)
+    })
+    List<StoredEmbedding> selectByDigests(@Param("modelId") String modelId, @Param("digests") List<byte[]> digests);
+    
+    /**
+     * 批量写入（使用时间为lastUsed），已存在的摘要保持不变；返回实际写入的条数
+     */
+    @Insert("<script>" +
+            "INSERT OR IGNORE INTO embedding_cache (model_id, digest, vector, last_used) VALUES " +
+            "<foreach collection='items' item='item' separator=','>" +
+            "(#{item.modelId}, #{item.digest}, #{item.vector}, #{lastUsed})" +
+            "</foreach>" +
+            "</script>")
+    int insertBatch(@Param("items") List<StoredEmbedding> items, @Param("lastUsed") long lastUsed);
+    
+    /**
+     * 把命中的向量的使用时间更新为lastUsed，使用时间不早于staleBefore的不重复写入
+     */
+    @Update("<script>" +
+            "UPDATE embedding_cache SET last_used = #{lastUsed} " +
+            "WHERE model_id = #{modelId} AND last_used &lt; #{staleBefore} AND digest IN " +
+            "<foreach collection='digests' item='digest' open='(' separator=',' close=')'>#{digest}</foreach>" +
+            "</script>")
+    int touch(@Param("modelId") String modelId, @Param("digests") List<byte[]> digests,
+              @Param("lastUsed") long lastUsed, @Param("staleBefore") long staleBefore);
+    
+    /**
+     * 删除当前模型最久未使用的count条向量
+     */
+    @Delete("DELETE FROM embedding_cache WHERE model_id = #{modelId} AND digest IN " +
+            "(SELECT digest FROM embedding_cache WHERE model_id = #{modelId} ORDER BY last_used LIMIT #{count})")
+    int deleteLeastRecentlyUsed(@Param("modelId") String modelId, @Param("count") long count);
+    
+    /**
+     * 删除其他模型生成的向量（模型或分词参数变化后旧向量不再可用）
+     */
+    @Delete("DELETE FROM embedding_cache WHERE model_id != #{modelId}")
+    int deleteOtherModels(@Param("modelId") String modelId);
+    
+    @Select("SELECT COUNT(*) FROM embedding_cache WHERE model_id = #{modelId}")
+    long countByModel(@Param("modelId") String modelId);
+}
@@ -1,23 +1,53 @@
 package com.assistant.core.service;
 
 import com.assistant.common.constants.AssistantConstants;
+import com.assistant.core.cache.ContentHash;
+import com.assistant.core.cache.WeightedLruCache;
+import com.assistant.core.entity.StoredEmbedding;
+import com.assistant.core.index.WordPieceTokenizer;
+import com.assistant.core.mapper.StoredEmbeddingMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.nio.file.Files;
-import java.nio.file.Path;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import ai.onnxruntime.*;
 
 /**
  * AI向量化服务
+ * 文本先经WordPiece分词得到 input_ids / attention_mask / token_type_ids，再由ONNX模型推理，
+ * 对最后一层隐状态按attention_mask做均值池化并归一化（与sentence-transformers一致）。
+ * 推理请求进入队列，由单个批处理线程合并：取到第一个请求后最多再等待max-wait-ms，
+ * 凑满max-size条或超时即作为一批执行，并发的检索和索引请求共享一次推理。
+ * 推理结果按文本的128位哈希缓存（不保存原文），按条目数和估算字节数限制，超出时LRU淘汰；
+ * 内存未命中时再按（模型标识, 输入的SHA-256摘要）查询数据库中的持久化向量，两者都未命中才推理，
+ * 未变化的内容重新索引或重启后不再调用模型。
  */
 @Service
 public class AIEmbeddingService {
@@ -27,9 +57,88 @@ public class AIEmbeddingService {
     @Autowired
     private ModelDownloadService modelDownloadService;
     
+    @Autowired
+    private StoredEmbeddingMapper storedEmbeddingMapper;
+    
+    @Value("${assistant.ai.batch.max-size:16}")
+    private int batchMaxSize;
+    
+    @Value("${assistant.ai.batch.max-wait-ms:5}")
+    private long batchMaxWaitMs;
+    
+    @Value("${assistant.ai.max-sequence-length:256}")
+    private int maxSequenceLength;
+    
+    @Value("${assistant.ai.cache.max-entries:20000}")
+    private int cacheMaxEntries;
+    
+    @Value("${assistant.ai.cache.max-weight-mb:32}")
+    private long cacheMaxWeightMb;
+    
+    @Value("${assistant.ai.cache.persistent:true}")
+    private boolean persistentCache;
+    
+    @Value("${assistant.ai.cache.persistent-max-entries:100000}")
+    private long persistentMaxEntries;
+    
+    /**
+     * 单条查询语句中的摘要个数（SQLite默认最多999个参数）
+     */
+    private static final int STORE_LOOKUP_CHUNK = 500;
+    
+    /**
+     * 命中的持久化向量最多每隔这么多秒更新一次使用时间
+     */
+    private static final long STORE_TOUCH_INTERVAL_SECONDS = 24 * 3600;
+    
+    /**
+     * 持久化向量超过上限时删除到上限的这一比例，避免每批写入后都清理
+     */
+    private static final double STORE_PRUNE_RATIO = 0.9;
+    
     private OrtEnvironment env;
-    private OrtSession session;
-    private final Map<String, float[]> embeddingCache = new ConcurrentHashMap<>();
+    private volatile OrtSession session;
+    private WordPieceTokenizer tokenizer;
+    private WeightedLruCache<ContentHash, float[]> embeddingCache;
+    private final BlockingQueue<EmbeddingRequest> batchQueue = new LinkedBlockingQueue<>();
+    private volatile Thread batcher;
+    
+    /**
+     * 持久化向量所属的模型标识，未启用持久化或模型不可用时为null
+     */
+    private volatile String modelId;
+    /**
+     * 当前模型的持久化向量条数（写入时累加，清理后重新统计）
+     */
+    private final AtomicLong storedCount = new AtomicLong();
+    private final AtomicLong storeHits = new AtomicLong();
+    private final AtomicLong inferences = new AtomicLong();
+    
+    /**
+     * 等待批量推理的请求
+     */
+    private static final class EmbeddingRequest {
+        final String text;
+        final ContentHash key;
+        /**
+         * 持久化用的SHA-256摘要，未启用持久化时为null
+         */
+        final byte[] digest;
+        final CompletableFuture<float[]> result = new CompletableFuture<>();
+        
+        EmbeddingRequest(String text, ContentHash key, byte[] digest) {
+            this.text = text;
+            this.key = key;
+            this.digest = digest;
+        }
+    }
+    
+    @PostConstruct
+    public void initEmbeddingCache() {
+        // 键约48字节（对象头加两个long），值为float数组
+        embeddingCache = new WeightedLruCache<>(cacheMaxEntries, cacheMaxWeightMb * 1024 * 1024,
+            (key, vector) -> 48L + 16L + 4L * vector.length);
+    }
     
     /**
      * 初始化AI模型
@@ -40,6 +149,11 @@ public class AIEmbeddingService {
                 logger.warn("AI模型文件不存在，跳过向量化功能");
                 return;
             }
+            if (!modelDownloadService.isVocabExists()) {
+                logger.warn("分词词表不存在，跳过向量化功能");
+                return;
+            }
+            tokenizer = WordPieceTokenizer.load(Paths.get(modelDownloadService.getVocabPath()));
             
             String modelPath = modelDownloadService.getModelPath();
             logger.info("初始化AI模型: {}", modelPath);
@@ -54,8 +168,17 @@ public class AIEmbeddingService {
             
             // 加载模型
             session = env.createSession(modelPath, sessionOptions);
+            if (persistentCache) {
+                initEmbeddingStore(modelPath);
+            }
+            
+            // 启动批处理线程
+            Thread thread = new Thread(this::runBatcher, "embedding-batcher");
+            thread.setDaemon(true);
+            batcher = thread;
+            thread.start();
             
-            logger.info("AI模型初始化成功");
+            logger.info("AI模型初始化成功，词表大小: {}，批大小: {}", tokenizer.size(), batchMaxSize);
             
         } catch (Exception e) {
             logger.warn("AI模型初始化失败，将使用文本搜索: {}", e.getMessage());
@@ -63,57 +186,339 @@ public class AIEmbeddingService {
         }
     }
     
+    /**
+     * 确定持久化向量的模型标识（模型文件、词表和截断长度都会影响向量），并清理其他模型留下的向量
+     */
+    private void initEmbeddingStore(String modelPath) {
+        try {
+            String id = AssistantConstants.EMBEDDING_MODEL_NAME + ":" + new File(modelPath).length()
+                + ":" + tokenizer.size() + ":" + maxSequenceLength;
+            int removed = storedEmbeddingMapper.deleteOtherModels(id);
+            if (removed > 0) {
+                logger.info("模型已变化，清理旧的持久化向量: {} 条", removed);
+            }
+            modelId = id;
+            storedCount.set(storedEmbeddingMapper.countByModel(id));
+            logger.info("持久化向量缓存: {} 条", storedCount.get());
+            pruneStored(id);
+        } catch (Exception e) {
+            logger.warn("持久化向量缓存不可用: {}", e.getMessage());
+            modelId = null;
+        }
+    }
+    
     /**
      * 生成文本向量
      */
     public float[] generateEmbedding(String text) {
-        if (text == null || text.trim().isEmpty()) {
-            return null;
+        return generateEmbeddings(Collections.singletonList(text)).get(0);
+    }
+    
+    /**
+     * 批量生成文本向量，结果与输入一一对应（空文本对应null）
+     * 内存缓存未命中的文本先批量查询持久化向量，仍未命中的一起进入推理队列，与其他线程的请求合并成批
+     */
+    public List<float[]> generateEmbeddings(List<String> texts) {
+        List<float[]> embeddings = new ArrayList<>(Collections.<float[]>nCopies(texts.size(), null));
+        List<Integer> positions = new ArrayList<>();
+        List<EmbeddingRequest> missed = new ArrayList<>();
+        String storeModel = modelId;
+        for (int i = 0; i < texts.size(); i++) {
+            String text = texts.get(i);
+            if (text == null || text.trim().isEmpty()) {
+                continue;
+            }
+            
+            // 检查缓存
+            String trimmed = text.trim();
+            ContentHash key = ContentHash.of(trimmed);
+            float[] cached = embeddingCache.get(key);
+            if (cached != null) {
+                embeddings.set(i, cached);
+                continue;
+            }
+            
+            // 如果AI模型不可用，使用简单文本向量化
+            if (session == null || batcher == null) {
+                logger.debug("AI模型不可用，使用简单文本向量化");
+                embeddings.set(i, generateSimpleEmbedding(text));
+                continue;
+            }
+            
+            positions.add(i);
+            missed.add(new EmbeddingRequest(trimmed, key, storeModel != null ? digest(trimmed) : null));
         }
         
-        // 检查缓存
-        String cacheKey = text.trim();
-        if (embeddingCache.containsKey(cacheKey)) {
-            return embeddingCache.get(cacheKey);
+        float[][] stored = loadStored(storeModel, missed);
+        Map<Integer, EmbeddingRequest> pending = new HashMap<>();
+        for (int j = 0; j < missed.size(); j++) {
+            EmbeddingRequest request = missed.get(j);
+            if (stored[j] != null) {
+                embeddingCache.put(request.key, stored[j]);
+                embeddings.set(positions.get(j), stored[j]);
+            } else {
+                pending.put(positions.get(j), request);
+                batchQueue.add(request);
+            }
         }
-        
-        // 如果AI模型不可用，使用简单文本向量化
-        if (session == null) {
-            logger.debug("AI模型不可用，使用简单文本向量化");
-            return generateSimpleEmbedding(text);
+        if (!pending.isEmpty() && batcher == null) {
+            // 服务已关闭，批处理线程不会再取队列
+            failPending();
         }
         
+        for (Map.Entry<Integer, EmbeddingRequest> entry : pending.entrySet()) {
+            EmbeddingRequest request = entry.getValue();
+            try {
+                embeddings.set(entry.getKey(), request.result.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                embeddings.set(entry.getKey(), generateSimpleEmbedding(request.text));
+            } catch (ExecutionException e) {
+                logger.warn("AI模型推理失败，使用简单文本向量化: {}", e.getCause().getMessage());
+                embeddings.set(entry.getKey(), generateSimpleEmbedding(request.text));
+            }
+        }
+        return embeddings;
+    }
+    
+    /**
+     * 批量查询持久化向量，结果与请求一一对应（未命中为null）；查询失败时视为全部未命中
+     */
+    private float[][] loadStored(String storeModel, List<EmbeddingRequest> requests) {
+        float[][] vectors = new float[requests.size()][];
+        if (storeModel == null || requests.isEmpty()) {
+            return vectors;
+        }
+        try {
+            for (int from = 0; from < requests.size(); from += STORE_LOOKUP_CHUNK) {
+                int to = Math.min(requests.size(), from + STORE_LOOKUP_CHUNK);
+                Map<ByteBuffer, Integer> index = new HashMap<>();
+                List<byte[]> digests = new ArrayList<>(to - from);
+                for (int j = from; j < to; j++) {
+                    byte[] digest = requests.get(j).digest;
+                    if (index.putIfAbsent(ByteBuffer.wrap(digest), j) == null) {
+                        digests.add(digest);
+                    }
+                }
+                List<byte[]> hits = new ArrayList<>();
+                for (StoredEmbedding entry : storedEmbeddingMapper.selectByDigests(storeModel, digests)) {
+                    Integer first = index.get(ByteBuffer.wrap(entry.getDigest()));
+                    if (first != null && entry.getVector() != null && entry.getVector().length % 4 == 0) {
+                        vectors[first] = bytesToFloats(entry.getVector());
+                        hits.add(entry.getDigest());
+                    }
+                }
+                if (!hits.isEmpty()) {
+                    long now = System.currentTimeMillis() / 1000;
+                    storedEmbeddingMapper.touch(storeModel, hits, now, now - STORE_TOUCH_INTERVAL_SECONDS);
+                }
+                // 同一批中的重复文本共用查询结果
+                for (int j = from; j < to; j++) {
+                    vectors[j] = vectors[index.get(ByteBuffer.wrap(requests.get(j).digest))];
+                    if (vectors[j] != null) {
+                        storeHits.incrementAndGet();
+                    }
+                }
+            }
+        } catch (Exception e) {
+            logger.warn("查询持久化向量失败: {}", e.getMessage());
+            return new float[requests.size()][];
+        }
+        return vectors;
+    }
+    
+    /**
+     * 保存一批推理结果，失败只记录日志（下次仍可重新推理）
+     */
+    private void storeEmbeddings(List<EmbeddingRequest> batch, float[][] results) {
+        String storeModel = modelId;
+        if (storeModel == null) {
+            return;
+        }
+        List<StoredEmbedding> entries = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            if (batch.get(i).digest != null && results[i] != null) {
+                entries.add(new StoredEmbedding(storeModel, batch.get(i).digest, floatsToBytes(results[i])));
+            }
+        }
+        if (entries.isEmpty()) {
+            return;
+        }
         try {
-            // 预处理文本
-            String processedText = preprocessText(text);
-            if (processedText.isEmpty()) {
-                return null;
+            int inserted = storedEmbeddingMapper.insertBatch(entries, System.currentTimeMillis() / 1000);
+            if (storedCount.addAndGet(inserted) > persistentMaxEntries) {
+                pruneStored(storeModel);
+            }
+        } catch (Exception e) {
+            logger.warn("保存持久化向量失败: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * 持久化向量超过上限时删除最久未使用的向量（内容已修改或删除的段落不会再命中，随时间被淘汰）
+     */
+    private void pruneStored(String storeModel) {
+        long excess = storedCount.get() - (long) (persistentMaxEntries * STORE_PRUNE_RATIO);
+        if (storedCount.get() <= persistentMaxEntries || excess <= 0) {
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            int removed = storedEmbeddingMapper.deleteLeastRecentlyUsed(storeModel, excess);
+            storedCount.set(storedEmbeddingMapper.countByModel(storeModel));
+            logger.info("清理最久未使用的持久化向量 {} 条，剩余 {} 条，耗时 {} ms",
+                       removed, storedCount.get(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            logger.warn("清理持久化向量失败: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * 规范化输入（已去除首尾空白）UTF-8编码的SHA-256摘要
+     */
+    private static byte[] digest(String text) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    private static byte[] floatsToBytes(float[] vector) {
+        ByteBuffer buffer = ByteBuffer.allocate(vector.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(vector);
+        return buffer.array();
+    }
+    
+    private static float[] bytesToFloats(byte[] bytes) {
+        float[] vector = new float[bytes.length / 4];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(vector);
+        return vector;
+    }
+    
+    /**
+     * 批处理线程：取到第一个请求后在等待时限内继续收集，凑满一批或超时后执行推理
+     */
+    private void runBatcher() {
+        List<EmbeddingRequest> batch = new ArrayList<>();
+        while (batcher == Thread.currentThread()) {
+            try {
+                batch.add(batchQueue.take());
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(batchMaxWaitMs);
+                while (batch.size() < getBatchSize()) {
+                    long remaining = deadline - System.nanoTime();
+                    EmbeddingRequest next = remaining > 0 ? batchQueue.poll(remaining, TimeUnit.NANOSECONDS) : batchQueue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                break;
             }
             
-            // 创建输入张量
-            long[] shape = {1, 1}; // batch_size=1, sequence_length=1
-            String[] inputArray = {processedText};
-            OnnxTensor inputTensor = OnnxTensor.createTensor(env, inputArray, shape);
+            try {
+                float[][] results = runBatch(batch);
+                inferences.addAndGet(batch.size());
+                for (int i = 0; i < batch.size(); i++) {
+                    embeddingCache.put(batch.get(i).key, results[i]);
+                    batch.get(i).result.complete(results[i]);
+                }
+                storeEmbeddings(batch, results);
+                logger.debug("批量推理完成，批大小: {}", batch.size());
+            } catch (Throwable e) {
+                for (EmbeddingRequest request : batch) {
+                    request.result.completeExceptionally(e);
+                }
+            }
+            batch.clear();
+        }
+        
+        // 退出前让剩余请求回退到简单向量化
+        for (EmbeddingRequest request : batch) {
+            request.result.completeExceptionally(new IllegalStateException("AI向量化服务已关闭"));
+        }
+        failPending();
+    }
+    
+    /**
+     * 对一批文本执行一次推理，短序列用[PAD]补齐到批内最长序列
+     * 分词结果直接写入按行排列的输入数组，不为每个词片段创建对象
+     */
+    private float[][] runBatch(List<EmbeddingRequest> batch) throws OrtException {
+        int[] ids = new int[Math.max(2, maxSequenceLength)];
+        int[] lengths = new int[batch.size()];
+        int[][] tokens = new int[batch.size()][];
+        int length = 0;
+        for (int i = 0; i < tokens.length; i++) {
+            lengths[i] = tokenizer.encode(batch.get(i).text, ids, maxSequenceLength);
+            tokens[i] = Arrays.copyOf(ids, lengths[i]);
+            length = Math.max(length, lengths[i]);
+        }
+        
+        long[] inputIds = new long[tokens.length * length];
+        long[] attentionMask = new long[tokens.length * length];
+        long[] tokenTypeIds = new long[tokens.length * length];
+        Arrays.fill(inputIds, tokenizer.getPadId());
+        for (int i = 0; i < tokens.length; i++) {
+            int row = i * length;
+            for (int j = 0; j < lengths[i]; j++) {
+                inputIds[row + j] = tokens[i][j];
+                attentionMask[row + j] = 1;
+            }
+        }
+        long[] shape = {tokens.length, length};
+        
+        // 只传入模型声明的输入（部分导出的模型没有token_type_ids）
+        Set<String> inputNames = session.getInputNames();
+        Map<String, OnnxTensor> inputs = new HashMap<>();
+        try {
+            inputs.put("input_ids", OnnxTensor.createTensor(env, LongBuffer.wrap(inputIds), shape));
+            if (inputNames.contains("attention_mask")) {
+                inputs.put("attention_mask", OnnxTensor.createTensor(env, LongBuffer.wrap(attentionMask), shape));
+            }
+            if (inputNames.contains("token_type_ids")) {
+                inputs.put("token_type_ids", OnnxTensor.createTensor(env, LongBuffer.wrap(tokenTypeIds), shape));
+            }
             
-            // 执行推理
-            Map<String, OnnxTensor> inputs = new java.util.HashMap<>();
-            inputs.put("input_ids", inputTensor);
             try (OrtSession.Result result = session.run(inputs)) {
-                
-                // 获取输出
-                float[][] output = (float[][]) result.get(0).getValue();
-                float[] embedding = output[0]; // 取第一个（也是唯一一个）输出
-                
-                // 缓存结果
-                embeddingCache.put(cacheKey, embedding);
-                
-                logger.debug("生成向量成功，维度: {}", embedding.length);
-                return embedding;
+                Object output = result.get(0).getValue();
+                float[][] embeddings = new float[tokens.length][];
+                for (int i = 0; i < tokens.length; i++) {
+                    float[] embedding = output instanceof float[][][]
+                        ? meanPool(((float[][][]) output)[i], lengths[i])
+                        : ((float[][]) output)[i];
+                    embeddings[i] = normalizeVector(embedding);
+                }
+                return embeddings;
+            }
+        } finally {
+            for (OnnxTensor tensor : inputs.values()) {
+                tensor.close();
             }
-            
-        } catch (Exception e) {
-            logger.warn("AI模型推理失败，使用简单文本向量化: {}", e.getMessage());
-            return generateSimpleEmbedding(text);
+        }
+    }
+    
+    /**
+     * 对有效位置（attention_mask为1的前length个位置）的隐状态求均值
+     */
+    private static float[] meanPool(float[][] hidden, int length) {
+        float[] pooled = new float[hidden[0].length];
+        for (int t = 0; t < length; t++) {
+            for (int d = 0; d < pooled.length; d++) {
+                pooled[d] += hidden[t][d];
+            }
+        }
+        for (int d = 0; d < pooled.length; d++) {
+            pooled[d] /= length;
+        }
+        return pooled;
+    }
+    
+    private void failPending() {
+        EmbeddingRequest request;
+        while ((request = batchQueue.poll()) != null) {
+            request.result.completeExceptionally(new IllegalStateException("AI向量化服务已关闭"));
         }
     }
     
@@ -188,41 +593,36 @@ public class AIEmbeddingService {
     }
     
     /**
-     * 预处理文本
+     * 检查模型是否可用
      */
-    private String preprocessText(String text) {
-        if (text == null) {
-            return "";
-        }
-        
-        // 清理文本
-        String cleaned = text.trim()
-            .replaceAll("\\s+", " ") // 合并多个空格
-            .replaceAll("[\\r\\n]+", " ") // 替换换行符
-            .replaceAll("[^\\p{L}\\p{N}\\p{P}\\p{Z}]", ""); // 移除特殊字符
-        
-        // 限制长度
-        if (cleaned.length() > 512) {
-            cleaned = cleaned.substring(0, 512);
-        }
-        
-        return cleaned;
+    public boolean isModelAvailable() {
+        return session != null;
     }
     
     /**
-     * 检查模型是否可用
+     * 每批推理的最大文本数，批量索引按此大小分组提交
      */
-    public boolean isModelAvailable() {
-        return session != null;
+    public int getBatchSize() {
+        return Math.max(1, batchMaxSize);
     }
     
     /**
      * 关闭资源
      */
+    @PreDestroy
     public void shutdown() {
         try {
-            if (session != null) {
-                session.close();
+            Thread thread = batcher;
+            batcher = null;
+            if (thread != null) {
+                thread.interrupt();
+                thread.join(1000);
+            }
+            failPending();
+            OrtSession current = session;
+            session = null;
+            if (current != null) {
+                current.close();
             }
             if (env != null) {
                 env.close();
@@ -235,12 +635,30 @@ public class AIEmbeddingService {
     }
     
     /**
-     * 获取缓存大小
+     * 获取缓存条目数
      */
     public int getCacheSize() {
         return embeddingCache.size();
     }
     
+    /**
+     * 向量缓存统计
+     */
+    public Map<String, Object> getCacheStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", embeddingCache.size());
+        stats.put("weightBytes", embeddingCache.getWeight());
+        stats.put("hits", embeddingCache.getHitCount());
+        stats.put("misses", embeddingCache.getMissCount());
+        stats.put("evictions", embeddingCache.getEvictionCount());
+        stats.put("hitRate", embeddingCache.getHitRate());
+        stats.put("persistent", modelId != null);
+        stats.put("storedEntries", storedCount.get());
+        stats.put("storeHits", storeHits.get());
+        stats.put("inferences", inferences.get());
+        return stats;
+    }
+    
     /**
      * 归一化向量
      */
@@ -0,0 +1,208 @@
+package com.assistant.core.service;
+
+import com.assistant.common.dto.AnalysisSummary;
+import com.assistant.core.cache.WeightedLruCache;
+import com.assistant.core.entity.FileIndex;
+import com.assistant.core.mapper.FileIndexMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * AI总结分析服务
+ * 搜索时只登记总结任务并返回票据，总结在有界的后台线程池上生成；
+ * 票据由查询文本和结果文件ID确定，相同查询和结果直接复用已有任务，客户端凭票据获取或长轮询结果。
+ * 排队的任务只持有文件ID，开始生成时才从数据库读取正文。
+ */
+@Service
+public class AnalysisSummaryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AnalysisSummaryService.class);
+
+    @Autowired
+    private AIEnhancedSummaryService aiEnhancedSummaryService;
+
+    @Autowired
+    private FinancialAnalysisService financialAnalysisService;
+
+    @Autowired
+    private FileIndexMapper fileIndexMapper;
+
+    @Value("${assistant.search.summary.threads:2}")
+    private int threads;
+
+    @Value("${assistant.search.summary.queue-capacity:32}")
+    private int queueCapacity;
+
+    @Value("${assistant.search.summary.cache-entries:128}")
+    private int cacheEntries;
+
+    @Value("${assistant.search.summary.cache-weight-mb:8}")
+    private long cacheWeightMb;
+
+    private ExecutorService executor;
+
+    /**
+     * 总结任务缓存（按票据），生成中的任务权重按固定值估算
+     */
+    private WeightedLruCache<String, CompletableFuture<String>> tasks;
+
+    @PostConstruct
+    public void init() {
+        int poolSize = Math.max(1, threads);
+        AtomicInteger counter = new AtomicInteger();
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(Math.max(1, queueCapacity)), r -> {
+                Thread thread = new Thread(r, "summary-worker-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        ((ThreadPoolExecutor) executor).allowCoreThreadTimeOut(true);
+        tasks = new WeightedLruCache<>(cacheEntries, cacheWeightMb * 1024 * 1024, (ticket, task) -> {
+            String summary = task.getNow(null);
+            return ticket.length() * 2L + (summary != null ? summary.length() * 2L : 1024);
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 登记总结任务并返回票据；相同查询和结果文件的任务只生成一次
+     *
+     * @param fileIds 按排名排列的结果文件ID
+     */
+    public String submit(String query, List<Long> fileIds) {
+        String ticket = ticketOf(query, fileIds);
+        synchronized (this) {
+            CompletableFuture<String> existing = tasks.get(ticket);
+            if (existing != null && !existing.isCompletedExceptionally()) {
+                return ticket;
+            }
+            CompletableFuture<String> task = new CompletableFuture<>();
+            tasks.put(ticket, task);
+            try {
+                executor.execute(() -> generate(ticket, query, fileIds, task));
+            } catch (RejectedExecutionException e) {
+                logger.warn("总结任务队列已满，放弃生成: {}", query);
+                task.completeExceptionally(new IllegalStateException("总结任务队列已满，请稍后重试"));
+            }
+        }
+        return ticket;
+    }
+
+    /**
+     * 总结任务，票据不存在或已过期时返回null
+     */
+    public CompletableFuture<String> getTask(String ticket) {
+        return tasks.get(ticket);
+    }
+
+    /**
+     * 票据对应的当前状态，票据不存在或已过期时返回null
+     */
+    public AnalysisSummary describe(String ticket) {
+        CompletableFuture<String> task = tasks.get(ticket);
+        if (task == null) {
+            return null;
+        }
+        if (!task.isDone()) {
+            return new AnalysisSummary(ticket, AnalysisSummary.STATUS_PENDING);
+        }
+        try {
+            AnalysisSummary summary = new AnalysisSummary(ticket, AnalysisSummary.STATUS_DONE);
+            summary.setSummary(task.join());
+            return summary;
+        } catch (Exception e) {
+            AnalysisSummary summary = new AnalysisSummary(ticket, AnalysisSummary.STATUS_FAILED);
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            summary.setMessage(cause.getMessage());
+            return summary;
+        }
+    }
+
+    /**
+     * 生成总结：财务类查询使用财务分析，其他使用增强总结
+     */
+    private void generate(String ticket, String query, List<Long> fileIds, CompletableFuture<String> task) {
+        try {
+            long start = System.currentTimeMillis();
+            List<FileIndex> files = loadFiles(fileIds);
+            logger.info("开始生成AI总结分析，查询: {}, 文件数量: {}", query, files.size());
+            String analysisSummary;
+            if (query.contains("利润") || query.contains("财务") || query.contains("收入") || query.contains("成本")) {
+                analysisSummary = financialAnalysisService.generateFinancialAnalysis(query, files);
+            } else {
+                analysisSummary = aiEnhancedSummaryService.generateSummary(query, files);
+            }
+            task.complete(analysisSummary);
+            // 重新登记以按实际长度计算缓存权重
+            tasks.put(ticket, task);
+            logger.info("AI总结分析生成完成，长度: {}, 耗时 {} ms",
+                       analysisSummary != null ? analysisSummary.length() : 0, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            logger.error("生成AI总结分析失败", e);
+            task.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * 按排名顺序加载结果文件（含正文），已删除的文件跳过
+     */
+    private List<FileIndex> loadFiles(List<Long> fileIds) {
+        Map<Long, FileIndex> byId = new HashMap<>();
+        for (FileIndex file : fileIndexMapper.selectByIdsWithoutVectorData(fileIds)) {
+            byId.put(file.getId(), file);
+        }
+        List<FileIndex> files = new ArrayList<>(fileIds.size());
+        for (Long id : fileIds) {
+            FileIndex file = byId.get(id);
+            if (file != null) {
+                files.add(file);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * 票据：规范化的查询文本和按排名排列的结果文件ID的摘要
+     */
+    private static String ticketOf(String query, List<Long> fileIds) {
+        StringBuilder key = new StringBuilder(query.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT));
+        for (Long id : fileIds) {
+            key.append('\u0001').append(id);
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder ticket = new StringBuilder(32);
+            for (int i = 0; i < 16; i++) {
+                ticket.append(Character.forDigit((digest[i] >> 4) & 0xF, 16)).append(Character.forDigit(digest[i] & 0xF, 16));
+            }
+            return ticket.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -82,6 +82,15 @@ public class DatabaseInitService {
      */
     private void initDatabaseSchema() {
         try {
+            // 记录全文检索表是否已存在，新建时需要从file_index回填
+            boolean ftsExists = tableExists("file_index_fts");
+            
+            // 旧版本的向量缓存表没有使用时间列
+            if (tableExists("embedding_cache") && !columnExists("embedding_cache", "last_used")) {
+                jdbcTemplate.execute("ALTER TABLE embedding_cache ADD COLUMN last_used INTEGER NOT NULL DEFAULT 0");
+                logger.info("向量缓存表已添加使用时间列");
+            }
+            
             // 读取SQL脚本
             ClassPathResource resource = new ClassPathResource("schema.sql");
             String sql = new String(org.apache.commons.io.IOUtils.toByteArray(resource.getInputStream()), StandardCharsets.UTF_8);
@@ -89,6 +98,7 @@ public class DatabaseInitService {
             // 按行分割并过滤空行和注释
             String[] lines = sql.split("\n");
             StringBuilder currentStatement = new StringBuilder();
+            boolean inTrigger = false;
             
             for (String line : lines) {
                 line = line.trim();
@@ -97,10 +107,16 @@ public class DatabaseInitService {
                     continue;
                 }
                 
+                if (currentStatement.length() == 0 && line.toUpperCase().startsWith("CREATE TRIGGER")) {
+                    inTrigger = true;
+                }
+                
                 currentStatement.append(line).append(" ");
                 
-                // 如果行以分号结尾，执行语句
-                if (line.endsWith(";")) {
+                // 如果行以分号结尾，执行语句（触发器体内的分号需等到END;）
+                boolean statementEnd = inTrigger ? line.equalsIgnoreCase("END;") : line.endsWith(";");
+                if (statementEnd) {
+                    inTrigger = false;
                     String statement = currentStatement.toString().trim();
                     if (!statement.isEmpty()) {
                         try {
@@ -118,6 +134,10 @@ public class DatabaseInitService {
                 }
             }
             
+            if (!ftsExists && tableExists("file_index_fts")) {
+                rebuildFullTextIndex();
+            }
+            
             logger.info("数据库表结构初始化完成");
             
         } catch (IOException e) {
@@ -127,6 +147,37 @@ public class DatabaseInitService {
         }
     }
     
+    /**
+     * 检查表是否存在
+     */
+    private boolean tableExists(String tableName) {
+        Integer count = jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM sqlite_master WHERE name = ?", Integer.class, tableName);
+        return count != null && count > 0;
+    }
+    
+    /**
+     * 检查表中是否有该列
+     */
+    private boolean columnExists(String tableName, String columnName) {
+        Integer count = jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM pragma_table_info(?) WHERE name = ?", Integer.class, tableName, columnName);
+        return count != null && count > 0;
+    }
+    
+    /**
+     * 从file_index重建全文检索表
+     */
+    public void rebuildFullTextIndex() {
+        try {
+            long start = System.currentTimeMillis();
+            jdbcTemplate.execute("INSERT INTO file_index_fts(file_index_fts) VALUES('rebuild')");
+            logger.info("全文检索索引重建完成，耗时 {} ms", System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            logger.error("全文检索索引重建失败", e);
+        }
+    }
+    
     /**
      * 检查数据库连接
      */
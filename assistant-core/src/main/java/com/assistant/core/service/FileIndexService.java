@@ -3,22 +3,40 @@ package com.assistant.core.service;
 import com.assistant.common.dto.FileInfo;
 import com.assistant.common.util.FileUtils;
 import com.assistant.core.entity.FileIndex;
+import com.assistant.core.index.BooleanQuery;
+import com.assistant.core.index.DocIdSet;
+import com.assistant.core.index.DocIterator;
+import com.assistant.core.index.FilterIndex;
+import com.assistant.core.index.PassageSplitter;
+import com.assistant.core.index.ScoredDocs;
+import com.assistant.core.index.TrigramIndex;
 import com.assistant.core.mapper.FileIndexMapper;
 import org.apache.tika.Tika;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
-import java.io.File;
+import javax.annotation.PostConstruct;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
 
 /**
  * 文件索引服务
@@ -37,8 +55,83 @@ public class FileIndexService {
     @Autowired
     private AIEmbeddingService aiEmbeddingService;
     
+    @Autowired
+    private TextIndexService textIndexService;
+    
+    @Autowired
+    private VectorIndexService vectorIndexService;
+    
+    @Autowired
+    private SuggestService suggestService;
+    
+    @Value("${assistant.ai.passage.size-chars:400}")
+    private int passageSize;
+    
+    @Value("${assistant.ai.passage.overlap-chars:80}")
+    private int passageOverlap;
+    
+    @Value("${assistant.ai.passage.max-per-file:256}")
+    private int maxPassagesPerFile;
+    
     private final Tika tika = new Tika();
     
+    /**
+     * 正文切分为相互重叠的段落，每段单独向量化
+     */
+    private PassageSplitter passageSplitter;
+    
+    /**
+     * 索引代数：每次写入file_index后递增，查询结果缓存以此判断是否过期
+     */
+    private final AtomicLong indexGeneration = new AtomicLong();
+    
+    /**
+     * 按文件类型和所在目录预计算的文档集合，随索引写入增量维护
+     */
+    private final FilterIndex filterIndex = new FilterIndex();
+    
+    /**
+     * 文件路径和文件名的N-gram索引，用于按部分文件名查找
+     */
+    private final TrigramIndex trigramIndex = new TrigramIndex();
+    
+    private volatile boolean filterIndexReady = false;
+    
+    @PostConstruct
+    public void initPassageSplitter() {
+        passageSplitter = new PassageSplitter(passageSize, passageOverlap, maxPassagesPerFile);
+    }
+    
+    /**
+     * 应用启动完成后在后台线程构建过滤索引和文件名索引，构建期间的过滤条件和文件名查找由SQL查询处理
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildFilterIndexOnStartup() {
+        Thread builder = new Thread(this::buildFilterIndex, "filter-index-builder");
+        builder.setDaemon(true);
+        builder.start();
+    }
+    
+    /**
+     * 从数据库构建过滤索引
+     */
+    public void buildFilterIndex() {
+        try {
+            long start = System.currentTimeMillis();
+            fileIndexMapper.scanFilterFields(context -> {
+                FileIndex fileIndex = context.getResultObject();
+                filterIndex.addIfAbsent(fileIndex.getId().intValue(), fileIndex.getFileType(),
+                    ancestorFolders(fileIndex.getFilePath()), fileSizeOf(fileIndex), lastModifiedMillis(fileIndex.getLastModified()));
+                trigramIndex.addIfAbsent(fileIndex.getId().intValue(), fileIndex.getFilePath());
+                suggestService.addFileIfAbsent(fileIndex.getId().intValue(), fileIndex.getFileName());
+            });
+            filterIndexReady = true;
+            logger.info("过滤索引和文件名索引构建完成，文件数: {}, 耗时 {} ms", filterIndex.size(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            logger.error("构建过滤索引失败", e);
+        }
+    }
+    
     /**
      * 索引指定文件夹
      */
@@ -55,6 +148,9 @@ public class FileIndexService {
         try {
             indexedCount = indexDirectory(path, recursive);
             logger.info("文件夹索引完成，共索引 {} 个文件", indexedCount);
+            
+            // 批量索引结束后持久化向量索引
+            vectorIndexService.saveIndex();
         } catch (Exception e) {
             logger.error("索引文件夹失败: {}", folderPath, e);
         }
@@ -64,9 +160,11 @@ public class FileIndexService {
     
     /**
      * 递归索引目录
+     * 目录下的文件按推理批大小分组：先提取一组文件的内容，一次提交整组向量化，再逐个写入数据库和索引
      */
     private int indexDirectory(Path directory, boolean recursive) throws Exception {
         int count = 0;
+        List<Path> files = new ArrayList<>();
         
         try (Stream<Path> stream = Files.list(directory)) {
             for (Path path : stream.collect(Collectors.toList())) {
@@ -75,51 +173,133 @@ public class FileIndexService {
                         count += indexDirectory(path, true);
                     }
                 } else if (Files.isRegularFile(path)) {
-                    if (indexFile(path)) {
-                        count++;
-                    }
+                    files.add(path);
                 }
             }
         }
         
+        int batchSize = aiEmbeddingService.getBatchSize();
+        for (int from = 0; from < files.size(); from += batchSize) {
+            count += indexFiles(files.subList(from, Math.min(from + batchSize, files.size())));
+        }
+        
         return count;
     }
     
+    /**
+     * 索引一组文件，所有段落的向量一次批量生成
+     */
+    private int indexFiles(List<Path> files) {
+        List<PreparedFile> prepared = new ArrayList<>();
+        for (Path path : files) {
+            PreparedFile file = prepareFile(path);
+            if (file != null) {
+                prepared.add(file);
+            }
+        }
+        if (prepared.isEmpty()) {
+            return 0;
+        }
+        
+        List<float[]> embeddings = null;
+        if (aiEmbeddingService.isModelAvailable()) {
+            try {
+                List<String> texts = new ArrayList<>();
+                for (PreparedFile file : prepared) {
+                    texts.addAll(file.passageTexts());
+                }
+                embeddings = aiEmbeddingService.generateEmbeddings(texts);
+            } catch (Exception e) {
+                logger.warn("批量生成AI向量失败: {}", files.get(0).getParent(), e);
+            }
+        }
+        
+        int count = 0;
+        int from = 0;
+        for (PreparedFile file : prepared) {
+            int to = from + file.passages.size();
+            if (saveFile(file, embeddings != null ? embeddings.subList(from, to) : null)) {
+                count++;
+            }
+            from = to;
+        }
+        return count;
+    }
+    
+    /**
+     * 已提取内容、等待向量化和写入的文件
+     */
+    private static final class PreparedFile {
+        final FileIndex existing;
+        final FileIndex fileIndex;
+        final List<PassageSplitter.Passage> passages;
+        
+        PreparedFile(FileIndex existing, FileIndex fileIndex, List<PassageSplitter.Passage> passages) {
+            this.existing = existing;
+            this.fileIndex = fileIndex;
+            this.passages = passages;
+        }
+        
+        List<String> passageTexts() {
+            List<String> texts = new ArrayList<>(passages.size());
+            for (PassageSplitter.Passage passage : passages) {
+                texts.add(fileIndex.getContent().substring(passage.getStart(), passage.getEnd()));
+            }
+            return texts;
+        }
+    }
+    
     /**
      * 索引单个文件
      */
     public boolean indexFile(Path filePath) {
+        PreparedFile prepared = prepareFile(filePath);
+        if (prepared == null) {
+            return false;
+        }
+        
+        // 逐段生成AI向量，向量写入向量存储文件，不保存到数据库
+        List<float[]> embeddings = null;
+        if (aiEmbeddingService.isModelAvailable()) {
+            try {
+                embeddings = aiEmbeddingService.generateEmbeddings(prepared.passageTexts());
+                logger.debug("生成AI向量成功，段落数: {}", embeddings.size());
+            } catch (Exception e) {
+                logger.warn("生成AI向量失败: {}", filePath, e);
+            }
+        }
+        return saveFile(prepared, embeddings);
+    }
+    
+    /**
+     * 检查文件是否需要索引并提取内容，无需索引时返回null
+     */
+    private PreparedFile prepareFile(Path filePath) {
         try {
             // 检查文件是否应该被索引
             if (!FileUtils.shouldIndex(filePath)) {
-                return false;
+                return null;
             }
             
             // 检查文件是否已存在
             FileIndex existing = fileIndexMapper.selectByFilePath(filePath.toString());
             if (existing != null) {
-                // 检查文件是否已修改
-                File file = filePath.toFile();
-                try {
-                    // 解析时间戳，处理微秒精度
-                    String lastModifiedStr = existing.getLastModified();
-                    if (lastModifiedStr.length() > 26) {
-                        // 截断微秒部分，只保留到毫秒
-                        lastModifiedStr = lastModifiedStr.substring(0, 26);
+                // 检查文件是否已修改（记录中的时间无法解析时重新索引）
+                long modified = Files.getLastModifiedTime(filePath).toMillis();
+                long recorded = lastModifiedMillis(existing.getLastModified());
+                if (modified <= recorded
+                        && (vectorIndexService.hasPassages(existing.getId()) || !aiEmbeddingService.isModelAvailable())) {
+                    if (modified != recorded) {
+                        refreshModified(existing, modified);
                     }
-                    if (file.lastModified() <= java.time.Instant.parse(lastModifiedStr).toEpochMilli()) {
-                        return false; // 文件未修改，跳过
-                    }
-                } catch (Exception e) {
-                    // 如果解析失败，强制重新索引
-                    logger.warn("解析时间戳失败，强制重新索引: " + existing.getLastModified(), e);
+                    return null; // 文件未修改且向量完整，跳过
                 }
             }
             
             // 提取文件内容
             String content = extractFileContent(filePath);
             if (content == null || content.trim().isEmpty()) {
-                return false;
+                return null;
             }
             
             // 创建文件索引记录
@@ -128,32 +308,37 @@ public class FileIndexService {
             fileIndex.setFileName(filePath.getFileName().toString());
             fileIndex.setFileSize(Files.size(filePath));
             fileIndex.setFileType(FileUtils.getFileType(filePath.getFileName().toString()));
-            fileIndex.setLastModified(LocalDateTime.now().toString());
+            fileIndex.setLastModified(formatModified(Files.getLastModifiedTime(filePath).toMillis()));
             fileIndex.setContent(content);
             fileIndex.setSummary(generateSummary(content));
+            return new PreparedFile(existing, fileIndex, passageSplitter.split(content));
             
-            // 生成AI向量
-            if (aiEmbeddingService.isModelAvailable()) {
-                try {
-                    float[] embedding = aiEmbeddingService.generateEmbedding(content);
-                    if (embedding != null) {
-                        // 将float数组转换为byte数组存储
-                        byte[] vectorData = new byte[embedding.length * 4];
-                        for (int i = 0; i < embedding.length; i++) {
-                            int intBits = Float.floatToIntBits(embedding[i]);
-                            vectorData[i * 4] = (byte) (intBits >> 24);
-                            vectorData[i * 4 + 1] = (byte) (intBits >> 16);
-                            vectorData[i * 4 + 2] = (byte) (intBits >> 8);
-                            vectorData[i * 4 + 3] = (byte) intBits;
-                        }
-                        fileIndex.setVectorData(vectorData);
-                        logger.debug("生成AI向量成功，维度: {}", embedding.length);
-                    }
-                } catch (Exception e) {
-                    logger.warn("生成AI向量失败: {}", filePath, e);
-                }
-            }
-            
+        } catch (Exception e) {
+            logger.error("索引文件失败: {}", filePath, e);
+            return null;
+        }
+    }
+    
+    /**
+     * 旧版本记录的是索引时间而不是文件修改时间，跳过未修改的文件时改为文件的实际修改时间，使modified条件按文件修改时间过滤
+     */
+    private void refreshModified(FileIndex existing, long modified) {
+        existing.setLastModified(formatModified(modified));
+        fileIndexMapper.updateLastModified(existing.getId(), existing.getLastModified());
+        filterIndex.add(existing.getId().intValue(), existing.getFileType(), ancestorFolders(existing.getFilePath()),
+            fileSizeOf(existing), modified);
+        indexGeneration.incrementAndGet();
+    }
+    
+    /**
+     * 保存文件索引记录并同步更新各内存索引
+     *
+     * @param embeddings 与段落一一对应的向量，模型不可用时为null
+     */
+    private boolean saveFile(PreparedFile prepared, List<float[]> embeddings) {
+        FileIndex existing = prepared.existing;
+        FileIndex fileIndex = prepared.fileIndex;
+        try {
             // 保存或更新索引
             if (existing != null) {
                 fileIndex.setId(existing.getId());
@@ -162,11 +347,25 @@ public class FileIndexService {
                 fileIndexMapper.insert(fileIndex);
             }
             
-            logger.debug("成功索引文件: {}", filePath);
+            // 同步更新过滤索引、文件名索引、输入联想、内存倒排索引和向量索引
+            filterIndex.add(fileIndex.getId().intValue(), fileIndex.getFileType(), ancestorFolders(fileIndex.getFilePath()),
+                fileSizeOf(fileIndex), lastModifiedMillis(fileIndex.getLastModified()));
+            trigramIndex.add(fileIndex.getId().intValue(), fileIndex.getFilePath());
+            suggestService.addFile(fileIndex.getId().intValue(), fileIndex.getFileName());
+            textIndexService.indexDocument(fileIndex);
+            if (embeddings != null) {
+                vectorIndexService.addPassages(fileIndex.getId(), prepared.passages, embeddings);
+            } else {
+                vectorIndexService.removePassages(fileIndex.getId());
+            }
+            // 所有索引更新完成后再递增，避免缓存旧结果
+            indexGeneration.incrementAndGet();
+            
+            logger.debug("成功索引文件: {}", fileIndex.getFilePath());
             return true;
             
         } catch (Exception e) {
-            logger.error("索引文件失败: {}", filePath, e);
+            logger.error("索引文件失败: {}", fileIndex.getFilePath(), e);
             return false;
         }
     }
@@ -209,6 +408,127 @@ public class FileIndexService {
         return summary;
     }
     
+    /**
+     * 满足过滤条件的文件集合快照：fileType为文件类型，folderPath为目录（包含子目录）；
+     * 条件都为空时返回null
+     */
+    public DocIdSet getFilter(String fileType, String folderPath) {
+        return filterIndex.filter(fileType, folderPath != null ? normalizeFolder(folderPath) : null);
+    }
+    
+    /**
+     * 满足所有字段条件的文件集合快照（用于只有字段条件和普通文本并列的查询）
+     */
+    public DocIdSet getFilter(List<BooleanQuery.Field> fields) {
+        BooleanQuery.FieldResolver resolver = fieldResolver();
+        List<DocIterator> iterators = new ArrayList<>();
+        for (BooleanQuery.Field field : fields) {
+            iterators.add(resolver.resolve(field, 0, Integer.MAX_VALUE));
+        }
+        DocIterator matching = DocIterator.and(iterators, new ArrayList<>());
+        DocIdSet docs = new DocIdSet();
+        for (int doc = matching.advance(0); doc != DocIterator.NO_MORE_DOCS; doc = matching.advance(doc + 1)) {
+            docs.add(doc);
+        }
+        return docs;
+    }
+    
+    /**
+     * 布尔查询字段条件的解析器：type 为文件类型（也可写扩展名，如 docx），folder 为目录（包含子目录），
+     * name 为文件名包含的文本，size 和 modified 为范围条件。
+     * 同一查询内相同条件的文档集合只取一次快照，各分片共用
+     */
+    public BooleanQuery.FieldResolver fieldResolver() {
+        Map<BooleanQuery.Field, DocIdSet> snapshots = new ConcurrentHashMap<>();
+        return (field, docFrom, docTo) -> {
+            switch (field.getName()) {
+                case BooleanQuery.FIELD_SIZE:
+                    return filterIndex.range(FilterIndex.VALUE_SIZE, field.getMin(), field.getMax(), docFrom, docTo);
+                case BooleanQuery.FIELD_MODIFIED:
+                    return filterIndex.range(FilterIndex.VALUE_MODIFIED, field.getMin(), field.getMax(), docFrom, docTo);
+                default:
+                    return DocIterator.of(snapshots.computeIfAbsent(field, this::resolveSet));
+            }
+        };
+    }
+    
+    private DocIdSet resolveSet(BooleanQuery.Field field) {
+        String value = field.getValue().trim();
+        switch (field.getName()) {
+            case BooleanQuery.FIELD_TYPE:
+                String type = value.toLowerCase(Locale.ROOT);
+                String category = FileUtils.getFileType("file." + type);
+                return filterIndex.filter("other".equals(category) ? type : category, null);
+            case BooleanQuery.FIELD_FOLDER:
+                return filterIndex.filter(null, normalizeFolder(value));
+            case BooleanQuery.FIELD_NAME:
+                return trigramIndex.nameMatches(value);
+            default:
+                return new DocIdSet();
+        }
+    }
+    
+    /**
+     * 过滤索引是否已构建完成
+     */
+    public boolean isFilterIndexReady() {
+        return filterIndexReady;
+    }
+    
+    /**
+     * 规范化目录路径（去掉末尾分隔符和 . / .. 片段），与过滤索引中的目录键一致
+     */
+    public static String normalizeFolder(String folderPath) {
+        return Paths.get(folderPath).normalize().toString();
+    }
+    
+    /**
+     * 文件所在目录及其所有上级目录
+     */
+    private static String[] ancestorFolders(String filePath) {
+        List<String> folders = new ArrayList<>();
+        for (Path parent = Paths.get(filePath).normalize().getParent(); parent != null; parent = parent.getParent()) {
+            folders.add(parent.toString());
+        }
+        return folders.toArray(new String[0]);
+    }
+    
+    private static long fileSizeOf(FileIndex fileIndex) {
+        return fileIndex.getFileSize() != null ? fileIndex.getFileSize() : Long.MIN_VALUE;
+    }
+    
+    /**
+     * 文件修改时间（毫秒时间戳）按本地时区格式化为记录中的 last_modified（索引时间由 indexed_time 记录）
+     */
+    private static String formatModified(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault()).toString();
+    }
+    
+    /**
+     * 记录中的修改时间（LocalDateTime或Instant格式）转换为毫秒时间戳，无法解析时返回Long.MIN_VALUE（不参与范围条件）
+     */
+    private static long lastModifiedMillis(String lastModified) {
+        if (lastModified == null) {
+            return Long.MIN_VALUE;
+        }
+        try {
+            return LocalDateTime.parse(lastModified).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            try {
+                return Instant.parse(lastModified).toEpochMilli();
+            } catch (DateTimeParseException ignored) {
+                return Long.MIN_VALUE;
+            }
+        }
+    }
+    
+    /**
+     * 当前索引代数
+     */
+    public long getIndexGeneration() {
+        return indexGeneration.get();
+    }
+    
     /**
      * 删除文件索引
      */
@@ -217,6 +537,12 @@ public class FileIndexService {
             FileIndex existing = fileIndexMapper.selectByFilePath(filePath);
             if (existing != null) {
                 fileIndexMapper.deleteById(existing.getId());
+                filterIndex.remove(existing.getId().intValue());
+                trigramIndex.remove(existing.getId().intValue());
+                suggestService.removeFile(existing.getId().intValue());
+                textIndexService.removeDocument(existing.getId());
+                vectorIndexService.removePassages(existing.getId());
+                indexGeneration.incrementAndGet();
                 logger.debug("删除文件索引: {}", filePath);
                 return true;
             }
@@ -257,6 +583,78 @@ public class FileIndexService {
         }
     }
     
+    /**
+     * 按部分文件名或路径查找文件（不区分大小写），文件名命中排在路径命中之前；
+     * 文件名索引构建完成前退化为SQL子串查询
+     */
+    public List<FileInfo> searchByName(String name, int limit) {
+        List<FileInfo> fileInfos = new ArrayList<>();
+        if (name == null || name.trim().length() < TrigramIndex.MIN_QUERY_LENGTH || limit <= 0) {
+            return fileInfos;
+        }
+        try {
+            String needle = name.trim();
+            List<FileIndex> files;
+            if (filterIndexReady) {
+                ScoredDocs ranked = trigramIndex.search(needle, limit);
+                List<Long> ids = new ArrayList<>(ranked.size());
+                for (int i = 0; i < ranked.size(); i++) {
+                    ids.add((long) ranked.doc(i));
+                }
+                files = new ArrayList<>(ids.size());
+                if (!ids.isEmpty()) {
+                    Map<Long, FileIndex> byId = new HashMap<>();
+                    for (FileIndex file : fileIndexMapper.selectBriefByIds(ids)) {
+                        byId.put(file.getId(), file);
+                    }
+                    for (Long id : ids) {
+                        FileIndex file = byId.get(id);
+                        if (file != null) {
+                            files.add(file);
+                        }
+                    }
+                }
+            } else {
+                files = fileIndexMapper.searchByPathLike(needle, limit);
+            }
+            for (FileIndex fileIndex : files) {
+                FileInfo fileInfo = new FileInfo();
+                fileInfo.setId(fileIndex.getId());
+                fileInfo.setFilePath(fileIndex.getFilePath());
+                fileInfo.setFileName(fileIndex.getFileName());
+                fileInfo.setFileSize(fileIndex.getFileSize());
+                fileInfo.setFileType(fileIndex.getFileType());
+                fileInfos.add(fileInfo);
+            }
+        } catch (Exception e) {
+            logger.error("按文件名查找失败: {}", name, e);
+        }
+        return fileInfos;
+    }
+    
+    /**
+     * 获取文件正文的UTF-8字节数，文件不存在时返回-1
+     */
+    public long getContentLength(Long fileId) {
+        Long length = fileIndexMapper.selectContentLength(fileId);
+        return length != null ? length : -1;
+    }
+    
+    /**
+     * 读取文件正文UTF-8编码中从offset开始的至多length个字节
+     */
+    public byte[] readContent(Long fileId, long offset, int length) {
+        String hex = fileIndexMapper.selectContentRangeHex(fileId, offset, length);
+        if (hex == null) {
+            return new byte[0];
+        }
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) ((Character.digit(hex.charAt(2 * i), 16) << 4) | Character.digit(hex.charAt(2 * i + 1), 16));
+        }
+        return bytes;
+    }
+    
     /**
      * 获取所有文件列表
      */
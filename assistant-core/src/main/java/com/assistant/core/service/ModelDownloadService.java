@@ -24,11 +24,13 @@ public class ModelDownloadService {
     
     private static final String MODEL_URL = "https://huggingface.co/sentence-transformers/all-MiniLM-L6-v2/resolve/main/onnx/model.onnx";
     private static final String MODEL_NAME = "all-MiniLM-L6-v2.onnx";
+    private static final String VOCAB_URL = "https://huggingface.co/sentence-transformers/all-MiniLM-L6-v2/resolve/main/vocab.txt";
     
     /**
      * 检查并下载模型文件
      */
     public void ensureModelExists() {
+        ensureVocabExists();
         try {
             Path modelPath = Paths.get(AssistantConstants.MODEL_PATH, AssistantConstants.EMBEDDING_MODEL_NAME);
             File modelFile = modelPath.toFile();
@@ -49,14 +51,39 @@ public class ModelDownloadService {
         }
     }
     
+    /**
+     * 检查并下载分词词表（WordPiece vocab.txt），下载失败时模型不可用
+     */
+    private void ensureVocabExists() {
+        Path vocabPath = Paths.get(getVocabPath());
+        if (isVocabExists()) {
+            return;
+        }
+        try {
+            logger.info("开始下载分词词表: {}", VOCAB_URL);
+            downloadFile(VOCAB_URL, vocabPath);
+        } catch (Exception e) {
+            logger.error("下载分词词表失败", e);
+            try {
+                Files.deleteIfExists(vocabPath);
+            } catch (Exception ignored) {
+                // 残留的不完整文件在下次启动时重新下载
+            }
+        }
+    }
+    
     /**
      * 下载模型文件
      */
     private void downloadModel(Path modelPath) throws Exception {
+        downloadFile(MODEL_URL, modelPath);
+    }
+    
+    private void downloadFile(String source, Path modelPath) throws Exception {
         // 确保目录存在
         Files.createDirectories(modelPath.getParent());
         
-        URL url = new URL(MODEL_URL);
+        URL url = new URL(source);
         HttpURLConnection connection = (HttpURLConnection) url.openConnection();
         connection.setRequestMethod("GET");
         connection.setConnectTimeout(30000);
@@ -110,6 +137,21 @@ public class ModelDownloadService {
         return modelFile.exists() && modelFile.length() > 0;
     }
     
+    /**
+     * 检查分词词表是否存在
+     */
+    public boolean isVocabExists() {
+        File vocabFile = Paths.get(getVocabPath()).toFile();
+        return vocabFile.exists() && vocabFile.length() > 0;
+    }
+    
+    /**
+     * 获取分词词表路径
+     */
+    public String getVocabPath() {
+        return Paths.get(AssistantConstants.MODEL_PATH, AssistantConstants.EMBEDDING_VOCAB_NAME).toString();
+    }
+    
     /**
      * 获取模型文件路径
      */
@@ -0,0 +1,213 @@
+package com.assistant.core.service;
+
+import com.assistant.core.entity.SearchHistory;
+import com.assistant.core.mapper.SearchHistoryMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 搜索历史服务
+ * 搜索时只把记录放入有界队列，由后台线程每隔flush-interval-ms或攒满batch-size条后用一条多行INSERT批量写入；
+ * 队列已满时丢弃新记录，搜索不会因记录历史而等待数据库。读取时合并尚未写入的记录和按search_time索引倒序读取的前N条。
+ */
+@Service
+public class SearchHistoryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SearchHistoryService.class);
+
+    @Autowired
+    private SearchHistoryMapper searchHistoryMapper;
+
+    @Autowired
+    private SuggestService suggestService;
+
+    @Value("${assistant.search.history.flush-interval-ms:1000}")
+    private long flushIntervalMs;
+
+    @Value("${assistant.search.history.batch-size:200}")
+    private int batchSize;
+
+    @Value("${assistant.search.history.queue-capacity:10000}")
+    private int queueCapacity;
+
+    private BlockingQueue<SearchHistory> queue;
+
+    /**
+     * 已登记、正在写入的批次（仍可能留在队列头部），读取历史时一并返回
+     */
+    private volatile List<SearchHistory> inFlight = Collections.emptyList();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final Object signal = new Object();
+
+    /**
+     * 写入批次与清空互斥，清空后不会再写入清空前的记录
+     */
+    private final Object writeLock = new Object();
+
+    private volatile boolean running = true;
+
+    private Thread writer;
+
+    @PostConstruct
+    public void init() {
+        queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        writer = new Thread(this::writeLoop, "search-history-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        writer.interrupt();
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 记录一次搜索（只入队，不访问数据库），同时计入输入联想
+     */
+    public void record(String query, int resultCount, String searchType) {
+        suggestService.recordQuery(query);
+        SearchHistory searchHistory = new SearchHistory();
+        searchHistory.setQueryText(query);
+        searchHistory.setResultCount(resultCount);
+        searchHistory.setSearchType(searchType);
+        searchHistory.setSearchTime(LocalDateTime.now().toString());
+        if (!queue.offer(searchHistory)) {
+            if (dropped.incrementAndGet() % 1000 == 1) {
+                logger.warn("搜索历史队列已满，已丢弃 {} 条记录", dropped.get());
+            }
+        } else if (queue.size() >= batchSize) {
+            synchronized (signal) {
+                signal.notify();
+            }
+        }
+    }
+
+    /**
+     * 最近的limit条搜索历史（包含尚未写入数据库的记录），按时间倒序
+     */
+    public List<SearchHistory> getRecent(int limit) {
+        List<SearchHistory> recent = new ArrayList<>(Math.max(0, limit));
+        if (limit <= 0) {
+            return recent;
+        }
+        // 正在写入的批次是队列头部的记录，先读批次再读队列，按对象去重
+        List<SearchHistory> writing = inFlight;
+        Set<SearchHistory> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<SearchHistory> pending = new ArrayList<>(writing);
+        seen.addAll(writing);
+        for (SearchHistory searchHistory : queue) {
+            if (seen.add(searchHistory)) {
+                pending.add(searchHistory);
+            }
+        }
+        for (int i = pending.size() - 1; i >= 0 && recent.size() < limit; i--) {
+            recent.add(pending.get(i));
+        }
+        if (recent.size() < limit) {
+            // 批次可能在读取期间已写入，跳过与未写入记录重复的行
+            for (SearchHistory row : searchHistoryMapper.selectRecent(limit)) {
+                if (recent.size() >= limit) {
+                    break;
+                }
+                if (!containsPending(pending, row)) {
+                    recent.add(row);
+                }
+            }
+        }
+        return recent;
+    }
+
+    /**
+     * 清空搜索历史（包括尚未写入的记录）
+     */
+    public void clear() {
+        synchronized (writeLock) {
+            queue.clear();
+            searchHistoryMapper.delete(null);
+        }
+        suggestService.clearQueries();
+    }
+
+    private void writeLoop() {
+        while (running || !queue.isEmpty()) {
+            try {
+                synchronized (signal) {
+                    if (running && queue.size() < batchSize) {
+                        signal.wait(flushIntervalMs);
+                    }
+                }
+            } catch (InterruptedException e) {
+                // 关闭时被中断，继续写完队列中剩余的记录
+                running = false;
+            }
+            do {
+                writeBatch();
+            } while (queue.size() >= batchSize || (!running && !queue.isEmpty()));
+        }
+    }
+
+    /**
+     * 从队列头部取一批记录写入；批次先登记为正在写入再出队，读取历史时不会遗漏
+     */
+    private void writeBatch() {
+        synchronized (writeLock) {
+            if (queue.isEmpty()) {
+                return;
+            }
+            List<SearchHistory> batch = new ArrayList<>(Math.min(batchSize, queue.size()));
+            for (SearchHistory searchHistory : queue) {
+                if (batch.size() >= batchSize) {
+                    break;
+                }
+                batch.add(searchHistory);
+            }
+            inFlight = batch;
+            for (int i = 0; i < batch.size(); i++) {
+                queue.poll();
+            }
+            try {
+                searchHistoryMapper.insertBatch(batch);
+                logger.debug("批量写入搜索历史 {} 条", batch.size());
+            } catch (Exception e) {
+                logger.warn("批量写入搜索历史失败，丢弃 {} 条记录", batch.size(), e);
+            } finally {
+                inFlight = Collections.emptyList();
+            }
+        }
+    }
+
+    private static boolean containsPending(List<SearchHistory> pending, SearchHistory row) {
+        for (SearchHistory searchHistory : pending) {
+            if (Objects.equals(searchHistory.getSearchTime(), row.getSearchTime())
+                && Objects.equals(searchHistory.getQueryText(), row.getQueryText())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
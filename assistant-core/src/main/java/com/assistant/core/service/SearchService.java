@@ -1,19 +1,46 @@
 package com.assistant.core.service;
 
+import com.assistant.common.constants.AssistantConstants;
+import com.assistant.common.dto.SearchMeta;
 import com.assistant.common.dto.SearchRequest;
 import com.assistant.common.dto.SearchResult;
+import com.assistant.core.cache.WeightedLruCache;
+import com.assistant.core.entity.FileChunk;
 import com.assistant.core.entity.FileIndex;
+import com.assistant.core.entity.FullTextHit;
 import com.assistant.core.entity.SearchHistory;
+import com.assistant.core.index.BooleanQuery;
+import com.assistant.core.index.DocIdSet;
+import com.assistant.core.index.PassageSplitter;
+import com.assistant.core.index.RankFusion;
+import com.assistant.core.index.ScoredDocs;
+import com.assistant.core.index.TextQuery;
 import com.assistant.core.mapper.FileIndexMapper;
-import com.assistant.core.mapper.SearchHistoryMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 /**
  * 搜索服务
@@ -23,96 +50,182 @@ public class SearchService {
     
     private static final Logger logger = LoggerFactory.getLogger(SearchService.class);
     
+    private static final String MODE_LEXICAL = "lexical";
+    private static final String MODE_VECTOR = "vector";
+    private static final String MODE_HYBRID = "hybrid";
+    
+    private static final String LEG_LEXICAL = "lexical";
+    private static final String LEG_VECTOR = "vector";
+    
     @Autowired
     private FileIndexMapper fileIndexMapper;
     
     @Autowired
-    private SearchHistoryMapper searchHistoryMapper;
+    private SearchHistoryService searchHistoryService;
+    
+    @Autowired
+    private TextIndexService textIndexService;
+    
+    @Autowired
+    private VectorIndexService vectorIndexService;
+    
+    @Autowired
+    private FileIndexService fileIndexService;
+    
+    @Value("${assistant.search.cache.max-entries:256}")
+    private int cacheMaxEntries;
+    
+    @Value("${assistant.search.cache.max-weight-mb:32}")
+    private long cacheMaxWeightMb;
+    
+    @Value("${assistant.search.hybrid.rrf-k:60}")
+    private int rrfK;
+    
+    @Value("${assistant.search.hybrid.leg-depth:100}")
+    private int hybridLegDepth;
+    
+    @Value("${assistant.search.hybrid.lexical-timeout-ms:1000}")
+    private long lexicalTimeoutMs;
+    
+    @Value("${assistant.search.hybrid.vector-timeout-ms:2000}")
+    private long vectorTimeoutMs;
+    
+    @Value("${assistant.search.hybrid.leg-threads:4}")
+    private int legThreads;
+    
+    /**
+     * 混合检索中两路并行执行的线程池（有界队列，满时拒绝提交，该路按超时处理）
+     */
+    private ExecutorService legExecutor;
+    
+    /**
+     * 查询结果缓存，键包含索引代数，索引写入后旧条目自然失效并被LRU淘汰
+     */
+    private WeightedLruCache<String, CachedSearch> resultCache;
     
            @Autowired
            private AIEmbeddingService aiEmbeddingService;
            
            @Autowired
-           private AISummaryService aiSummaryService;
-           
-           @Autowired
-           private AIEnhancedSummaryService aiEnhancedSummaryService;
-           
-           @Autowired
-           private FinancialAnalysisService financialAnalysisService;
+           private AnalysisSummaryService analysisSummaryService;
+    
+    @PostConstruct
+    public void initResultCache() {
+        resultCache = new WeightedLruCache<>(cacheMaxEntries, cacheMaxWeightMb * 1024 * 1024,
+            (key, value) -> value.weight + key.length() * 2L);
+    }
+    
+    @PostConstruct
+    public void initLegExecutor() {
+        int threads = Math.max(2, legThreads);
+        AtomicInteger counter = new AtomicInteger();
+        legExecutor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(threads * 16), r -> {
+                Thread thread = new Thread(r, "search-leg-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.AbortPolicy());
+        ((ThreadPoolExecutor) legExecutor).allowCoreThreadTimeOut(true);
+    }
+    
+    @PreDestroy
+    public void shutdownLegExecutor() {
+        legExecutor.shutdownNow();
+    }
     
     /**
      * 搜索文件
      */
     public List<SearchResult> searchFiles(SearchRequest request) {
+        return searchFiles(request, new SearchMeta());
+    }
+    
+    /**
+     * 搜索文件，并把检索方式和各路耗时写入meta
+     */
+    public List<SearchResult> searchFiles(SearchRequest request, SearchMeta meta) {
         logger.info("执行搜索: {}", request.getQuery());
+        long startNanos = System.nanoTime();
         
         try {
-            List<FileIndex> fileIndexes;
-            String searchType = "text";
+            // 含有布尔运算或只有字段条件的查询只在倒排索引上按布尔语义执行
+            BooleanQuery query = BooleanQuery.parse(request.getQuery());
+            String mode = query.isStructured() ? MODE_LEXICAL : resolveSearchMode(request);
+            meta.setSearchMode(mode);
+            
+            // 分页：第pageNum页从offset开始，结果总数不超过MAX_SEARCH_RESULTS
+            int pageSize = request.getPageSize() != null && request.getPageSize() > 0
+                ? Math.min(request.getPageSize(), AssistantConstants.MAX_PAGE_SIZE) : AssistantConstants.DEFAULT_PAGE_SIZE;
+            int pageNum = request.getPageNum() != null && request.getPageNum() > 0 ? request.getPageNum() : 1;
+            long offset = (long) (pageNum - 1) * pageSize;
+            int limit = (int) Math.max(0, Math.min(pageSize, AssistantConstants.MAX_SEARCH_RESULTS - offset));
             
-            // 优先使用AI语义搜索，如果不可用则使用改进的文本搜索
-            if (aiEmbeddingService.isModelAvailable()) {
-                try {
-                    fileIndexes = performSemanticSearch(request.getQuery());
-                    searchType = "semantic";
-                } catch (Exception e) {
-                    logger.warn("AI语义搜索失败，回退到改进的文本搜索: {}", e.getMessage());
-                    fileIndexes = performImprovedTextSearch(request.getQuery());
-                    searchType = "text";
+            // 查询结果缓存（先取索引代数，计算期间若有写入则本次结果以旧代数缓存，不会再被命中）
+            String cacheKey = buildCacheKey(request, mode, pageNum, pageSize, fileIndexService.getIndexGeneration());
+            CachedSearch cached = resultCache.get(cacheKey);
+            // 总结任务已过期的缓存结果重新检索，以便重新登记总结任务
+            if (cached != null && (cached.summaryTicket == null || analysisSummaryService.getTask(cached.summaryTicket) != null)) {
+                meta.setSearchMode(cached.searchMode);
+                meta.setSummaryTicket(cached.summaryTicket);
+                meta.setCached(true);
+                meta.setTotalTimeMs(elapsedMillis(startNanos));
+                recordSearchHistory(request.getQuery(), cached.results.size(), historyType(cached.searchMode));
+                logger.info("命中查询缓存，返回 {} 个结果", cached.results.size());
+                return new ArrayList<>(cached.results);
+            }
+            
+            SearchFilter filter = resolveFilter(request, query);
+            boolean fuzzy = Boolean.TRUE.equals(request.getFuzzy());
+            ScoredDocs ranked = limit == 0 || filter.matchesNothing()
+                ? new ScoredDocs(1) : retrieve(query, mode, filter, fuzzy, (int) offset, limit, meta);
+            mode = meta.getSearchMode();
+            
+            // 只加载当前页的记录，按排名顺序转换为搜索结果；模糊检索时高亮实际匹配的相近词
+            Map<Long, FileIndex> byId = loadByIds(ranked);
+            TextQuery highlightQuery = textIndexService.parseQuery(query.getText(), fuzzy);
+            // 语义检索时给出每个文件中与查询最相似的段落（查询向量已在检索时生成并缓存）
+            float[] passageQuery = MODE_LEXICAL.equals(mode) ? null : aiEmbeddingService.generateEmbedding(query.getText());
+            List<Long> fileIds = new ArrayList<>(ranked.size());
+            List<SearchResult> results = new ArrayList<>(ranked.size());
+            for (int i = 0; i < ranked.size(); i++) {
+                FileIndex fileIndex = byId.get((long) ranked.doc(i));
+                if (fileIndex == null) {
+                    continue;
                 }
-            } else {
-                fileIndexes = performImprovedTextSearch(request.getQuery());
-                searchType = "text";
+                fileIds.add(fileIndex.getId());
+                
+                // 结果只包含精简字段和摘要片段，正文通过 /files/{id}/content 按需分段读取
+                SearchResult result = new SearchResult();
+                result.setFileId(fileIndex.getId());
+                result.setFilePath(fileIndex.getFilePath());
+                result.setFileName(fileIndex.getFileName());
+                result.setFileType(fileIndex.getFileType());
+                result.setFileSize(fileIndex.getFileSize());
+                result.setScore(displayScore(ranked.score(i), mode));
+                result.setHighlight(textIndexService.highlight(fileIndex, highlightQuery));
+                if (passageQuery != null) {
+                    applyPassage(result, fileIndex, vectorIndexService.bestPassage(passageQuery, fileIndex.getId()));
+                }
+                results.add(result);
             }
             
-                   // 转换为搜索结果
-                   List<SearchResult> results = fileIndexes.stream()
-                       .map(fileIndex -> {
-                           SearchResult result = new SearchResult();
-                           result.setFileId(fileIndex.getId());
-                           result.setFilePath(fileIndex.getFilePath());
-                           result.setFileName(fileIndex.getFileName());
-                           result.setFileType(fileIndex.getFileType());
-                           result.setFileSize(fileIndex.getFileSize());
-                           result.setLastModified(fileIndex.getLastModified());
-                           result.setContent(fileIndex.getContent());
-                           result.setSummary(fileIndex.getSummary());
-                           result.setScore(calculateScore(fileIndex, request.getQuery()));
-                           result.setHighlight(generateHighlight(fileIndex.getContent(), request.getQuery()));
-                           return result;
-                       })
-                       .sorted((a, b) -> Double.compare(b.getScore(), a.getScore())) // 按分数降序排列
-                       .limit(request.getPageSize())
-                       .collect(Collectors.toList());
-                   
-                   // 生成智能总结分析
-                   if (!results.isEmpty()) {
-                       try {
-                           logger.info("开始生成AI总结分析，查询: {}, 文件数量: {}", request.getQuery(), fileIndexes.size());
-                           // 根据查询类型选择不同的分析服务
-                           String analysisSummary;
-                           if (request.getQuery().contains("利润") || request.getQuery().contains("财务") || 
-                               request.getQuery().contains("收入") || request.getQuery().contains("成本")) {
-                               analysisSummary = financialAnalysisService.generateFinancialAnalysis(request.getQuery(), fileIndexes);
-                           } else {
-                               analysisSummary = aiEnhancedSummaryService.generateSummary(request.getQuery(), fileIndexes);
-                           }
-                           logger.info("AI总结分析生成完成，长度: {}", analysisSummary != null ? analysisSummary.length() : 0);
-                           // 将总结添加到第一个结果中，或者创建一个特殊的结果
-                           if (!results.isEmpty()) {
-                               results.get(0).setAnalysisSummary(analysisSummary);
-                               logger.info("AI总结分析已设置到第一个结果中，内容: {}", analysisSummary != null ? analysisSummary.substring(0, Math.min(100, analysisSummary.length())) : "null");
-                           }
-                       } catch (Exception e) {
-                           logger.error("生成AI总结分析失败", e);
-                       }
-                   }
+            // AI总结分析在后台生成，响应中只返回票据
+            String summaryTicket = null;
+            if (!fileIds.isEmpty()) {
+                summaryTicket = analysisSummaryService.submit(request.getQuery(), fileIds);
+                meta.setSummaryTicket(summaryTicket);
+            }
+            
+            // 索引构建完成后的结果才写入缓存（构建期间的结果来自回退路径），有检索路超时的不完整结果也不缓存
+            if (textIndexService.isReady() && meta.getTimedOutLegs() == null) {
+                resultCache.put(cacheKey, new CachedSearch(new ArrayList<>(results), mode, summaryTicket));
+            }
             
             // 记录搜索历史
-            recordSearchHistory(request.getQuery(), results.size(), searchType);
+            recordSearchHistory(request.getQuery(), results.size(), historyType(mode));
             
-            logger.info("搜索完成，找到 {} 个结果", results.size());
+            meta.setTotalTimeMs(elapsedMillis(startNanos));
+            logger.info("搜索完成，检索方式: {}，找到 {} 个结果", mode, results.size());
             return results;
             
         } catch (Exception e) {
@@ -122,243 +235,409 @@ public class SearchService {
     }
     
     /**
-     * 计算搜索分数
+     * 写入最相似段落的字节区间；高亮片段中没有命中词时改用该段落开头的片段
      */
-    private double calculateScore(FileIndex fileIndex, String query) {
-        double score = 0.0;
-        String queryLower = query.toLowerCase();
-        
-        // 文件名匹配分数
-        if (fileIndex.getFileName().toLowerCase().contains(queryLower)) {
-            score += 0.5;
+    private void applyPassage(SearchResult result, FileIndex fileIndex, FileChunk passage) {
+        String content = fileIndex.getContent();
+        if (passage == null || content == null || passage.getEndOffset() > content.length()) {
+            return;
         }
-        
-        // 内容匹配分数
-        if (fileIndex.getContent() != null && fileIndex.getContent().toLowerCase().contains(queryLower)) {
-            score += 0.3;
+        int start = passage.getStartOffset();
+        int end = passage.getEndOffset();
+        result.setPassageOffset(PassageSplitter.utf8Length(content, 0, start));
+        result.setPassageLength(PassageSplitter.utf8Length(content, start, end));
+        if (result.getHighlight() == null || !result.getHighlight().contains("<mark>")) {
+            String fragment = textIndexService.fragment(content, start, end);
+            if (fragment != null) {
+                result.setHighlight(fragment);
+            }
         }
-        
-        // 摘要匹配分数
-        if (fileIndex.getSummary() != null && fileIndex.getSummary().toLowerCase().contains(queryLower)) {
-            score += 0.2;
+    }
+    
+    /**
+     * 预览搜索：用倒排索引的冠军表快速给出第一页的候选文件（只含基本信息，没有高亮片段），
+     * 供流式搜索在完整检索完成前先行展示；倒排索引未就绪或不是第一页时返回空列表
+     */
+    public List<SearchResult> previewFiles(SearchRequest request, SearchMeta meta) {
+        long startNanos = System.nanoTime();
+        List<SearchResult> results = new ArrayList<>();
+        try {
+            int pageSize = request.getPageSize() != null && request.getPageSize() > 0
+                ? Math.min(request.getPageSize(), AssistantConstants.MAX_PAGE_SIZE) : AssistantConstants.DEFAULT_PAGE_SIZE;
+            boolean firstPage = request.getPageNum() == null || request.getPageNum() <= 1;
+            BooleanQuery query = BooleanQuery.parse(request.getQuery());
+            if (!firstPage || !textIndexService.isReady() || query.isStructured()) {
+                return results;
+            }
+            SearchFilter filter = resolveFilter(request, query);
+            if (filter.matchesNothing() || (filter.isActive() && filter.docs == null)) {
+                return results;
+            }
+            
+            ScoredDocs ranked = textIndexService.preview(query.getText(), pageSize, filter.docs);
+            if (ranked.size() > 0) {
+                List<Long> ids = new ArrayList<>(ranked.size());
+                for (int i = 0; i < ranked.size(); i++) {
+                    ids.add((long) ranked.doc(i));
+                }
+                Map<Long, FileIndex> byId = new HashMap<>();
+                for (FileIndex file : fileIndexMapper.selectBriefByIds(ids)) {
+                    byId.put(file.getId(), file);
+                }
+                for (int i = 0; i < ranked.size(); i++) {
+                    FileIndex fileIndex = byId.get((long) ranked.doc(i));
+                    if (fileIndex == null) {
+                        continue;
+                    }
+                    SearchResult result = new SearchResult();
+                    result.setFileId(fileIndex.getId());
+                    result.setFilePath(fileIndex.getFilePath());
+                    result.setFileName(fileIndex.getFileName());
+                    result.setFileType(fileIndex.getFileType());
+                    result.setFileSize(fileIndex.getFileSize());
+                    result.setScore(displayScore(ranked.score(i), MODE_LEXICAL));
+                    results.add(result);
+                }
+            }
+        } catch (Exception e) {
+            logger.warn("预览搜索失败", e);
+        } finally {
+            meta.setSearchMode(MODE_LEXICAL);
+            meta.setLexicalTimeMs(elapsedMillis(startNanos));
+            meta.setTotalTimeMs(elapsedMillis(startNanos));
         }
-        
-        return Math.min(score, 1.0);
+        return results;
+    }
+    
+    /**
+     * 缓存键：索引代数、规范化的查询文本（去首尾空白、合并空白、转小写）、过滤条件、分页、搜索方式和是否模糊匹配
+     */
+    private String buildCacheKey(SearchRequest request, String mode, int pageNum, int pageSize, long generation) {
+        String query = request.getQuery().trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+        return generation + "\u0001" + query
+            + "\u0001" + (request.getFileType() != null ? request.getFileType() : "")
+            + "\u0001" + (request.getFolderPath() != null ? request.getFolderPath() : "")
+            + "\u0001" + pageNum + "\u0001" + pageSize
+            + "\u0001" + mode + "\u0001" + Boolean.TRUE.equals(request.getFuzzy());
     }
     
     /**
-     * 生成高亮文本
+     * 查询缓存统计
      */
-    private String generateHighlight(String content, String query) {
-        if (content == null || query == null) {
-            return content;
+    public Map<String, Object> getCacheStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", resultCache.size());
+        stats.put("weightBytes", resultCache.getWeight());
+        stats.put("hits", resultCache.getHitCount());
+        stats.put("misses", resultCache.getMissCount());
+        stats.put("evictions", resultCache.getEvictionCount());
+        stats.put("hitRate", resultCache.getHitRate());
+        return stats;
+    }
+    
+    /**
+     * 确定检索方式：优先使用请求中的searchMode，否则由useSemanticSearch决定；语义模型不可用时只能使用关键词检索
+     */
+    private String resolveSearchMode(SearchRequest request) {
+        String mode = request.getSearchMode() != null ? request.getSearchMode().trim().toLowerCase(Locale.ROOT) : "";
+        if (!MODE_LEXICAL.equals(mode) && !MODE_VECTOR.equals(mode) && !MODE_HYBRID.equals(mode)) {
+            mode = Boolean.FALSE.equals(request.getUseSemanticSearch()) ? MODE_LEXICAL : MODE_HYBRID;
+        }
+        if (!MODE_LEXICAL.equals(mode) && !aiEmbeddingService.isModelAvailable()) {
+            mode = MODE_LEXICAL;
+        }
+        return mode;
+    }
+    
+    /**
+     * 按检索方式取得当前页的排名
+     * 单路检索直接在当前线程执行；hybrid方式下两路在独立线程池上并行，各自受时间预算约束，
+     * 每路取前 max(legDepth, offset+limit) 个结果，经倒数排名融合后再分页。
+     * 某一路不可用或超时时只使用另一路的排名，meta中的检索方式随之改为实际使用的那一路。
+     */
+    private ScoredDocs retrieve(BooleanQuery query, String mode, SearchFilter filter, boolean fuzzy, int offset, int limit, SearchMeta meta) {
+        if (MODE_VECTOR.equals(mode)) {
+            long start = System.nanoTime();
+            ScoredDocs hits = performSemanticSearch(query.getText(), filter, offset, limit);
+            meta.setVectorTimeMs(elapsedMillis(start));
+            if (hits != null) {
+                return hits;
+            }
+            meta.setSearchMode(MODE_LEXICAL);
+        }
+        if (!MODE_HYBRID.equals(mode)) {
+            long start = System.nanoTime();
+            ScoredDocs hits = performImprovedTextSearch(query, filter, fuzzy, offset, limit);
+            meta.setLexicalTimeMs(elapsedMillis(start));
+            return hits;
         }
         
-        // 简单的关键词高亮
-        String highlight = content.replaceAll("(?i)" + query, "<mark>" + query + "</mark>");
+        int depth = Math.min(AssistantConstants.MAX_SEARCH_RESULTS, Math.max(hybridLegDepth, offset + limit));
+        long start = System.nanoTime();
+        CompletableFuture<LegResult> lexicalLeg = submitLeg(
+            () -> LegResult.timed(() -> performImprovedTextSearch(query, filter, fuzzy, 0, depth)));
+        CompletableFuture<LegResult> vectorLeg = submitLeg(
+            () -> LegResult.timed(() -> performSemanticSearch(query.getText(), filter, 0, depth)));
         
-        // 限制高亮文本长度
-        if (highlight.length() > 500) {
-            int index = highlight.toLowerCase().indexOf(query.toLowerCase());
-            if (index > 0) {
-                int start = Math.max(0, index - 100);
-                int end = Math.min(highlight.length(), index + query.length() + 100);
-                highlight = "..." + highlight.substring(start, end) + "...";
-            }
+        LegResult lexical = awaitLeg(lexicalLeg, LEG_LEXICAL, start, lexicalTimeoutMs, meta);
+        LegResult vector = awaitLeg(vectorLeg, LEG_VECTOR, start, vectorTimeoutMs, meta);
+        meta.setLexicalTimeMs(lexical.millis);
+        meta.setVectorTimeMs(vector.millis);
+        
+        if (vector.docs == null || lexical.docs == null) {
+            boolean useVector = vector.docs != null;
+            meta.setSearchMode(useVector ? MODE_VECTOR : MODE_LEXICAL);
+            return slice(useVector ? vector.docs : lexical.docs != null ? lexical.docs : new ScoredDocs(1), offset, limit);
         }
         
-        return highlight;
+        long fusionStart = System.nanoTime();
+        ScoredDocs fused = RankFusion.fuse(rrfK, lexical.docs, vector.docs);
+        ScoredDocs page = slice(fused, offset, limit);
+        meta.setFusionTimeMs(elapsedMillis(fusionStart));
+        logger.info("混合检索完成，关键词 {} 个，语义 {} 个，融合后 {} 个", lexical.docs.size(), vector.docs.size(), fused.size());
+        return page;
+    }
+    
+    /**
+     * 解析过滤条件：文件类型（不区分大小写）、目录（包含子目录），以及查询中与普通文本并列的字段条件。
+     * 过滤索引就绪时取出满足条件的文件集合（多个条件时为交集），检索只对集合内的文件打分；
+     * 过滤索引未就绪时回退的全文检索只能处理请求中的文件类型和目录
+     */
+    private SearchFilter resolveFilter(SearchRequest request, BooleanQuery query) {
+        String fileType = request.getFileType() != null && !request.getFileType().trim().isEmpty()
+            ? request.getFileType().trim().toLowerCase(Locale.ROOT) : null;
+        String folder = request.getFolderPath() != null && !request.getFolderPath().trim().isEmpty()
+            ? FileIndexService.normalizeFolder(request.getFolderPath().trim()) : null;
+        List<BooleanQuery.Field> fields = query.isStructured() ? new ArrayList<>() : query.getFilters();
+        if (fileType == null && folder == null && fields.isEmpty()) {
+            return new SearchFilter(null, null, null, false);
+        }
+        DocIdSet docs = null;
+        if (fileIndexService.isFilterIndexReady()) {
+            docs = fileIndexService.getFilter(fileType, folder);
+            if (!fields.isEmpty()) {
+                DocIdSet fieldDocs = fileIndexService.getFilter(fields);
+                docs = docs != null ? DocIdSet.and(docs, fieldDocs) : fieldDocs;
+            }
+        }
+        String folderPrefix = folder != null ? (folder.endsWith(File.separator) ? folder : folder + File.separator) : null;
+        return new SearchFilter(fileType, folderPrefix, docs, !fields.isEmpty());
+    }
+    
+    /**
+     * 提交一路检索；线程池队列已满时不在调用线程执行（否则时间预算不起作用），返回以拒绝异常结束的结果
+     */
+    private CompletableFuture<LegResult> submitLeg(Supplier<LegResult> leg) {
+        try {
+            return CompletableFuture.supplyAsync(leg, legExecutor);
+        } catch (RejectedExecutionException e) {
+            CompletableFuture<LegResult> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(e);
+            return rejected;
+        }
+    }
+    
+    /**
+     * 在预算截止前等待一路检索结果；超时或因线程池已满未能执行时返回空结果并记录，已提交的检索在后台自行结束
+     */
+    private LegResult awaitLeg(CompletableFuture<LegResult> leg, String name, long startNanos, long budgetMs, SearchMeta meta) {
+        long remainingNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(budgetMs) - System.nanoTime();
+        try {
+            return leg.get(Math.max(0L, remainingNanos), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            logger.warn("{}检索超出时间预算 {}ms，本次结果不包含该路", name, budgetMs);
+            meta.addTimedOutLeg(name);
+            return new LegResult(null, elapsedMillis(startNanos));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new LegResult(null, elapsedMillis(startNanos));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RejectedExecutionException) {
+                logger.warn("检索线程池已满，本次结果不包含{}检索", name);
+                meta.addTimedOutLeg(name);
+                return new LegResult(null, elapsedMillis(startNanos));
+            }
+            logger.error("{}检索失败", name, e.getCause());
+            return new LegResult(null, elapsedMillis(startNanos));
+        }
+    }
+    
+    /**
+     * 取按分数降序排列的结果中第 offset 到 offset+limit 个
+     */
+    private ScoredDocs slice(ScoredDocs ranked, int offset, int limit) {
+        int end = Math.min(ranked.size(), offset + limit);
+        ScoredDocs page = new ScoredDocs(Math.max(1, end - offset));
+        for (int i = offset; i < end; i++) {
+            page.add(ranked.doc(i), ranked.score(i));
+        }
+        return page;
+    }
+    
+    /**
+     * 搜索历史中的检索类型，沿用原有的 text/semantic 取值
+     */
+    private String historyType(String mode) {
+        if (MODE_LEXICAL.equals(mode)) {
+            return "text";
+        }
+        return MODE_VECTOR.equals(mode) ? "semantic" : mode;
+    }
+    
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+    
+    /**
+     * 将检索分数换算为0~1的匹配度：语义搜索为余弦相似度，文本搜索的BM25分数按 s/(s+1) 压缩，
+     * 混合检索为融合分数相对两路都排第一时的比例
+     */
+    private double displayScore(float score, String mode) {
+        if (MODE_VECTOR.equals(mode)) {
+            return Math.max(0.0, Math.min(1.0, score));
+        }
+        if (MODE_HYBRID.equals(mode)) {
+            return Math.min(1.0, score / RankFusion.maxScore(rrfK, 2));
+        }
+        return score > 0 ? score / (score + 1.0) : 0.0;
     }
     
            /**
-            * 执行AI语义搜索
+            * 执行AI语义搜索，返回按相似度排序的当前页；不可用时返回null，由调用方回退到文本搜索
             */
-           private List<FileIndex> performSemanticSearch(String query) {
+           private ScoredDocs performSemanticSearch(String query, SearchFilter filter, int offset, int limit) {
                try {
+                   // 过滤索引尚未构建完成时无法按条件限定向量检索范围
+                   if (filter.isActive() && filter.docs == null) {
+                       logger.info("过滤索引尚未就绪，回退到改进的文本搜索");
+                       return null;
+                   }
+                   
                    // 生成查询向量
                    float[] queryVector = aiEmbeddingService.generateEmbedding(query);
                    if (queryVector == null) {
                        logger.warn("无法生成查询向量，回退到改进的文本搜索");
-                       return performImprovedTextSearch(query);
+                       return null;
                    }
                    
-                   // 获取所有文件（不包含vector_data字段，避免BLOB读取问题）
-                   List<FileIndex> allFiles = fileIndexMapper.selectAllWithoutVectorData();
+                   // 向量索引尚未就绪时回退到文本搜索
+                   if (!vectorIndexService.isReady()) {
+                       logger.info("向量索引尚未就绪，回退到改进的文本搜索");
+                       return null;
+                   }
                    
-                   // 使用改进的文本相似度计算作为语义搜索的替代方案
-                   List<FileIndex> results = allFiles.stream()
-                       .map(file -> {
-                           // 计算文本相似度（简化版语义搜索）
-                           double similarity = calculateTextSimilarity(query, file.getContent());
-                           if (similarity > 0.1) { // 提高相似度阈值，减少低质量结果
-                               logger.debug("文件 {} 相似度: {}", file.getFileName(), similarity);
-                           }
-                           return new Object[]{file, similarity};
-                       })
-                       .filter(obj -> (Double) obj[1] > 0.1) // 提高相似度阈值
-                       .sorted((a, b) -> Double.compare((Double) b[1], (Double) a[1])) // 按相似度降序
-                       .limit(20) // 限制返回结果数量
-                       .map(obj -> (FileIndex) obj[0])
-                       .collect(Collectors.toList());
+                   // 通过向量索引检索最相似的文件
+                   ScoredDocs hits = vectorIndexService.search(queryVector, offset, limit, filter.docs);
                    
-                   logger.info("AI语义搜索完成，找到 {} 个相关结果", results.size());
-                   return results;
+                   logger.info("AI语义搜索完成，找到 {} 个相关结果", hits.size());
+                   return hits;
                    
                } catch (Exception e) {
-                   logger.error("AI语义搜索失败", e);
-                   return performImprovedTextSearch(query);
+                   logger.error("AI语义搜索失败，回退到改进的文本搜索", e);
+                   return null;
                }
            }
     
            /**
-            * 执行改进的文本搜索
+            * 执行改进的文本搜索，返回按相关度排序的当前页
             */
-           private List<FileIndex> performImprovedTextSearch(String query) {
+           private ScoredDocs performImprovedTextSearch(BooleanQuery query, SearchFilter filter, boolean fuzzy, int offset, int limit) {
                try {
-                   // 获取所有文件
-                   List<FileIndex> allFiles = fileIndexMapper.selectAllWithoutVectorData();
-                   
-                   // 使用改进的文本相似度计算
-                   List<FileIndex> results = allFiles.stream()
-                       .map(file -> {
-                           double similarity = calculateTextSimilarity(query, file.getContent());
-                           return new Object[]{file, similarity};
-                       })
-                       .filter(obj -> (Double) obj[1] > 0.1) // 提高相似度阈值
-                       .sorted((a, b) -> Double.compare((Double) b[1], (Double) a[1])) // 按相似度降序
-                       .limit(20) // 限制返回结果数量
-                       .map(obj -> (FileIndex) obj[0])
-                       .collect(Collectors.toList());
+                   ScoredDocs results = findLexicalCandidates(query, filter, fuzzy, offset, limit);
                    
                    logger.info("改进的文本搜索完成，找到 {} 个相关结果", results.size());
                    return results;
                    
                } catch (Exception e) {
                    logger.error("改进的文本搜索失败", e);
-                   return fileIndexMapper.searchByContent(query);
+                   return new ScoredDocs(1);
                }
            }
     
     /**
-     * 计算文本相似度（简化版语义搜索）
+     * 查找文本候选文件的当前页，按相关度排序
+     * 内存倒排索引就绪时使用BM25打分并只保留前 offset+limit 个，否则使用FTS5全文索引分页；
+     * 有过滤条件但过滤索引尚未就绪时也使用FTS5，由SQL处理过滤条件；模糊匹配只在内存倒排索引上进行。
+     * 布尔查询需要倒排索引和过滤索引都已就绪，否则只按其中的文本做全文检索
      */
-    private double calculateTextSimilarity(String query, String content) {
-        if (content == null || content.isEmpty()) {
-            return 0.0;
-        }
-        
-        String queryLower = query.toLowerCase();
-        String contentLower = content.toLowerCase();
-        
-        // 1. 完全匹配检查
-        if (contentLower.contains(queryLower)) {
-            return 1.0;
-        }
-        
-        // 2. 中文词汇匹配（对"利润情况分析"这样的查询更友好）
-        double chineseWordMatch = 0.0;
-        String[] chineseWords = {"利润", "情况", "分析", "财务", "收入", "支出", "成本", "收益", "亏损", "盈利"};
-        for (String word : chineseWords) {
-            if (queryLower.contains(word) && contentLower.contains(word)) {
-                chineseWordMatch += 0.2;
+    private ScoredDocs findLexicalCandidates(BooleanQuery query, SearchFilter filter, boolean fuzzy, int offset, int limit) {
+        if (textIndexService.isReady() && (!filter.isActive() || filter.docs != null)) {
+            if (!query.isStructured()) {
+                return textIndexService.search(query.getText(), offset, limit, filter.docs, fuzzy);
             }
-        }
-        
-        // 3. 关键词匹配度
-        String[] queryWords = queryLower.split("\\s+");
-        int matchCount = 0;
-        for (String word : queryWords) {
-            if (contentLower.contains(word)) {
-                matchCount++;
+            if (fileIndexService.isFilterIndexReady()) {
+                logger.debug("布尔查询: {}", query);
+                return textIndexService.search(query, offset, limit, filter.docs, fuzzy, fileIndexService.fieldResolver());
             }
         }
-        double wordMatchRatio = queryWords.length > 0 ? (double) matchCount / queryWords.length : 0.0;
-        
-        // 4. 字符级别相似度（对中文更友好）
-        int charMatchCount = 0;
-        for (char c : queryLower.toCharArray()) {
-            if (contentLower.indexOf(c) >= 0) {
-                charMatchCount++;
-            }
+        if (query.isStructured()) {
+            logger.info("索引尚未就绪，布尔查询只按其中的文本检索: {}", query.getText());
         }
-        double charMatchRatio = (double) charMatchCount / query.length();
-        
-        // 5. 部分匹配（检查查询词的子串）
-        double partialMatch = 0.0;
-        for (String word : queryWords) {
-            if (word.length() > 1) {
-                for (int i = 0; i < word.length() - 1; i++) {
-                    String substring = word.substring(i, i + 2);
-                    if (contentLower.contains(substring)) {
-                        partialMatch += 0.1;
-                    }
-                }
-            }
+        return findFullTextCandidates(query.getText(), filter, offset, limit);
+    }
+    
+    /**
+     * 按ID批量加载当前页的文件记录
+     */
+    private Map<Long, FileIndex> loadByIds(ScoredDocs ranked) {
+        Map<Long, FileIndex> byId = new HashMap<>();
+        if (ranked.size() == 0) {
+            return byId;
         }
         
-        // 6. 长度相似度
-        double lengthRatio = Math.min(query.length(), content.length()) / Math.max(query.length(), content.length());
-        
-        // 7. 语义相关词匹配（扩展词汇）
-        double semanticMatch = 0.0;
-        if (queryLower.contains("利润") || queryLower.contains("收益") || queryLower.contains("收入")) {
-            String[] profitWords = {"利润", "收益", "收入", "盈利", "赚钱", "赚钱", "收入", "营收"};
-            for (String word : profitWords) {
-                if (contentLower.contains(word)) {
-                    semanticMatch += 0.15;
-                }
-            }
+        List<Long> ids = new ArrayList<>(ranked.size());
+        for (int i = 0; i < ranked.size(); i++) {
+            ids.add((long) ranked.doc(i));
         }
-        
-        if (queryLower.contains("情况") || queryLower.contains("分析") || queryLower.contains("报告")) {
-            String[] analysisWords = {"情况", "分析", "报告", "总结", "概述", "说明", "描述"};
-            for (String word : analysisWords) {
-                if (contentLower.contains(word)) {
-                    semanticMatch += 0.1;
-                }
+        for (FileIndex file : fileIndexMapper.selectByIdsWithoutVectorData(ids)) {
+            byId.put(file.getId(), file);
+        }
+        return byId;
+    }
+    
+    /**
+     * 通过FTS5全文索引查找候选文件（bm25越小越相关，取相反数作为分数）
+     */
+    private ScoredDocs findFullTextCandidates(String query, SearchFilter filter, int offset, int limit) {
+        ScoredDocs results = new ScoredDocs(limit);
+        String match = buildFullTextQuery(query);
+        if (match == null) {
+            // trigram分词无法匹配少于3个字符的词，退化为子串匹配（无相关度，统一记为1分）
+            for (Long id : fileIndexMapper.searchIdsByKeyword(query.trim(), filter.fileType, filter.folderPrefix, offset, limit)) {
+                results.add(id.intValue(), 1f);
             }
+            return results;
         }
         
-        // 综合相似度计算
-        double totalSimilarity = wordMatchRatio * 0.3 + charMatchRatio * 0.2 + lengthRatio * 0.1 + 
-                                partialMatch * 0.15 + chineseWordMatch + semanticMatch * 0.25;
-        
-        return Math.min(totalSimilarity, 1.0);
+        for (FullTextHit hit : fileIndexMapper.searchFullText(match, filter.fileType, filter.folderPrefix, offset, limit)) {
+            results.add(hit.getId().intValue(), (float) -hit.getRank());
+        }
+        return results;
     }
     
-    
     /**
-     * 将byte数组转换为float数组
+     * 构建FTS5查询表达式，每个关键词作为短语并以OR连接；没有可用关键词时返回null
      */
-    private float[] bytesToFloats(byte[] bytes) {
-        if (bytes == null || bytes.length == 0) {
-            return null;
+    private String buildFullTextQuery(String query) {
+        StringBuilder match = new StringBuilder();
+        for (String word : query.trim().split("\\s+")) {
+            if (word.codePointCount(0, word.length()) < 3) {
+                continue;
+            }
+            if (match.length() > 0) {
+                match.append(" OR ");
+            }
+            match.append('"').append(word.replace("\"", "\"\"")).append('"');
         }
-        
-        float[] floats = new float[bytes.length / 4];
-        for (int i = 0; i < floats.length; i++) {
-            int intBits = ((bytes[i * 4] & 0xFF) << 24) |
-                         ((bytes[i * 4 + 1] & 0xFF) << 16) |
-                         ((bytes[i * 4 + 2] & 0xFF) << 8) |
-                         (bytes[i * 4 + 3] & 0xFF);
-            floats[i] = Float.intBitsToFloat(intBits);
-        }
-        return floats;
+        return match.length() > 0 ? match.toString() : null;
     }
     
     /**
-     * 记录搜索历史
+     * 记录搜索历史（异步批量写入）
      */
     private void recordSearchHistory(String query, int resultCount, String searchType) {
         try {
-            SearchHistory searchHistory = new SearchHistory();
-            searchHistory.setQueryText(query);
-            searchHistory.setResultCount(resultCount);
-            searchHistory.setSearchType(searchType);
-            searchHistory.setSearchTime(java.time.LocalDateTime.now().toString());
-            
-            searchHistoryMapper.insert(searchHistory);
-            
+            searchHistoryService.record(query, resultCount, searchType);
         } catch (Exception e) {
             logger.warn("记录搜索历史失败", e);
         }
@@ -369,11 +648,7 @@ public class SearchService {
      */
     public List<SearchHistory> getSearchHistory(int limit) {
         try {
-            return searchHistoryMapper.selectList(null)
-                .stream()
-                .sorted((a, b) -> b.getSearchTime().compareTo(a.getSearchTime()))
-                .limit(limit)
-                .collect(Collectors.toList());
+            return searchHistoryService.getRecent(limit);
         } catch (Exception e) {
             logger.error("获取搜索历史失败", e);
             return new ArrayList<>();
@@ -385,7 +660,7 @@ public class SearchService {
      */
     public boolean clearSearchHistory() {
         try {
-            searchHistoryMapper.delete(null);
+            searchHistoryService.clear();
             logger.info("搜索历史已清空");
             return true;
         } catch (Exception e) {
@@ -393,4 +668,74 @@ public class SearchService {
             return false;
         }
     }
+    
+    /**
+     * 缓存的一页搜索结果，权重按结果中字符串的字符数估算（每字符2字节）
+     */
+    private static final class CachedSearch {
+        private final List<SearchResult> results;
+        private final String searchMode;
+        private final String summaryTicket;
+        private final long weight;
+        
+        private CachedSearch(List<SearchResult> results, String searchMode, String summaryTicket) {
+            this.results = results;
+            this.searchMode = searchMode;
+            this.summaryTicket = summaryTicket;
+            long chars = 0;
+            for (SearchResult result : results) {
+                chars += length(result.getFilePath()) + length(result.getFileName()) + length(result.getContent())
+                    + length(result.getSummary()) + length(result.getHighlight()) + length(result.getAnalysisSummary());
+            }
+            this.weight = chars * 2 + results.size() * 64L;
+        }
+        
+        private static int length(String value) {
+            return value != null ? value.length() : 0;
+        }
+    }
+    
+    /**
+     * 一路检索的结果和耗时；结果为null表示该路不可用
+     */
+    private static final class LegResult {
+        private final ScoredDocs docs;
+        private final long millis;
+        
+        private LegResult(ScoredDocs docs, long millis) {
+            this.docs = docs;
+            this.millis = millis;
+        }
+        
+        private static LegResult timed(Supplier<ScoredDocs> leg) {
+            long start = System.nanoTime();
+            ScoredDocs docs = leg.get();
+            return new LegResult(docs, elapsedMillis(start));
+        }
+    }
+    
+    /**
+     * 检索过滤条件；docs为过滤索引给出的文件集合，过滤索引尚未就绪时为null
+     */
+    private static final class SearchFilter {
+        private final String fileType;
+        private final String folderPrefix;
+        private final DocIdSet docs;
+        private final boolean hasQueryFields;
+        
+        private SearchFilter(String fileType, String folderPrefix, DocIdSet docs, boolean hasQueryFields) {
+            this.fileType = fileType;
+            this.folderPrefix = folderPrefix;
+            this.docs = docs;
+            this.hasQueryFields = hasQueryFields;
+        }
+        
+        private boolean isActive() {
+            return fileType != null || folderPrefix != null || hasQueryFields;
+        }
+        
+        private boolean matchesNothing() {
+            return docs != null && docs.isEmpty();
+        }
+    }
 }
@@ -0,0 +1,105 @@
+package com.assistant.core.service;
+
+import com.assistant.core.index.ScoredDocs;
+import com.assistant.core.index.TopKCollector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分片并行检索服务
+ * 按文档ID区间把语料切分为若干分片，在独立的ForkJoinPool上并行打分，
+ * 每个分片保留局部Top-K，最后合并为全局结果。线程池与公共池隔离，不受索引任务影响。
+ */
+@Service
+public class ShardedSearchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardedSearchService.class);
+
+    /**
+     * 分片打分回调：对文档ID在 [docFrom, docTo) 范围内的文档打分并交给收集器
+     */
+    public interface ShardScorer {
+        void score(int docFrom, int docTo, TopKCollector collector);
+    }
+
+    @Value("${assistant.search.parallelism:0}")
+    private int parallelism;
+
+    @Value("${assistant.search.min-shard-size:4096}")
+    private int minShardSize;
+
+    private ForkJoinPool pool;
+
+    @PostConstruct
+    public void init() {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        pool = new ForkJoinPool(threads, p -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("search-worker-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+        logger.info("检索线程池已创建，并行度: {}", threads);
+    }
+
+    /**
+     * 分片检索，返回按分数降序排列的第 offset 到 offset+limit 个文档
+     *
+     * @param maxDocId 文档ID上界（不含）
+     */
+    public ScoredDocs search(int maxDocId, int offset, int limit, ShardScorer scorer) {
+        return collect(maxDocId, offset + limit, scorer).topDocs(offset);
+    }
+
+    /**
+     * 分片检索，返回合并后的全局Top-K收集器
+     */
+    public TopKCollector collect(int maxDocId, int k, ShardScorer scorer) {
+        int shards = Math.min(pool.getParallelism(), Math.max(1, maxDocId / Math.max(1, minShardSize)));
+        if (shards <= 1) {
+            // 语料较小时分片调度的开销大于收益，直接在当前线程打分
+            TopKCollector collector = new TopKCollector(k);
+            scorer.score(0, maxDocId, collector);
+            return collector;
+        }
+
+        int shardSize = (maxDocId + shards - 1) / shards;
+        List<ForkJoinTask<TopKCollector>> tasks = new ArrayList<>(shards);
+        for (int s = 0; s < shards; s++) {
+            int docFrom = s * shardSize;
+            int docTo = Math.min(maxDocId, docFrom + shardSize);
+            tasks.add(pool.submit(() -> {
+                TopKCollector collector = new TopKCollector(k);
+                scorer.score(docFrom, docTo, collector);
+                return collector;
+            }));
+        }
+
+        TopKCollector merged = new TopKCollector(k);
+        for (ForkJoinTask<TopKCollector> task : tasks) {
+            merged.merge(task.join());
+        }
+        return merged;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+        try {
+            pool.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.assistant.core.service;
+
+import com.assistant.core.entity.QueryFrequency;
+import com.assistant.core.index.PrefixSuggester;
+import com.assistant.core.mapper.SearchHistoryMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * 输入联想服务
+ * 联想词来自搜索历史和已索引的文件名，全部保存在内存前缀树中，联想时不访问数据库。
+ * 搜索历史在启动后从数据库汇总一次，之后随每次搜索增量更新；文件名由 {@link FileIndexService} 随索引维护。
+ */
+@Service
+public class SuggestService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SuggestService.class);
+
+    @Autowired
+    private SearchHistoryMapper searchHistoryMapper;
+
+    private final PrefixSuggester suggester = new PrefixSuggester();
+
+    /**
+     * 应用启动完成后在后台线程汇总搜索历史
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadHistoryOnStartup() {
+        Thread loader = new Thread(this::loadHistory, "suggest-history-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * 从数据库汇总搜索历史的查询次数
+     */
+    public void loadHistory() {
+        try {
+            long start = System.currentTimeMillis();
+            searchHistoryMapper.scanQueryFrequencies(context -> {
+                QueryFrequency frequency = context.getResultObject();
+                if (frequency.getFrequency() != null) {
+                    suggester.addQuery(frequency.getQueryText(), frequency.getFrequency());
+                }
+            });
+            logger.info("输入联想加载完成，词条数: {}, 耗时 {} ms", suggester.size(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            logger.error("加载输入联想失败", e);
+        }
+    }
+
+    /**
+     * 以prefix开头的联想词，按搜索次数和文件数降序
+     */
+    public List<String> suggest(String prefix, int limit) {
+        return suggester.suggest(prefix, Math.min(limit, PrefixSuggester.TOP_K));
+    }
+
+    /**
+     * 记录一次搜索
+     */
+    public void recordQuery(String query) {
+        suggester.addQuery(query, 1);
+    }
+
+    /**
+     * 清除搜索历史带来的联想词
+     */
+    public void clearQueries() {
+        suggester.clearQueries();
+    }
+
+    /**
+     * 添加或更新文件名
+     */
+    public void addFile(int docId, String fileName) {
+        suggester.addFile(docId, fileName);
+    }
+
+    /**
+     * 仅当文件不存在时添加（启动时批量构建用）
+     */
+    public void addFileIfAbsent(int docId, String fileName) {
+        suggester.addFileIfAbsent(docId, fileName);
+    }
+
+    public void removeFile(int docId) {
+        suggester.removeFile(docId);
+    }
+}
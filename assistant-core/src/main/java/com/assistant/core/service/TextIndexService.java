@@ -0,0 +1,225 @@
+package com.assistant.core.service;
+
+import com.assistant.core.entity.FileIndex;
+import com.assistant.core.index.BooleanQuery;
+import com.assistant.core.index.DocIdSet;
+import com.assistant.core.index.InvertedIndex;
+import com.assistant.core.index.ScoredDocs;
+import com.assistant.core.index.SnippetExtractor;
+import com.assistant.core.index.TextAnalyzer;
+import com.assistant.core.index.TextQuery;
+import com.assistant.core.index.TopKCollector;
+import com.assistant.core.mapper.FileIndexMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.Map;
+
+/**
+ * 文本索引服务
+ * 启动时从file_index构建常驻内存的倒排索引，并在文件索引变化时增量更新
+ */
+@Service
+public class TextIndexService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TextIndexService.class);
+
+    @Autowired
+    private FileIndexMapper fileIndexMapper;
+
+    @Autowired
+    private ShardedSearchService shardedSearchService;
+
+    @Value("${assistant.search.highlight.fragment-count:2}")
+    private int fragmentCount;
+
+    @Value("${assistant.search.highlight.fragment-length:120}")
+    private int fragmentLength;
+
+    private final TextAnalyzer analyzer = new TextAnalyzer();
+
+    private final InvertedIndex invertedIndex = new InvertedIndex(analyzer);
+
+    private SnippetExtractor snippetExtractor;
+
+    private volatile boolean ready = false;
+
+    @PostConstruct
+    public void initSnippetExtractor() {
+        snippetExtractor = new SnippetExtractor(analyzer, fragmentCount, fragmentLength);
+    }
+
+    /**
+     * 应用启动完成后在后台线程构建索引，构建期间搜索回退到全文检索表
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        Thread builder = new Thread(this::buildIndex, "text-index-builder");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    /**
+     * 从数据库构建倒排索引
+     */
+    public void buildIndex() {
+        try {
+            logger.info("开始构建内存倒排索引...");
+            long start = System.currentTimeMillis();
+
+            fileIndexMapper.scanAllWithoutVectorData(context -> {
+                FileIndex fileIndex = context.getResultObject();
+                invertedIndex.addDocumentIfAbsent(fileIndex.getId().intValue(), indexText(fileIndex));
+            });
+
+            ready = true;
+            logger.info("内存倒排索引构建完成，文档数: {}, 词数: {}, 耗时 {} ms",
+                       invertedIndex.getDocumentCount(), invertedIndex.getTermCount(),
+                       System.currentTimeMillis() - start);
+
+        } catch (Exception e) {
+            logger.error("构建内存倒排索引失败", e);
+        }
+    }
+
+    /**
+     * 添加或更新文档索引
+     */
+    public void indexDocument(FileIndex fileIndex) {
+        if (fileIndex == null || fileIndex.getId() == null) {
+            return;
+        }
+        try {
+            invertedIndex.addDocument(fileIndex.getId().intValue(), indexText(fileIndex));
+        } catch (Exception e) {
+            logger.warn("更新内存倒排索引失败: {}", fileIndex.getFilePath(), e);
+        }
+    }
+
+    /**
+     * 删除文档索引
+     */
+    public void removeDocument(Long fileId) {
+        if (fileId != null) {
+            invertedIndex.removeDocument(fileId.intValue());
+        }
+    }
+
+    /**
+     * BM25检索，按文档ID分片并行打分，返回按分数降序排列的第 offset 到 offset+limit 个文档
+     */
+    public ScoredDocs search(String query, int offset, int limit) {
+        return search(query, offset, limit, null);
+    }
+
+    /**
+     * 带过滤条件的BM25检索，只对过滤集合中的文档打分
+     *
+     * @param filter 允许的文档集合，null表示不过滤
+     */
+    public ScoredDocs search(String query, int offset, int limit, DocIdSet filter) {
+        return search(query, offset, limit, filter, false);
+    }
+
+    /**
+     * 可选模糊匹配的BM25检索：查询在分片前统一解析（模糊时扩展为拼写相近的词），各分片共用；
+     * 双引号短语和 NEAR/k 邻近约束按位置信息过滤
+     */
+    public ScoredDocs search(String query, int offset, int limit, DocIdSet filter, boolean fuzzy) {
+        TextQuery parsed = invertedIndex.parseQuery(query, fuzzy);
+        return shardedSearchService.search(invertedIndex.getMaxDocId(), offset, limit,
+            (docFrom, docTo, collector) -> invertedIndex.search(parsed, docFrom, docTo, filter, collector));
+    }
+
+    /**
+     * 布尔查询检索：各分片按同一语法树构造执行计划，命中的文档按全部正向文本子句的词打分
+     *
+     * @param resolver 字段条件的文档迭代器
+     */
+    public ScoredDocs search(BooleanQuery query, int offset, int limit, DocIdSet filter, boolean fuzzy,
+                             BooleanQuery.FieldResolver resolver) {
+        Map<String, Float> scoreTerms = invertedIndex.parseQuery(query.getText(), fuzzy).getTerms();
+        return shardedSearchService.search(invertedIndex.getMaxDocId(), offset, limit,
+            (docFrom, docTo, collector) -> invertedIndex.search(query, scoreTerms, fuzzy, resolver, docFrom, docTo, filter, collector));
+    }
+
+    /**
+     * 预览检索：只对查询词冠军表中的文档打分，返回前k个（完整检索结果的近似，耗时与语料规模无关）
+     */
+    public ScoredDocs preview(String query, int k, DocIdSet filter) {
+        TopKCollector collector = new TopKCollector(k);
+        invertedIndex.searchChampions(query, filter, collector);
+        return collector.topDocs(0);
+    }
+
+    /**
+     * 生成高亮摘要片段（已做HTML转义，命中词以 &lt;mark&gt; 标记），窗口按查询词IDF打分
+     */
+    public String highlight(String content, String query) {
+        return snippetExtractor.extract(content, query, invertedIndex::idf);
+    }
+
+    /**
+     * 解析查询（用于一次检索的多个结果共用同一份解析结果），索引未就绪时不做模糊扩展
+     */
+    public TextQuery parseQuery(String query, boolean fuzzy) {
+        return invertedIndex.parseQuery(query, fuzzy && ready);
+    }
+
+    /**
+     * 按索引中记录的命中偏移生成高亮摘要（模糊检索时高亮实际匹配的相近词），
+     * 文档不在索引中或正文已变化时退回扫描正文
+     */
+    public String highlight(FileIndex fileIndex, TextQuery parsed) {
+        int[] offsets = ready && fileIndex.getId() != null
+            ? invertedIndex.matchOffsets(fileIndex.getId().intValue(), parsed) : null;
+        if (offsets != null) {
+            String[] terms = parsed.getTerms().keySet().toArray(new String[0]);
+            float[] weights = new float[terms.length];
+            for (int t = 0; t < terms.length; t++) {
+                weights[t] = invertedIndex.idf(terms[t]);
+            }
+            int base = fileIndex.getFileName() != null ? fileIndex.getFileName().length() + 1 : 5;
+            String snippet = snippetExtractor.extract(fileIndex.getContent(), offsets, base, terms, weights);
+            if (snippet != null) {
+                return snippet;
+            }
+        }
+        return highlight(fileIndex.getContent(), String.join(" ", parsed.getTerms().keySet()));
+    }
+
+    /**
+     * 正文中一个区间开头的摘要片段（已做HTML转义），区间与正文对不上时返回null
+     */
+    public String fragment(String content, int start, int end) {
+        return snippetExtractor.fragment(content, start, end);
+    }
+
+    /**
+     * 索引是否已构建完成
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 已索引的文档数量
+     */
+    public int getDocumentCount() {
+        return invertedIndex.getDocumentCount();
+    }
+
+    /**
+     * 参与索引的文本：文件名和正文
+     */
+    private String indexText(FileIndex fileIndex) {
+        String content = fileIndex.getContent();
+        return fileIndex.getFileName() + "\n" + (content != null ? content : "");
+    }
+}
@@ -0,0 +1,831 @@
+package com.assistant.core.service;
+
+import com.assistant.core.entity.FileChunk;
+import com.assistant.core.index.DocIdSet;
+import com.assistant.core.index.HnswIndex;
+import com.assistant.core.index.PassageSplitter;
+import com.assistant.core.index.QuantizedVectors;
+import com.assistant.core.index.ScalarQuantizer;
+import com.assistant.core.index.ScoredDocs;
+import com.assistant.core.index.TopKCollector;
+import com.assistant.core.index.VectorStore;
+import com.assistant.core.mapper.FileChunkMapper;
+import com.assistant.core.mapper.FileIndexMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 向量索引服务
+ * 文件正文切分为相互重叠的段落，每段一个归一化向量，保存在内存映射的向量存储文件中
+ * （assistant.storage.index-dir/passages.f32，位置即 file_chunk.id），段落所属文件和在正文中的偏移记录在file_chunk表，
+ * 启动时加载到内存，检索时不再查询数据库。
+ * 在其之上维护HNSW图做近似最近邻检索；图文件持久化在同一目录下，启动时加载，
+ * 与向量存储不一致或文件损坏时从向量存储重建。图未就绪时退化为顺序扫描。
+ * 开启 assistant.vector.quantization.enabled 后改用常驻内存的int8量化向量做整数内积扫描，
+ * 再用向量存储中的原始浮点向量对前若干候选重排序，不再构建HNSW图。
+ * 检索按文件聚合，文件得分为其段落的最高相似度：近似检索先取若干倍于所需文件数的段落，
+ * 聚合后文件不足时加倍重取；过滤检索和顺序扫描直接逐个文件计算其段落的最高相似度。
+ * 文件重新向量化时优先沿用其原有的段落ID区间，删除释放的区间记入空闲表供后续分配；
+ * 启动时空闲ID占比过高则把段落重新连续编号并截短向量存储文件。
+ */
+@Service
+public class VectorIndexService {
+
+    private static final Logger logger = LoggerFactory.getLogger(VectorIndexService.class);
+
+    private static final String INDEX_FILE_NAME = "passages.hnsw";
+    private static final String VECTOR_FILE_NAME = "passages.f32";
+
+    /**
+     * 旧版本按文件保存的整篇向量和图文件
+     */
+    private static final String LEGACY_INDEX_FILE_NAME = "hnsw.idx";
+    private static final String LEGACY_VECTOR_FILE_NAME = "vectors.f32";
+
+    /**
+     * 压缩期间存在的标记文件，启动时仍存在说明上次压缩中断，段落ID与向量位置可能不一致
+     */
+    private static final String COMPACT_MARKER_NAME = "passages.compacting";
+
+    /**
+     * 空闲段落ID占比超过该值时在启动时压缩；HNSW已删除节点占比超过该值时重建图
+     */
+    private static final double COMPACT_FREE_RATIO = 0.25;
+
+    /**
+     * 段落ID上界小于该值时不压缩
+     */
+    private static final int COMPACT_MIN_PASSAGES = 1024;
+
+    /**
+     * 近似检索时候选段落数相对所需文件数的倍数
+     */
+    private static final int PASSAGE_OVERSAMPLING = 4;
+
+    /**
+     * 段落记录每批写入的条数（SQLite单条语句的参数个数有限）
+     */
+    private static final int INSERT_BATCH_SIZE = 100;
+
+    @Autowired
+    private FileIndexMapper fileIndexMapper;
+
+    @Autowired
+    private FileChunkMapper fileChunkMapper;
+
+    @Autowired
+    private ShardedSearchService shardedSearchService;
+
+    @Value("${assistant.storage.index-dir:${user.home}/.file-assistant/index}")
+    private String indexDir;
+
+    @Value("${assistant.ai.embedding-dimension:384}")
+    private int dimension;
+
+    @Value("${assistant.vector.hnsw.m:16}")
+    private int m;
+
+    @Value("${assistant.vector.hnsw.ef-construction:100}")
+    private int efConstruction;
+
+    @Value("${assistant.vector.hnsw.ef-search:64}")
+    private int efSearch;
+
+    @Value("${assistant.vector.quantization.enabled:false}")
+    private boolean quantizationEnabled;
+
+    @Value("${assistant.vector.quantization.rerank-multiplier:4}")
+    private int rerankMultiplier;
+
+    private volatile VectorStore vectorStore;
+    private volatile QuantizedVectors quantizedVectors;
+    private volatile HnswIndex hnswIndex;
+    private volatile boolean ready = false;
+    private volatile boolean dirty = false;
+
+    /**
+     * 段落ID到文件ID的映射，空位为-1
+     */
+    private volatile int[] passageFiles = new int[0];
+    /**
+     * 段落在正文中的字符区间，段落i为 [passageOffsets[2i], passageOffsets[2i+1])
+     */
+    private volatile int[] passageOffsets = new int[0];
+    /**
+     * 文件ID到其段落ID区间 {起始ID, 段落数}（同一文件的段落ID连续分配）
+     */
+    private final Map<Integer, int[]> filePassages = new ConcurrentHashMap<>();
+    private volatile int maxFileId;
+    private int nextPassageId;
+    /**
+     * 空闲的段落ID区间：起始ID到长度，相邻区间合并，紧邻nextPassageId的区间直接收回
+     */
+    private final TreeMap<Integer, Integer> freePassages = new TreeMap<>();
+    private volatile boolean passagesLoaded = false;
+
+    /**
+     * 打开向量存储文件，维度与配置不一致时重新创建
+     */
+    @PostConstruct
+    public void openStore() {
+        Path vectorFile = Paths.get(indexDir, VECTOR_FILE_NAME);
+        try {
+            Files.createDirectories(vectorFile.getParent());
+            if (Files.deleteIfExists(Paths.get(indexDir, LEGACY_VECTOR_FILE_NAME))) {
+                logger.info("已删除旧版本的整篇文件向量，文件将在下次索引时按段落重新向量化");
+            }
+            Files.deleteIfExists(Paths.get(indexDir, LEGACY_INDEX_FILE_NAME));
+            if (Files.exists(Paths.get(indexDir, COMPACT_MARKER_NAME))) {
+                // 上次压缩中断：丢弃段落和向量，文件在下次索引时重新向量化（推理结果有持久化缓存）
+                logger.warn("上次段落压缩未完成，丢弃段落向量，文件将在下次索引时重新向量化");
+                fileChunkMapper.deleteAll();
+                Files.deleteIfExists(vectorFile);
+                Files.deleteIfExists(getIndexFile());
+                Files.delete(Paths.get(indexDir, COMPACT_MARKER_NAME));
+            }
+            try {
+                vectorStore = VectorStore.open(vectorFile, dimension);
+            } catch (IOException e) {
+                logger.warn("向量存储文件不可用，重新创建: {}", e.getMessage());
+                Files.deleteIfExists(vectorFile);
+                Files.deleteIfExists(getIndexFile());
+                vectorStore = VectorStore.open(vectorFile, dimension);
+            }
+            logger.info("向量存储已打开: {}, 向量数: {}", vectorFile, vectorStore.size());
+        } catch (Exception e) {
+            logger.error("打开向量存储失败，语义搜索不可用", e);
+        }
+    }
+
+    /**
+     * 应用启动完成后在后台线程加载或重建索引
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        Thread loader = new Thread(this::loadIndex, "vector-index-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * 加载段落映射后加载HNSW图，失败或与向量存储不一致时重建
+     */
+    public synchronized void loadIndex() {
+        if (vectorStore == null) {
+            return;
+        }
+        discardBlobVectors();
+        loadPassages();
+
+        if (quantizationEnabled) {
+            buildQuantizedVectors();
+            return;
+        }
+
+        Path indexFile = getIndexFile();
+        try {
+            if (Files.exists(indexFile)) {
+                long start = System.currentTimeMillis();
+                HnswIndex loaded = HnswIndex.load(indexFile, vectorStore, m, efConstruction);
+                int nodes = loaded.size() + loaded.getDeletedCount();
+                if (loaded.size() == vectorStore.size() && loaded.getDeletedCount() <= nodes * COMPACT_FREE_RATIO) {
+                    hnswIndex = loaded;
+                    ready = true;
+                    logger.info("HNSW向量索引加载完成，向量数: {}, 耗时 {} ms",
+                               loaded.size(), System.currentTimeMillis() - start);
+                    return;
+                }
+                logger.info("HNSW向量索引需要重建（索引向量 {}，存储向量 {}，已删除节点 {}）",
+                           loaded.size(), vectorStore.size(), loaded.getDeletedCount());
+            }
+        } catch (Exception e) {
+            logger.warn("加载HNSW向量索引失败，开始重建: {}", e.getMessage());
+        }
+        rebuildIndex();
+    }
+
+    /**
+     * 旧版本以BLOB保存在file_index.vector_data中的是整篇文件的向量，不能作为段落向量使用，直接清空该列；
+     * 这些文件在下次索引时按段落重新向量化
+     */
+    private void discardBlobVectors() {
+        try {
+            if (fileIndexMapper.countVectors() == 0) {
+                return;
+            }
+            fileIndexMapper.clearVectorData();
+            logger.info("已清空数据库中旧版本的整篇文件向量，文件将在下次索引时按段落重新向量化");
+        } catch (Exception e) {
+            logger.error("清空旧版本向量数据失败", e);
+        }
+    }
+
+    /**
+     * 从file_chunk表加载段落与文件的对应关系和段落区间，并删除向量存储中没有段落记录的向量
+     */
+    private synchronized void loadPassages() {
+        if (passagesLoaded) {
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            int[] count = new int[1];
+            fileChunkMapper.scanPassages(context -> {
+                FileChunk chunk = context.getResultObject();
+                int id = chunk.getId().intValue();
+                int fileId = chunk.getFileId().intValue();
+                setPassage(id, fileId, chunk.getStartOffset(), chunk.getEndOffset());
+                int[] range = filePassages.get(fileId);
+                if (range != null && range[0] + range[1] == id) {
+                    range[1]++;
+                } else {
+                    filePassages.put(fileId, new int[]{id, 1});
+                }
+                maxFileId = Math.max(maxFileId, fileId + 1);
+                nextPassageId = Math.max(nextPassageId, id + 1);
+                count[0]++;
+            });
+
+            int orphans = 0;
+            if (vectorStore != null) {
+                for (int id : vectorStore.ids()) {
+                    if (fileOf(id) < 0) {
+                        vectorStore.remove(id);
+                        orphans++;
+                    }
+                }
+            }
+            if (orphans > 0) {
+                dirty = true;
+                logger.info("删除没有段落记录的向量 {} 个", orphans);
+            }
+
+            // 段落ID之间的空位记入空闲表，空位过多时重新编号
+            freePassages.clear();
+            int free = 0;
+            for (int id = 0; id < nextPassageId; id++) {
+                if (fileOf(id) < 0) {
+                    int end = id;
+                    while (end < nextPassageId && fileOf(end) < 0) {
+                        end++;
+                    }
+                    freePassages.put(id, end - id);
+                    free += end - id;
+                    id = end;
+                }
+            }
+            if (nextPassageId >= COMPACT_MIN_PASSAGES && free > nextPassageId * COMPACT_FREE_RATIO) {
+                compactPassages(count[0]);
+            }
+            passagesLoaded = true;
+            logger.info("段落映射加载完成，文件数: {}, 段落数: {}, 耗时 {} ms",
+                       filePassages.size(), count[0], System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            logger.error("加载段落映射失败", e);
+        }
+    }
+
+    /**
+     * 把段落按原ID顺序重新编号为 0..live-1：向量在存储中前移（新ID不大于原ID，按升序移动不会覆盖未移动的向量），
+     * 截短向量存储文件，再改写file_chunk中的ID，最后删除HNSW图文件使其按新ID重建。
+     * 期间存在标记文件，中断后下次启动时丢弃段落向量
+     */
+    private void compactPassages(int live) {
+        long start = System.currentTimeMillis();
+        int previous = nextPassageId;
+        Path marker = Paths.get(indexDir, COMPACT_MARKER_NAME);
+        try {
+            Files.write(marker, new byte[0]);
+            int[] files = new int[Math.max(16, live)];
+            int[] offsets = new int[files.length * 2];
+            Map<Integer, int[]> ranges = new HashMap<>();
+            float[] buffer = new float[dimension];
+            int next = 0;
+            for (int id = 0; id < nextPassageId; id++) {
+                int fileId = fileOf(id);
+                if (fileId < 0) {
+                    continue;
+                }
+                if (next != id) {
+                    vectorStore.get(id, buffer);
+                    vectorStore.put(next, buffer);
+                    vectorStore.remove(id);
+                }
+                files[next] = fileId;
+                offsets[2 * next] = passageOffsets[2 * id];
+                offsets[2 * next + 1] = passageOffsets[2 * id + 1];
+                int[] range = ranges.get(fileId);
+                if (range == null) {
+                    ranges.put(fileId, new int[]{next, 1});
+                } else {
+                    range[1]++;
+                }
+                next++;
+            }
+            vectorStore.force();
+            boolean truncated = vectorStore.truncate(next);
+
+            fileChunkMapper.renumberToNegative();
+            fileChunkMapper.restoreRenumbered();
+            Files.deleteIfExists(getIndexFile());
+            Files.delete(marker);
+
+            Arrays.fill(files, next, files.length, -1);
+            passageFiles = files;
+            passageOffsets = offsets;
+            filePassages.clear();
+            filePassages.putAll(ranges);
+            nextPassageId = next;
+            freePassages.clear();
+            dirty = true;
+            logger.info("段落ID压缩完成，段落数: {}, ID上界 {} -> {}{}, 耗时 {} ms", next, previous, next,
+                       truncated ? "" : "（向量存储文件未截短）", System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            // 标记文件保留，下次启动时丢弃段落向量
+            logger.error("段落ID压缩失败", e);
+        }
+    }
+
+    /**
+     * 分配count个连续的段落ID：preferred处的空闲区间足够时沿用（文件重新向量化时保持原位置），
+     * 否则取第一个足够长的空闲区间，都没有时从nextPassageId追加
+     */
+    private int allocatePassages(int count, int preferred) {
+        if (preferred >= 0) {
+            Map.Entry<Integer, Integer> around = freePassages.floorEntry(preferred);
+            if (around != null && around.getKey() + around.getValue() >= preferred + count) {
+                takeFree(around.getKey(), around.getValue(), preferred, count);
+                return preferred;
+            }
+        }
+        for (Map.Entry<Integer, Integer> entry : freePassages.entrySet()) {
+            if (entry.getValue() >= count) {
+                int first = entry.getKey();
+                takeFree(first, entry.getValue(), first, count);
+                return first;
+            }
+        }
+        int first = nextPassageId;
+        nextPassageId += count;
+        return first;
+    }
+
+    /**
+     * 从空闲区间 [start, start+length) 中取出 [from, from+count)
+     */
+    private void takeFree(int start, int length, int from, int count) {
+        freePassages.remove(start);
+        if (from > start) {
+            freePassages.put(start, from - start);
+        }
+        if (from + count < start + length) {
+            freePassages.put(from + count, start + length - from - count);
+        }
+    }
+
+    /**
+     * 归还段落ID区间，与相邻空闲区间合并；位于末尾时收回到nextPassageId
+     */
+    private void releasePassages(int first, int count) {
+        int start = first;
+        int end = first + count;
+        Map.Entry<Integer, Integer> before = freePassages.floorEntry(start);
+        if (before != null && before.getKey() + before.getValue() == start) {
+            start = before.getKey();
+            freePassages.remove(start);
+        }
+        Integer after = freePassages.get(end);
+        if (after != null) {
+            freePassages.remove(end);
+            end += after;
+        }
+        if (end >= nextPassageId) {
+            nextPassageId = start;
+        } else {
+            freePassages.put(start, end - start);
+        }
+    }
+
+    /**
+     * 从向量存储校准量化参数并构建int8量化向量
+     */
+    private void buildQuantizedVectors() {
+        try {
+            long start = System.currentTimeMillis();
+            ScalarQuantizer quantizer = ScalarQuantizer.calibrate(vectorStore);
+            quantizedVectors = QuantizedVectors.build(vectorStore, quantizer);
+            logger.info("int8量化向量构建完成，向量数: {}, 占用 {} KB（浮点向量 {} KB），耗时 {} ms",
+                       quantizedVectors.size(), quantizedVectors.getMemoryBytes() / 1024,
+                       (long) quantizedVectors.size() * dimension * 4 / 1024,
+                       System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            logger.error("构建int8量化向量失败，使用浮点向量扫描", e);
+        }
+    }
+
+    /**
+     * 从向量存储重建HNSW图
+     */
+    public synchronized void rebuildIndex() {
+        try {
+            logger.info("开始重建HNSW向量索引...");
+            long start = System.currentTimeMillis();
+
+            HnswIndex rebuilt = new HnswIndex(vectorStore, m, efConstruction);
+            for (int id : vectorStore.ids()) {
+                rebuilt.insert(id);
+            }
+
+            hnswIndex = rebuilt;
+            ready = true;
+            dirty = true;
+            saveIndex();
+            logger.info("HNSW向量索引重建完成，向量数: {}, 耗时 {} ms",
+                       rebuilt.size(), System.currentTimeMillis() - start);
+
+        } catch (Exception e) {
+            logger.error("重建HNSW向量索引失败", e);
+        }
+    }
+
+    /**
+     * 替换文件的段落及其向量，向量为null的段落不保存
+     *
+     * @param passages 段落在正文中的字符区间
+     * @param vectors  与段落一一对应的向量
+     */
+    public synchronized void addPassages(Long fileId, List<PassageSplitter.Passage> passages, List<float[]> vectors) {
+        if (fileId == null || vectorStore == null) {
+            return;
+        }
+        try {
+            loadPassages();
+            int[] previous = filePassages.get(fileId.intValue());
+            removePassages(fileId);
+
+            List<Integer> indexes = new ArrayList<>(passages.size());
+            List<float[]> normalized = new ArrayList<>(passages.size());
+            for (int i = 0; i < passages.size(); i++) {
+                float[] vector = vectors.get(i);
+                if (vector != null && vector.length == dimension) {
+                    indexes.add(i);
+                    normalized.add(HnswIndex.normalize(vector));
+                }
+            }
+            if (indexes.isEmpty()) {
+                return;
+            }
+            int first = allocatePassages(indexes.size(), previous != null ? previous[0] : -1);
+            List<FileChunk> chunks = new ArrayList<>(indexes.size());
+            for (int i = 0; i < indexes.size(); i++) {
+                PassageSplitter.Passage passage = passages.get(indexes.get(i));
+                chunks.add(new FileChunk((long) (first + i), fileId, indexes.get(i), passage.getStart(), passage.getEnd()));
+            }
+            for (int from = 0; from < chunks.size(); from += INSERT_BATCH_SIZE) {
+                fileChunkMapper.insertBatch(chunks.subList(from, Math.min(from + INSERT_BATCH_SIZE, chunks.size())));
+            }
+
+            for (int i = 0; i < chunks.size(); i++) {
+                int id = first + i;
+                setPassage(id, fileId.intValue(), chunks.get(i).getStartOffset(), chunks.get(i).getEndOffset());
+                vectorStore.put(id, normalized.get(i));
+                if (quantizedVectors != null) {
+                    quantizedVectors.put(id, normalized.get(i));
+                }
+                if (hnswIndex != null) {
+                    hnswIndex.insert(id);
+                }
+            }
+            filePassages.put(fileId.intValue(), new int[]{first, chunks.size()});
+            maxFileId = Math.max(maxFileId, fileId.intValue() + 1);
+            dirty = true;
+            rebuildIfStale();
+        } catch (Exception e) {
+            logger.warn("更新向量索引失败: {}", fileId, e);
+        }
+    }
+
+    /**
+     * 删除文件的全部段落及其向量
+     */
+    public synchronized void removePassages(Long fileId) {
+        if (fileId == null || vectorStore == null) {
+            return;
+        }
+        loadPassages();
+        int[] range = filePassages.remove(fileId.intValue());
+        if (range == null) {
+            return;
+        }
+        for (int id = range[0]; id < range[0] + range[1]; id++) {
+            if (hnswIndex != null) {
+                hnswIndex.remove(id);
+            }
+            if (quantizedVectors != null) {
+                quantizedVectors.remove(id);
+            }
+            if (vectorStore.contains(id)) {
+                vectorStore.remove(id);
+            }
+            setPassage(id, -1, 0, 0);
+        }
+        fileChunkMapper.deleteByFileId(fileId);
+        releasePassages(range[0], range[1]);
+        dirty = true;
+    }
+
+    /**
+     * 是否已保存该文件的段落向量
+     */
+    public boolean hasPassages(Long fileId) {
+        if (fileId == null || vectorStore == null) {
+            return false;
+        }
+        if (!passagesLoaded) {
+            loadPassages();
+        }
+        return filePassages.containsKey(fileId.intValue());
+    }
+
+    /**
+     * 文件中与查询最相似的段落（ID和字符区间取自内存，不查询数据库），文件没有段落时返回null
+     */
+    public FileChunk bestPassage(float[] queryVector, Long fileId) {
+        VectorStore store = vectorStore;
+        int[] range = fileId != null ? filePassages.get(fileId.intValue()) : null;
+        if (store == null || range == null || queryVector == null || queryVector.length != dimension) {
+            return null;
+        }
+        float[] normalized = HnswIndex.normalize(queryVector);
+        int best = -1;
+        float bestScore = Float.NEGATIVE_INFINITY;
+        for (int id = range[0]; id < range[0] + range[1]; id++) {
+            if (store.contains(id)) {
+                float score = store.dot(id, normalized);
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = id;
+                }
+            }
+        }
+        if (best < 0) {
+            return null;
+        }
+        int[] offsets = passageOffsets;
+        if (2 * best + 1 >= offsets.length) {
+            return null;
+        }
+        return new FileChunk((long) best, fileId, null, offsets[2 * best], offsets[2 * best + 1]);
+    }
+
+    /**
+     * 检索最相似的k个文件；HNSW图未就绪时顺序扫描
+     */
+    public ScoredDocs search(float[] queryVector, int k) {
+        if (quantizedVectors == null && !ready) {
+            return searchExact(queryVector, k);
+        }
+        VectorStore store = vectorStore;
+        if (store == null || queryVector == null || queryVector.length != dimension || k <= 0) {
+            return new ScoredDocs(1);
+        }
+
+        // 取若干倍的候选段落按文件聚合，文件数不足且还有更多段落时加倍重取
+        int total = store.size();
+        int candidates = Math.min(total, k * PASSAGE_OVERSAMPLING);
+        while (true) {
+            ScoredDocs passages = quantizedVectors != null
+                ? searchQuantized(queryVector, candidates)
+                : hnswIndex.search(queryVector, candidates, Math.max(efSearch, candidates));
+            ScoredDocs files = aggregate(passages, k);
+            if (files.size() >= k || passages.size() < candidates || candidates >= total) {
+                return files;
+            }
+            candidates = Math.min(total, candidates * PASSAGE_OVERSAMPLING);
+        }
+    }
+
+    /**
+     * 把段落结果按文件聚合，文件得分取其段落的最高分
+     */
+    private ScoredDocs aggregate(ScoredDocs passages, int k) {
+        Map<Integer, Float> best = new HashMap<>();
+        for (int i = 0; i < passages.size(); i++) {
+            int fileId = fileOf(passages.doc(i));
+            if (fileId >= 0) {
+                best.merge(fileId, passages.score(i), Math::max);
+            }
+        }
+        TopKCollector collector = new TopKCollector(k);
+        for (Map.Entry<Integer, Float> entry : best.entrySet()) {
+            collector.collect(entry.getKey(), entry.getValue());
+        }
+        return collector.topDocs(0);
+    }
+
+    /**
+     * 分页检索：返回按相似度降序排列的第 offset 到 offset+limit 个文件
+     */
+    public ScoredDocs search(float[] queryVector, int offset, int limit) {
+        ScoredDocs top = search(queryVector, offset + limit);
+        ScoredDocs page = new ScoredDocs(limit);
+        for (int i = offset; i < top.size(); i++) {
+            page.add(top.doc(i), top.score(i));
+        }
+        return page;
+    }
+
+    /**
+     * 带过滤条件的分页检索：只对过滤集合中文件的段落计算相似度（精确内积），开销与过滤集合的段落数成正比
+     *
+     * @param filter 允许的文件集合，null表示不过滤
+     */
+    public ScoredDocs search(float[] queryVector, int offset, int limit, DocIdSet filter) {
+        if (filter == null) {
+            return search(queryVector, offset, limit);
+        }
+        VectorStore store = vectorStore;
+        if (store == null || queryVector == null || queryVector.length != dimension || limit <= 0) {
+            return new ScoredDocs(1);
+        }
+        float[] normalized = HnswIndex.normalize(queryVector);
+        return shardedSearchService.search(maxFileId, offset, limit, (idFrom, idTo, collector) -> {
+            for (int id = filter.nextDoc(idFrom); id < idTo; id = filter.nextDoc(id + 1)) {
+                scoreFile(store, id, normalized, collector);
+            }
+        });
+    }
+
+    /**
+     * 按文件ID分片并行，逐个文件计算其段落的最高相似度做精确检索
+     */
+    public ScoredDocs searchExact(float[] queryVector, int k) {
+        VectorStore store = vectorStore;
+        if (store == null || queryVector == null || queryVector.length != dimension || k <= 0) {
+            return new ScoredDocs(1);
+        }
+        float[] normalized = HnswIndex.normalize(queryVector);
+        return shardedSearchService.search(maxFileId, 0, k, (idFrom, idTo, collector) -> {
+            for (int id = idFrom; id < idTo; id++) {
+                scoreFile(store, id, normalized, collector);
+            }
+        });
+    }
+
+    /**
+     * 文件得分为其段落与查询的最高相似度，没有段落的文件不收集
+     */
+    private void scoreFile(VectorStore store, int fileId, float[] normalized, TopKCollector collector) {
+        int[] range = filePassages.get(fileId);
+        if (range == null) {
+            return;
+        }
+        float best = Float.NEGATIVE_INFINITY;
+        for (int id = range[0]; id < range[0] + range[1]; id++) {
+            if (store.contains(id)) {
+                best = Math.max(best, store.dot(id, normalized));
+            }
+        }
+        if (best > Float.NEGATIVE_INFINITY) {
+            collector.collect(fileId, best);
+        }
+    }
+
+    /**
+     * int8整数内积扫描取前 k × rerank-multiplier 个候选段落，再用原始浮点向量重排序
+     */
+    private ScoredDocs searchQuantized(float[] queryVector, int k) {
+        QuantizedVectors quantized = quantizedVectors;
+        if (quantized == null || queryVector == null || queryVector.length != dimension || k <= 0) {
+            return new ScoredDocs(1);
+        }
+        float[] normalized = HnswIndex.normalize(queryVector);
+        ScalarQuantizer.QuantizedQuery query = quantized.getQuantizer().prepareQuery(normalized);
+
+        // 各分片并行做整数内积扫描，合并出全局候选
+        int candidateCount = k * Math.max(1, rerankMultiplier);
+        ScoredDocs candidates = shardedSearchService.search(quantized.maxId(), 0, candidateCount,
+            (idFrom, idTo, collector) -> quantized.scan(query, idFrom, idTo, collector::collect));
+
+        TopKCollector best = new TopKCollector(k);
+        for (int i = 0; i < candidates.size(); i++) {
+            best.collect(candidates.doc(i), vectorStore.dot(candidates.doc(i), normalized));
+        }
+        return best.topDocs(0);
+    }
+
+    /**
+     * HNSW图中已删除节点占比过高时重建：段落ID被重新分配后，旧节点的连接是按原向量建立的，
+     * 遍历时却按新向量计算相似度，留在图中会降低召回，且每次重新向量化都会增加节点
+     *
+     * @return 是否已重建
+     */
+    private boolean rebuildIfStale() {
+        HnswIndex index = hnswIndex;
+        if (index == null) {
+            return false;
+        }
+        int deletedCount = index.getDeletedCount();
+        if (deletedCount <= (index.size() + deletedCount) * COMPACT_FREE_RATIO) {
+            return false;
+        }
+        logger.info("HNSW向量索引已删除节点过多（{} / {}），重建索引", deletedCount, index.size() + deletedCount);
+        rebuildIndex();
+        return true;
+    }
+
+    /**
+     * 有变更时刷新向量存储并持久化HNSW图，已删除节点过多时先重建
+     */
+    public synchronized void saveIndex() {
+        if (!dirty || vectorStore == null) {
+            return;
+        }
+        if (rebuildIfStale()) {
+            return;
+        }
+        try {
+            vectorStore.force();
+            if (hnswIndex != null) {
+                Path indexFile = getIndexFile();
+                Files.createDirectories(indexFile.getParent());
+                hnswIndex.save(indexFile);
+                logger.debug("HNSW向量索引已保存: {}", indexFile);
+            }
+            dirty = false;
+        } catch (Exception e) {
+            logger.error("保存HNSW向量索引失败", e);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        saveIndex();
+        if (vectorStore != null) {
+            try {
+                vectorStore.close();
+            } catch (IOException e) {
+                logger.warn("关闭向量存储失败", e);
+            }
+        }
+    }
+
+    /**
+     * 索引是否可用（向量存储已打开即可检索，HNSW图就绪前使用顺序扫描）
+     */
+    public boolean isReady() {
+        return vectorStore != null;
+    }
+
+    /**
+     * 已保存的段落向量数量
+     */
+    public int size() {
+        return vectorStore != null ? vectorStore.size() : 0;
+    }
+
+    private int fileOf(int passageId) {
+        int[] files = passageFiles;
+        return passageId >= 0 && passageId < files.length ? files[passageId] : -1;
+    }
+
+    private void setPassage(int passageId, int fileId, int start, int end) {
+        int[] files = passageFiles;
+        int[] offsets = passageOffsets;
+        if (passageId >= files.length) {
+            int capacity = Math.max(passageId + 1, files.length * 2);
+            files = Arrays.copyOf(files, capacity);
+            Arrays.fill(files, passageFiles.length, capacity, -1);
+            offsets = Arrays.copyOf(offsets, capacity * 2);
+        }
+        // 先写区间再发布文件ID，读到文件ID的线程能看到区间
+        offsets[2 * passageId] = start;
+        offsets[2 * passageId + 1] = end;
+        files[passageId] = fileId;
+        passageOffsets = offsets;
+        passageFiles = files;
+    }
+
+    private Path getIndexFile() {
+        return Paths.get(indexDir, INDEX_FILE_NAME);
+    }
+}
@@ -25,6 +25,35 @@ CREATE TABLE IF NOT EXISTS file_index (
     vector_data BLOB
 );
 
+-- 文件索引全文检索表（FTS5外部内容表，trigram分词以支持中文子串匹配）
+CREATE VIRTUAL TABLE IF NOT EXISTS file_index_fts USING fts5(
+    file_name,
+    content,
+    summary,
+    content='file_index',
+    content_rowid='id',
+    tokenize='trigram'
+);
+
+-- 文件段落表（正文切分为相互重叠的段落，每段一个向量，ID即向量存储中的位置）
+CREATE TABLE IF NOT EXISTS file_chunk (
+    id INTEGER PRIMARY KEY,
+    file_id INTEGER NOT NULL REFERENCES file_index(id),
+    chunk_index INTEGER NOT NULL,
+    start_offset INTEGER NOT NULL,
+    end_offset INTEGER NOT NULL
+);
+
+-- 持久化向量缓存（按模型标识和规范化输入的SHA-256摘要存储，未变化的内容重新索引时不再推理）
+-- last_used为最近写入或命中的时间（秒），条数超过上限时删除最久未使用的向量
+CREATE TABLE IF NOT EXISTS embedding_cache (
+    model_id TEXT NOT NULL,
+    digest BLOB NOT NULL,
+    vector BLOB NOT NULL,
+    last_used INTEGER NOT NULL DEFAULT 0,
+    PRIMARY KEY (model_id, digest)
+) WITHOUT ROWID;
+
 -- 搜索历史表
 CREATE TABLE IF NOT EXISTS search_history (
     id INTEGER PRIMARY KEY AUTOINCREMENT,
@@ -48,9 +77,23 @@ CREATE TABLE IF NOT EXISTS user_config (
 CREATE INDEX IF NOT EXISTS idx_file_index_path ON file_index(file_path);
 CREATE INDEX IF NOT EXISTS idx_file_index_type ON file_index(file_type);
 CREATE INDEX IF NOT EXISTS idx_file_index_folder ON file_index(folder_id);
+CREATE INDEX IF NOT EXISTS idx_file_chunk_file ON file_chunk(file_id);
+CREATE INDEX IF NOT EXISTS idx_embedding_cache_last_used ON embedding_cache(model_id, last_used);
 CREATE INDEX IF NOT EXISTS idx_search_history_time ON search_history(search_time);
 CREATE INDEX IF NOT EXISTS idx_user_config_key ON user_config(config_key);
 
+-- 全文检索表同步触发器
+CREATE TRIGGER IF NOT EXISTS file_index_fts_ai AFTER INSERT ON file_index BEGIN
+    INSERT INTO file_index_fts(rowid, file_name, content, summary) VALUES (new.id, new.file_name, new.content, new.summary);
+END;
+CREATE TRIGGER IF NOT EXISTS file_index_fts_ad AFTER DELETE ON file_index BEGIN
+    INSERT INTO file_index_fts(file_index_fts, rowid, file_name, content, summary) VALUES ('delete', old.id, old.file_name, old.content, old.summary);
+END;
+CREATE TRIGGER IF NOT EXISTS file_index_fts_au AFTER UPDATE OF file_name, content, summary ON file_index BEGIN
+    INSERT INTO file_index_fts(file_index_fts, rowid, file_name, content, summary) VALUES ('delete', old.id, old.file_name, old.content, old.summary);
+    INSERT INTO file_index_fts(rowid, file_name, content, summary) VALUES (new.id, new.file_name, new.content, new.summary);
+END;
+
 -- 插入默认配置
 INSERT OR IGNORE INTO user_config (config_key, config_value, config_type) VALUES 
 ('max_file_size', '52428800', 'integer'),
@@ -1,19 +1,49 @@
 package com.assistant.web.controller;
 
+import com.assistant.common.constants.AssistantConstants;
+import com.assistant.common.dto.AnalysisSummary;
 import com.assistant.common.dto.BaseResponse;
+import com.assistant.common.dto.SearchMeta;
 import com.assistant.common.dto.SearchRequest;
 import com.assistant.common.dto.SearchResult;
 import com.assistant.core.entity.WatchFolder;
+import com.assistant.core.service.AIEmbeddingService;
+import com.assistant.core.service.AnalysisSummaryService;
 import com.assistant.core.service.FileIndexService;
 import com.assistant.core.service.SearchService;
+import com.assistant.core.service.SuggestService;
 import com.assistant.core.service.WatchFolderService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.validation.Valid;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 助手API控制器
@@ -25,6 +55,16 @@ public class AssistantController {
     
     private static final Logger logger = LoggerFactory.getLogger(AssistantController.class);
     
+    /**
+     * 正文分段读取时每次从数据库读取的字节数
+     */
+    private static final int CONTENT_CHUNK_SIZE = 64 * 1024;
+    
+    /**
+     * 流式搜索连接超时在总结最长等待时间之外额外留出的时间
+     */
+    private static final long STREAM_TIMEOUT_MARGIN_MS = 60000L;
+    
     @Autowired
     private WatchFolderService watchFolderService;
     
@@ -34,6 +74,60 @@ public class AssistantController {
     @Autowired
     private SearchService searchService;
     
+    @Autowired
+    private AnalysisSummaryService analysisSummaryService;
+    
+    @Autowired
+    private SuggestService suggestService;
+    
+    @Autowired
+    private AIEmbeddingService aiEmbeddingService;
+    
+    @Value("${assistant.search.summary.max-wait-ms:30000}")
+    private long summaryMaxWaitMs;
+    
+    @Value("${assistant.search.stream.threads:4}")
+    private int streamThreads;
+    
+    @Value("${assistant.search.stream.queue-capacity:64}")
+    private int streamQueueCapacity;
+    
+    /**
+     * 流式搜索执行预览和检索的线程池（有界队列，满时拒绝新的流式搜索），等待总结时不占用线程
+     */
+    private ExecutorService streamExecutor;
+    
+    /**
+     * 流式搜索等待总结超时后发送当前状态的定时器
+     */
+    private ScheduledExecutorService streamTimer;
+    
+    @PostConstruct
+    public void initStreamExecutor() {
+        int threads = Math.max(1, streamThreads);
+        AtomicInteger counter = new AtomicInteger();
+        streamExecutor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(Math.max(1, streamQueueCapacity)), r -> {
+                Thread thread = new Thread(r, "search-stream-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.AbortPolicy());
+        ((ThreadPoolExecutor) streamExecutor).allowCoreThreadTimeOut(true);
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "search-stream-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+        streamTimer = timer;
+    }
+    
+    @PreDestroy
+    public void shutdownStreamExecutor() {
+        streamExecutor.shutdownNow();
+        streamTimer.shutdownNow();
+    }
+    
     /**
      * 添加监控文件夹
      */
@@ -105,14 +199,212 @@ public class AssistantController {
     @PostMapping("/search")
     public BaseResponse<List<SearchResult>> searchFiles(@Valid @RequestBody SearchRequest request) {
         try {
-            List<SearchResult> results = searchService.searchFiles(request);
-            return BaseResponse.success("搜索完成", results);
+            SearchMeta meta = new SearchMeta();
+            List<SearchResult> results = searchService.searchFiles(request, meta);
+            BaseResponse<List<SearchResult>> response = BaseResponse.success("搜索完成", results);
+            response.setMeta(meta);
+            return response;
         } catch (Exception e) {
             logger.error("搜索失败", e);
             return BaseResponse.error("搜索失败: " + e.getMessage());
         }
     }
     
+    /**
+     * 流式搜索（Server-Sent Events），查询参数与 /search 的请求体字段相同，依次发送：
+     * candidates（冠军表预览的第一页候选，仅基本信息）、results（完整检索和高亮后的结果）、
+     * summary（AI总结分析，生成完成或等待超时后发送当前状态）、done；
+     * 线程池已满时发送 error 事件后结束
+     */
+    @GetMapping(value = "/search/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamSearch(@Valid SearchRequest request) {
+        SseEmitter emitter = new SseEmitter(summaryMaxWaitMs + STREAM_TIMEOUT_MARGIN_MS);
+        try {
+            streamExecutor.execute(() -> streamResults(request, emitter));
+        } catch (RejectedExecutionException e) {
+            logger.warn("流式搜索线程池已满，拒绝请求: {}", request.getQuery());
+            try {
+                emitter.send(SseEmitter.event().name("error").data(BaseResponse.error("搜索繁忙，请稍后重试", 503)));
+                emitter.complete();
+            } catch (IOException ignored) {
+                emitter.complete();
+            }
+        }
+        return emitter;
+    }
+    
+    /**
+     * 发送候选和检索结果；有总结任务时登记完成回调和超时，由先到者发送总结并结束，不在线程上等待
+     */
+    private void streamResults(SearchRequest request, SseEmitter emitter) {
+        try {
+            SearchMeta previewMeta = new SearchMeta();
+            List<SearchResult> candidates = searchService.previewFiles(request, previewMeta);
+            if (!candidates.isEmpty()) {
+                emitter.send(SseEmitter.event().name("candidates").data(searchResponse(candidates, previewMeta)));
+            }
+            
+            SearchMeta meta = new SearchMeta();
+            List<SearchResult> results = searchService.searchFiles(request, meta);
+            emitter.send(SseEmitter.event().name("results").data(searchResponse(results, meta)));
+            
+            String ticket = meta.getSummaryTicket();
+            CompletableFuture<String> task = ticket != null ? analysisSummaryService.getTask(ticket) : null;
+            if (task == null) {
+                finishStream(emitter, null);
+                return;
+            }
+            AtomicBoolean finished = new AtomicBoolean();
+            Runnable finish = () -> {
+                if (finished.compareAndSet(false, true)) {
+                    finishStream(emitter, ticket);
+                }
+            };
+            ScheduledFuture<?> timeout = streamTimer.schedule(finish, summaryMaxWaitMs, TimeUnit.MILLISECONDS);
+            emitter.onCompletion(() -> timeout.cancel(false));
+            task.whenComplete((summary, error) -> {
+                timeout.cancel(false);
+                finish.run();
+            });
+        } catch (IOException e) {
+            // 客户端已断开
+            logger.debug("流式搜索连接已关闭: {}", e.getMessage());
+            emitter.complete();
+        } catch (Exception e) {
+            logger.error("流式搜索失败", e);
+            emitter.completeWithError(e);
+        }
+    }
+    
+    /**
+     * 发送总结的当前状态（ticket不为null时）和done事件并结束连接
+     */
+    private void finishStream(SseEmitter emitter, String ticket) {
+        try {
+            AnalysisSummary summary = ticket != null ? analysisSummaryService.describe(ticket) : null;
+            if (summary != null) {
+                emitter.send(SseEmitter.event().name("summary").data(BaseResponse.success(summary)));
+            }
+            emitter.send(SseEmitter.event().name("done").data(""));
+            emitter.complete();
+        } catch (IOException e) {
+            // 客户端已断开
+            logger.debug("流式搜索连接已关闭: {}", e.getMessage());
+            emitter.complete();
+        } catch (Exception e) {
+            logger.error("流式搜索失败", e);
+            emitter.completeWithError(e);
+        }
+    }
+    
+    private BaseResponse<List<SearchResult>> searchResponse(List<SearchResult> results, SearchMeta meta) {
+        BaseResponse<List<SearchResult>> response = BaseResponse.success("搜索完成", results);
+        response.setMeta(meta);
+        return response;
+    }
+    
+    /**
+     * 输入联想（搜索历史和文件名中以prefix开头的词条，只读内存）
+     */
+    @GetMapping("/search/suggest")
+    public BaseResponse<List<String>> suggest(@RequestParam String prefix,
+                                              @RequestParam(defaultValue = "10") int limit) {
+        return BaseResponse.success(suggestService.suggest(prefix, limit));
+    }
+    
+    /**
+     * 获取AI总结分析
+     * wait为最长等待毫秒数（长轮询），总结尚未生成完成时返回pending状态
+     */
+    @GetMapping("/search/summary/{ticketId}")
+    public DeferredResult<BaseResponse<AnalysisSummary>> getAnalysisSummary(@PathVariable String ticketId,
+                                                                           @RequestParam(defaultValue = "0") long wait) {
+        long timeout = Math.max(0, Math.min(wait, summaryMaxWaitMs));
+        DeferredResult<BaseResponse<AnalysisSummary>> result = new DeferredResult<>(timeout > 0 ? timeout : null,
+            () -> BaseResponse.success(new AnalysisSummary(ticketId, AnalysisSummary.STATUS_PENDING)));
+        
+        CompletableFuture<String> task = analysisSummaryService.getTask(ticketId);
+        if (task == null) {
+            result.setResult(BaseResponse.error("总结不存在或已过期", 404));
+        } else if (task.isDone() || timeout == 0) {
+            result.setResult(summaryResponse(ticketId));
+        } else {
+            task.whenComplete((summary, error) -> result.setResult(summaryResponse(ticketId)));
+        }
+        return result;
+    }
+    
+    private BaseResponse<AnalysisSummary> summaryResponse(String ticketId) {
+        AnalysisSummary summary = analysisSummaryService.describe(ticketId);
+        return summary != null ? BaseResponse.success(summary) : BaseResponse.error("总结不存在或已过期", 404);
+    }
+    
+    /**
+     * 读取文件正文（UTF-8文本）
+     * 支持HTTP Range请求头（单个字节区间）或 offset/length 参数按字节分段读取，正文按块从数据库流式输出
+     */
+    @GetMapping("/files/{id}/content")
+    public ResponseEntity<StreamingResponseBody> getFileContent(@PathVariable Long id,
+                                                                @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+                                                                @RequestParam(required = false) Long offset,
+                                                                @RequestParam(required = false) Long length) {
+        long total = fileIndexService.getContentLength(id);
+        if (total < 0) {
+            return ResponseEntity.notFound().build();
+        }
+        
+        long start = 0;
+        long end = total;
+        if (range != null) {
+            try {
+                List<HttpRange> ranges = HttpRange.parseRanges(range);
+                if (ranges.size() != 1) {
+                    throw new IllegalArgumentException("只支持单个区间: " + range);
+                }
+                start = ranges.get(0).getRangeStart(total);
+                end = ranges.get(0).getRangeEnd(total) + 1;
+                if (start >= total) {
+                    throw new IllegalArgumentException("区间超出正文长度: " + range);
+                }
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header(HttpHeaders.CONTENT_RANGE, "bytes */" + total)
+                    .build();
+            }
+        } else if (offset != null || length != null) {
+            start = Math.max(0, offset != null ? offset : 0);
+            if (start > 0 && start >= total) {
+                return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header(HttpHeaders.CONTENT_RANGE, "bytes */" + total)
+                    .build();
+            }
+            end = length != null ? Math.min(total, start + Math.max(0, length)) : total;
+        }
+        
+        long from = start;
+        long to = end;
+        StreamingResponseBody body = out -> {
+            for (long position = from; position < to; position += CONTENT_CHUNK_SIZE) {
+                byte[] chunk = fileIndexService.readContent(id, position, (int) Math.min(CONTENT_CHUNK_SIZE, to - position));
+                if (chunk.length == 0) {
+                    break;
+                }
+                out.write(chunk);
+            }
+        };
+        
+        // 空区间（length=0或空正文）按200返回空正文，不带Content-Range
+        boolean partial = end > start && (range != null || start > 0 || end < total);
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(partial ? HttpStatus.PARTIAL_CONTENT : HttpStatus.OK)
+            .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+            .contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8))
+            .contentLength(end - start);
+        if (partial) {
+            response.header(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + (end - 1) + "/" + total);
+        }
+        return response.body(body);
+    }
+    
     /**
      * 获取搜索历史
      */
@@ -160,6 +452,15 @@ public class AssistantController {
         }
     }
     
+    /**
+     * 按部分文件名或路径查找文件
+     */
+    @GetMapping("/files/search")
+    public BaseResponse<List<com.assistant.common.dto.FileInfo>> searchFilesByName(@RequestParam String name,
+                                                                               @RequestParam(defaultValue = "20") int limit) {
+        return BaseResponse.success(fileIndexService.searchByName(name, Math.min(limit, AssistantConstants.MAX_PAGE_SIZE)));
+    }
+    
     /**
      * 获取系统状态
      */
@@ -173,6 +474,8 @@ public class AssistantController {
             java.util.Map<String, Object> status = new java.util.HashMap<>();
             status.put("folders", folders.size());
             status.put("files", files.size());
+            status.put("searchCache", searchService.getCacheStats());
+            status.put("embeddingCache", aiEmbeddingService.getCacheStats());
             status.put("timestamp", java.time.LocalDateTime.now());
             
             return BaseResponse.success("系统状态正常", status);